@@ -0,0 +1,21 @@
+package com.pay.api.controller.find;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 카드번호 마스킹 : 조회 응답의 거래마다 실행됩니다.
+ */
+@State(Scope.Thread)
+public class MaskingUtilBenchmark {
+
+    @Param({"0123456789", "1234567890123456"})
+    private String cardNumber;
+
+    @Benchmark
+    public String getMaskedCardNumber() {
+        return MaskingUtil.getMaskedCardNumber(cardNumber);
+    }
+}
@@ -0,0 +1,49 @@
+package com.pay.api.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 카드정보 암/복호화 : 결제마다 암호화, 취소/조회마다 복호화합니다.
+ * transactionIds 는 번갈아 사용할 관리번호 수이며, 값이 크면 key cache 에 없는 관리번호 비율이 높아집니다.
+ */
+@State(Scope.Thread)
+public class CardInfoCryptoBenchmark {
+
+    @Param({"1024", "200000"})
+    private int transactionIds;
+
+    private String[] ids;
+    private String[] encrypted;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final SequenceTransactionIdGenerator generator = new SequenceTransactionIdGenerator(0);
+        ids = new String[transactionIds];
+        encrypted = new String[transactionIds];
+        for (int i = 0; i < transactionIds; i++) {
+            ids[i] = generator.generate();
+            encrypted[i] = CardInfoCrypto.encrypt(ids[i], "1234567890123456", "1125", "777").getEncryptedCardInfo();
+        }
+    }
+
+    private int next() {
+        index = index + 1 == transactionIds ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public CardInfoCrypto encrypt() {
+        return CardInfoCrypto.encrypt(ids[next()], "1234567890123456", "1125", "777");
+    }
+
+    @Benchmark
+    public CardInfoCrypto decrypt() {
+        final int i = next();
+        return CardInfoCrypto.decrypt(ids[i], encrypted[i]);
+    }
+}
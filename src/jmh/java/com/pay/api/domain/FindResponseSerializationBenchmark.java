@@ -0,0 +1,48 @@
+package com.pay.api.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pay.api.controller.find.FindResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * 조회 API 응답 직렬화 : Spring Boot 와 같은 설정의 ObjectMapper 로 FindResponse 를 byte 배열로 씁니다.
+ */
+@State(Scope.Thread)
+public class FindResponseSerializationBenchmark {
+
+    @Param({"0", "30"})
+    private int cancelTransactions;
+
+    private ObjectMapper objectMapper;
+    private FindResponse findResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        final TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0);
+        final Transaction payTransaction = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1125", "777", 0, 110_000L, 10_000L);
+        payTransaction.prePersist();
+        for (int i = 0; i < cancelTransactions; i++) {
+            final Transaction cancelTransaction = payTransaction.cancel(idGenerator.generate(), 1_000L, 100L);
+            cancelTransaction.prePersist();
+            payTransaction.getCancelTransactionList().add(cancelTransaction);
+        }
+        //CardVault 를 사용하지 않는 거래이므로 cardVault 없이 만듭니다.
+        findResponse = new FindResponse(payTransaction, null);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(findResponse);
+    }
+}
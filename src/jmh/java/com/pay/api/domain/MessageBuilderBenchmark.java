@@ -0,0 +1,45 @@
+package com.pay.api.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 카드사 전문 생성 : 결제/취소 요청마다 한 번씩 실행됩니다.
+ */
+@State(Scope.Thread)
+public class MessageBuilderBenchmark {
+
+    private final String transactionId = "20050418045376600001";
+    private final String payTransactionId = "20050418045376600000";
+    private final String encryptedCardInfo = "4V1e1oChuaYgjs7u9Loev7rl0Y4EnhqmYSBBbyeL21Y=";
+
+    @Benchmark
+    public String paymentMessage() {
+        return MessageBuilder.newPaymentMessageBuilder()
+                .id(transactionId)
+                .cardNumber("1234567890123456")
+                .expirationMonthYear("1125")
+                .cvc("777")
+                .installment(0)
+                .amount(110_000)
+                .vat(10_000)
+                .encryptedCardInformation(encryptedCardInfo)
+                .build();
+    }
+
+    @Benchmark
+    public String cancelMessage() {
+        return MessageBuilder.newCancelMessageBuilder()
+                .id(transactionId)
+                .cardNumber("1234567890123456")
+                .expirationMonthYear("1125")
+                .cvc("777")
+                .installment(0)
+                .amount(11_000)
+                .vat(1_000)
+                .payTransactionId(payTransactionId)
+                .encryptedCardInformation(encryptedCardInfo)
+                .build();
+    }
+}
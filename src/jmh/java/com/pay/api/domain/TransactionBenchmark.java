@@ -0,0 +1,44 @@
+package com.pay.api.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 결제/취소 거래 생성 : 관리번호 발급, 카드정보 암호화(결제), 전문 생성을 포함합니다. DB 저장은 포함하지 않습니다.
+ */
+@State(Scope.Thread)
+public class TransactionBenchmark {
+
+    private static final long PAY_AMOUNT = 1_000_000_000L;
+
+    private final TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0);
+
+    private Transaction payTransaction;
+
+    @Setup
+    public void setUp() {
+        payTransaction = newPayTransaction();
+    }
+
+    private Transaction newPayTransaction() {
+        return Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1125", "777", 0, PAY_AMOUNT, 0L);
+    }
+
+    @Benchmark
+    public Transaction newInstance() {
+        return Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1125", "777", 0, 110_000L, 10_000L);
+    }
+
+    /**
+     * 같은 결제 건을 100원씩 취소하고, 잔액이 모자라면 새 결제 건으로 바꿉니다. (1천만 번에 한 번)
+     */
+    @Benchmark
+    public Transaction cancel() {
+        if (payTransaction.getRemainAmount() < 100) {
+            payTransaction = newPayTransaction();
+        }
+        return payTransaction.cancel(idGenerator.generate(), 100L, 0L);
+    }
+}
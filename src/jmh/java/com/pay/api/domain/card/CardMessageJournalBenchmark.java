@@ -0,0 +1,76 @@
+package com.pay.api.domain.card;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * 카드사 전문 journal : 전문 한 건 덧붙이기, 64건을 덧붙이고 한 번 force, sequence 로 읽기
+ * 디스크를 계속 차지하지 않도록 segment 하나가 가득 차면 journal 을 지우고 새로 만듭니다.
+ */
+@State(Scope.Thread)
+public class CardMessageJournalBenchmark {
+
+    private static final int GROUP_SIZE = 64;
+    private static final int RECORDS_PER_SEGMENT = 65_536;
+
+    private final String message = String.format("%-450s", " 446PAYMENT   20050418045376600001");
+
+    private Path directory;
+    private CardMessageJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("card-message-journal-benchmark");
+        journal = new CardMessageJournal(directory, RECORDS_PER_SEGMENT);
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            journal.append(message);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        if (journal.nextSequence() == RECORDS_PER_SEGMENT) {
+            tearDown();
+            setUp();
+        }
+        return journal.append(message);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public long appendAndGroupForce() throws IOException {
+        if (journal.nextSequence() + GROUP_SIZE > RECORDS_PER_SEGMENT) {
+            tearDown();
+            setUp();
+        }
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            journal.append(message);
+        }
+        return journal.force();
+    }
+
+    @Benchmark
+    public String read() {
+        return journal.read(ThreadLocalRandom.current().nextLong(GROUP_SIZE));
+    }
+}
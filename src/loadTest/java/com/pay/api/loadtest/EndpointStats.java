@@ -0,0 +1,87 @@
+package com.pay.api.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 엔드포인트 하나의 지연시간(HdrHistogram)과 응답 코드별 건수.
+ * 지연시간은 요청을 보내야 했던 시각(open-loop 예정 시각)부터 측정하므로 클라이언트 대기열에서 밀린 시간도 포함됩니다.
+ */
+final class EndpointStats {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Operation operation;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+
+    private final LongAdder success = new LongAdder();
+    private final LongAdder conflict = new LongAdder();
+    private final LongAdder clientError = new LongAdder();
+    private final LongAdder serverError = new LongAdder();
+    private final LongAdder ioError = new LongAdder();
+
+    EndpointStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    void record(long latencyNanos, int status) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+
+        if (status < 0) {
+            ioError.increment();
+        } else if (status == 409) {
+            conflict.increment();
+        } else if (status >= 500) {
+            serverError.increment();
+        } else if (status >= 400) {
+            clientError.increment();
+        } else {
+            success.increment();
+        }
+    }
+
+    /**
+     * warmup 구간의 기록을 버립니다.
+     */
+    void reset() {
+        recorder.reset();
+        success.reset();
+        conflict.reset();
+        clientError.reset();
+        serverError.reset();
+        ioError.reset();
+    }
+
+    static String header() {
+        return String.format("%-15s %9s %10s %10s %10s %10s %10s %8s %8s %8s %8s",
+                "endpoint", "count", "req/s", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "409", "4xx", "5xx", "io-err");
+    }
+
+    String report(double seconds) {
+        final Histogram histogram = recorder.getIntervalHistogram();
+        final long count = histogram.getTotalCount();
+        return String.format("%-15s %9d %10.1f %10.2f %10.2f %10.2f %10.2f %7.2f%% %7.2f%% %7.2f%% %7.2f%%",
+                operation.getKey(),
+                count,
+                count / seconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                percent(conflict.sum(), count),
+                percent(clientError.sum(), count),
+                percent(serverError.sum(), count),
+                percent(ioError.sum(), count));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private static double percent(long value, long total) {
+        return total == 0 ? 0 : value * 100d / total;
+    }
+}
@@ -0,0 +1,242 @@
+package com.pay.api.loadtest;
+
+import com.pay.Application;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 결제/부분취소/전체취소/조회를 섞어서 고정된 도착률(open-loop)로 요청하고 엔드포인트별 지연시간 분포를 출력합니다.
+ * - loadtest.target 이 없으면 같은 JVM 에 애플리케이션을 띄워서(임의 포트) 테스트합니다.
+ * - 요청은 응답을 기다리지 않고 예정 시각마다 보내며, 지연시간은 예정 시각부터 측정합니다. (coordinated omission 보정)
+ * <pre>
+ * ./gradlew loadTest -Ploadtest.rate=1000 -Ploadtest.duration-seconds=60
+ * ./gradlew loadTest -Ploadtest.scenario=hot-card -Ploadtest.hot-card-ratio=0.3
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final long PAY_AMOUNT = 11_000;
+    private static final long PAY_VAT = 1_000;
+    private static final long PARTIAL_CANCEL_AMOUNT = 1_100;
+    private static final long PARTIAL_CANCEL_VAT = 100;
+
+    private static final long CARD_NUMBER_BASE = 4_000_000_000_000_000L;
+    private static final String HOT_CARD_NUMBER = "9999999999999999";
+
+    private static final int RECENT_TRANSACTIONS = 4_096;
+    private static final int FRESH_TRANSACTIONS = 10_000;
+
+    private final LoadTestConfig config;
+    private final PayClient client;
+
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    private final AtomicInteger paid = new AtomicInteger();
+
+    /**
+     * 부분취소/조회 대상 : 최근에 결제된 관리번호
+     */
+    private final AtomicReferenceArray<String> recentTransactions = new AtomicReferenceArray<>(RECENT_TRANSACTIONS);
+    private final AtomicInteger recentIndex = new AtomicInteger();
+
+    /**
+     * 전체취소 대상 : 아직 취소에 사용하지 않은 관리번호 (부분취소 대상과 겹치지 않도록 결제 건을 번갈아 나눠 담습니다)
+     */
+    private final BlockingQueue<String> freshTransactions = new ArrayBlockingQueue<>(FRESH_TRANSACTIONS);
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private LoadTest(LoadTestConfig config, PayClient client) {
+        this.config = config;
+        this.client = client;
+
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats(operation));
+        }
+
+        this.operations = config.mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += config.mix.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("sum of mix weights must be positive");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+
+        ConfigurableApplicationContext context = null;
+        String target = config.target;
+        if (target.isEmpty()) {
+            context = new SpringApplicationBuilder(Application.class).run("--server.port=0", "--logging.level.root=WARN",
+                    "--pay.card-fingerprint.secret=load-test-card-fingerprint-secret", "--pay.card-vault.secret=load-test-card-vault-secret");
+            target = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+
+        try {
+            System.out.println("load test : " + config);
+            new LoadTest(config, new PayClient(target, config.timeoutMillis)).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(config.threads, config.threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        executor.prestartAllCoreThreads();
+
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+        final long startAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long measureAt = startAt + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        final long endAt = measureAt + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+
+        boolean measuring = config.warmupSeconds == 0;
+        for (long sequence = 0; ; sequence++) {
+            final long scheduledAt = startAt + sequence * intervalNanos;
+            if (scheduledAt >= endAt) {
+                break;
+            }
+            if (!measuring && scheduledAt >= measureAt) {
+                stats.values().forEach(EndpointStats::reset);
+                measuring = true;
+            }
+
+            waitUntil(scheduledAt);
+            final Operation operation = nextOperation();
+            executor.execute(() -> execute(operation, scheduledAt));
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(config.timeoutMillis * 2L, TimeUnit.MILLISECONDS)) {
+            System.out.println("requests still running after " + (config.timeoutMillis * 2L) + "ms : " + executor.getActiveCount());
+            executor.shutdownNow();
+        }
+
+        report();
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remain;
+        while ((remain = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remain);
+        }
+    }
+
+    private Operation nextOperation() {
+        final int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * 취소/조회할 관리번호가 아직 없으면 결제로 대신합니다.
+     */
+    private void execute(Operation operation, long scheduledAt) {
+        Operation executed = operation;
+        int status;
+        try {
+            switch (operation) {
+                case PARTIAL_CANCEL: {
+                    final String transactionId = recentTransaction();
+                    if (transactionId != null) {
+                        status = client.cancel(transactionId, PARTIAL_CANCEL_AMOUNT, PARTIAL_CANCEL_VAT).status;
+                        break;
+                    }
+                    executed = Operation.PAY;
+                    status = pay();
+                    break;
+                }
+                case FULL_CANCEL: {
+                    final String transactionId = freshTransactions.poll();
+                    if (transactionId != null) {
+                        status = client.cancel(transactionId, PAY_AMOUNT, PAY_VAT).status;
+                        break;
+                    }
+                    executed = Operation.PAY;
+                    status = pay();
+                    break;
+                }
+                case FIND: {
+                    final String transactionId = recentTransaction();
+                    if (transactionId != null) {
+                        status = client.find(transactionId).status;
+                        break;
+                    }
+                    executed = Operation.PAY;
+                    status = pay();
+                    break;
+                }
+                default:
+                    status = pay();
+            }
+        } catch (IOException e) {
+            status = -1;
+        }
+
+        stats.get(executed).record(System.nanoTime() - scheduledAt, status);
+    }
+
+    private int pay() throws IOException {
+        final PayClient.Response response = client.pay(nextCardNumber(), PAY_AMOUNT, PAY_VAT);
+
+        final String transactionId = response.transactionId();
+        if (response.status != 201 || transactionId == null) {
+            return response.status;
+        }
+
+        if ((paid.getAndIncrement() & 1) == 0) {
+            recentTransactions.set(Math.floorMod(recentIndex.getAndIncrement(), RECENT_TRANSACTIONS), transactionId);
+        } else {
+            while (!freshTransactions.offer(transactionId)) {
+                freshTransactions.poll();
+            }
+        }
+        return response.status;
+    }
+
+    private String nextCardNumber() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (config.hotCardRatio > 0 && random.nextDouble() < config.hotCardRatio) {
+            return HOT_CARD_NUMBER;
+        }
+        return String.valueOf(CARD_NUMBER_BASE + random.nextInt(config.cards));
+    }
+
+    private String recentTransaction() {
+        final int size = Math.min(recentIndex.get(), RECENT_TRANSACTIONS);
+        return size <= 0 ? null : recentTransactions.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    private void report() {
+        System.out.println();
+        System.out.println(EndpointStats.header());
+        for (EndpointStats endpointStats : stats.values()) {
+            System.out.println(endpointStats.report(config.durationSeconds));
+        }
+    }
+}
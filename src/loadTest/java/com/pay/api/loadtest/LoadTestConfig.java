@@ -0,0 +1,81 @@
+package com.pay.api.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * -Dloadtest.* 시스템 프로퍼티로 받는 부하 테스트 설정 (./gradlew loadTest -Ploadtest.rate=1000 처럼 전달)
+ */
+final class LoadTestConfig {
+
+    enum Scenario {
+        /**
+         * 결제는 cards 개의 카드번호에 고르게 분산됩니다.
+         */
+        MIXED,
+        /**
+         * 결제의 hotCardRatio 만큼을 카드번호 하나에 몰아서 카드번호 락 경합(409)을 만듭니다.
+         */
+        HOT_CARD
+    }
+
+    final String target;
+    final Scenario scenario;
+    final int rate;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int cards;
+    final double hotCardRatio;
+    final int threads;
+    final int timeoutMillis;
+    final Map<Operation, Integer> mix;
+
+    private LoadTestConfig() {
+        this.target = System.getProperty("loadtest.target", "");
+        this.scenario = Scenario.valueOf(System.getProperty("loadtest.scenario", "mixed").toUpperCase().replace('-', '_'));
+        this.rate = Integer.getInteger("loadtest.rate", 500);
+        this.warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+        this.durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+        this.cards = Integer.getInteger("loadtest.cards", 10_000);
+        this.hotCardRatio = Double.parseDouble(System.getProperty("loadtest.hot-card-ratio", scenario == Scenario.HOT_CARD ? "0.5" : "0"));
+        this.threads = Integer.getInteger("loadtest.threads", 256);
+        this.timeoutMillis = Integer.getInteger("loadtest.timeout-millis", 5_000);
+        this.mix = parseMix(System.getProperty("loadtest.mix", "pay:40,partial-cancel:20,full-cancel:10,find:30"));
+
+        if (rate <= 0 || durationSeconds <= 0 || cards <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("rate, duration-seconds, cards, threads must be positive");
+        }
+        if (hotCardRatio < 0 || hotCardRatio > 1) {
+            throw new IllegalArgumentException("hot-card-ratio must be between 0 and 1");
+        }
+    }
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            final String[] pair = entry.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("illegal mix : " + value);
+            }
+            mix.put(Operation.of(pair[0].trim()), Integer.parseInt(pair[1].trim()));
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return "target=" + (target.isEmpty() ? "embedded" : target) +
+                ", scenario=" + scenario +
+                ", rate=" + rate + "/s" +
+                ", warmup=" + warmupSeconds + "s" +
+                ", duration=" + durationSeconds + "s" +
+                ", cards=" + cards +
+                ", hotCardRatio=" + hotCardRatio +
+                ", threads=" + threads +
+                ", mix=" + mix;
+    }
+}
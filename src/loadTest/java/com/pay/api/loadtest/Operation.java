@@ -0,0 +1,30 @@
+package com.pay.api.loadtest;
+
+/**
+ * 부하 테스트에서 요청하는 API. 엔드포인트별로 지연시간과 응답 코드를 따로 집계합니다.
+ */
+enum Operation {
+    PAY("pay"),
+    PARTIAL_CANCEL("partial-cancel"),
+    FULL_CANCEL("full-cancel"),
+    FIND("find");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    static Operation of(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("unknown operation : " + key);
+    }
+}
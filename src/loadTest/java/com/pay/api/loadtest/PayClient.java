@@ -0,0 +1,92 @@
+package com.pay.api.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 결제 API 클라이언트. JDK HttpURLConnection 의 keep-alive 연결을 재사용합니다.
+ */
+final class PayClient {
+
+    static final class Response {
+
+        final int status;
+        final JsonNode body;
+
+        private Response(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String transactionId() {
+            return body == null || !body.hasNonNull("transactionId") ? null : body.get("transactionId").asText();
+        }
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final int timeoutMillis;
+
+    PayClient(String baseUrl, int timeoutMillis) {
+        this.baseUrl = baseUrl + "/pay/transactions";
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    Response pay(String cardNumber, long amount, long vat) throws IOException {
+        final String body = "{\"cardNumber\":\"" + cardNumber + "\",\"expirationMonthYear\":\"1230\",\"cvc\":\"123\",\"installment\":0,\"amount\":" + amount + ",\"vat\":" + vat + "}";
+        return exchange("POST", baseUrl, body);
+    }
+
+    Response cancel(String transactionId, long amount, long vat) throws IOException {
+        return exchange("DELETE", baseUrl + "/" + transactionId, "{\"amount\":" + amount + ",\"vat\":" + vat + "}");
+    }
+
+    Response find(String transactionId) throws IOException {
+        return exchange("GET", baseUrl + "/" + transactionId, null);
+    }
+
+    private Response exchange(String method, String url, String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Accept", "application/json");
+
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        final int status = connection.getResponseCode();
+        //응답 본문을 끝까지 읽어야 연결이 keep-alive 풀로 돌아갑니다.
+        final byte[] bytes = readFully(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        return new Response(status, status < 400 && bytes.length > 0 ? OBJECT_MAPPER.readTree(bytes) : null);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        try (InputStream input = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,62 +1,30 @@
 package com.pay.api.config;
 
-import com.pay.api.exception.*;
+import com.pay.api.exception.ExceptionStatus;
 import lombok.Getter;
-import org.hibernate.StaleObjectStateException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
-import javax.validation.ConstraintViolationException;
-
 @ControllerAdvice(basePackages = "com.pay.api.controller")
 public class EndpointAdvice extends ResponseEntityExceptionHandler {
 
-    @ExceptionHandler(ConstraintViolationException.class)
-    public ResponseEntity<ErrorResponse> handleConstraintViolationException(ConstraintViolationException e) {
-        return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException e) {
-        return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(BadRequestException.class)
-    public ResponseEntity<ErrorResponse> handleBadRequestException(BadRequestException e) {
-        return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(IllegalStatusException.class)
-    public ResponseEntity<ErrorResponse> handleIllegalStatusException(IllegalStatusException e) {
-        return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(TransactionNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handleTransactionNotFoundException(TransactionNotFoundException e) {
-        return ResponseEntity.notFound().build();
-    }
-
-    @ExceptionHandler(CryptoFailException.class)
-    public ResponseEntity<ErrorResponse> handleCryptoFailException(CryptoFailException e) {
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(ConflictException.class)
-    public ResponseEntity<ErrorResponse> handleConflictException(ConflictException e) {
-        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
-    }
-
-    @ExceptionHandler(StaleObjectStateException.class)
-    public ResponseEntity<ErrorResponse> handleStaleObjectStateException(StaleObjectStateException e) {
-        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
-    }
-
+    /**
+     * 상태는 ExceptionStatus 로 정하고, 404 는 본문 없이, 503 은 Retry-After 와 함께 응답합니다.
+     */
     @ExceptionHandler(Throwable.class)
     public ResponseEntity<ErrorResponse> handleException(Throwable e) {
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponse(e.getMessage()));
+        final HttpStatus status = ExceptionStatus.of(e);
+        if (status == HttpStatus.NOT_FOUND) {
+            return ResponseEntity.notFound().build();
+        }
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, "1").body(new ErrorResponse(e.getMessage()));
+        }
+        return ResponseEntity.status(status).body(new ErrorResponse(e.getMessage()));
     }
 
     @Getter
@@ -0,0 +1,150 @@
+package com.pay.api.controller;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.pay.api.exception.ConflictException;
+import com.pay.api.exception.IdempotencyKeyReusedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Idempotency-Key 헤더로 들어온 요청의 첫 응답(status, body)을 저장해 두고 재시도에는 저장된 응답을 그대로 반환합니다. (pay.idempotency.*)
+ * - key 는 요청 method 와 path 범위 안에서만 유효합니다.
+ * - 첫 요청이 처리되는 중에 들어온 재시도는 첫 요청이 끝날 때까지 기다렸다가 같은 결과를 받습니다.
+ * - 첫 요청이 예외로 끝나면 저장하지 않으므로 이후 재시도는 다시 처리됩니다.
+ * - 요청 내용의 hash 를 함께 저장하고, 같은 key 로 다른 내용을 요청하면 첫 응답을 반환하지 않고 422 로 거절합니다.
+ *   hash 는 key 가 있는 요청만 만들고, 카드정보가 들어가므로 시작할 때 만든 임의의 키로 keyed-HMAC(HmacSHA256) 합니다. (저장된 응답도 이 노드의 메모리에만 있습니다)
+ * - 최대 건수는 key 가 있는 초당 요청 수(requests-per-second) x TTL 이고, 요청이 이보다 많으면 TTL 전에 밀려나서 재시도를 막는 시간이 최대 건수 / 초당 요청 수로 줄어듭니다.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> mac;
+
+    private final ConcurrentMap<String, Entry> responses;
+
+    private final long waitMillis;
+
+    public IdempotencyStore(@Value("${pay.idempotency.requests-per-second:5}") long requestsPerSecond,
+                            @Value("${pay.idempotency.expire-after-write-seconds:86400}") long expireAfterWriteSeconds,
+                            @Value("${pay.idempotency.wait-millis:10000}") long waitMillis) {
+        checkArgument(requestsPerSecond > 0 && expireAfterWriteSeconds > 0, "requestsPerSecond and expireAfterWriteSeconds must be positive");
+
+        final byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        final SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        final long maximumSize = Math.multiplyExact(requestsPerSecond, expireAfterWriteSeconds);
+        log.info("Idempotency store holds up to {} responses for {} seconds ({} requests per second)", maximumSize, expireAfterWriteSeconds, requestsPerSecond);
+        final Cache<String, Entry> cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+        this.responses = cache.asMap();
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * @param requestValues 같은 요청인지 비교할 요청 값들, key 가 있을 때만 hash 합니다.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object[] requestValues, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+
+        final byte[] requestHash = hash(requestValues);
+        final String key = scope + " " + idempotencyKey;
+        final Entry created = new Entry(requestHash);
+        final Entry existing = responses.putIfAbsent(key, created);
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.requestHash, requestHash)) {
+                throw new IdempotencyKeyReusedException("Idempotency-Key is already used for a different request !!");
+            }
+            return (ResponseEntity<T>) await(existing.response);
+        }
+
+        try {
+            final ResponseEntity<T> response = action.get();
+            created.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            responses.remove(key, created);
+            created.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 요청 값들의 HMAC. 값 사이에 구분자를 넣어서 값의 경계가 달라지면 다른 hash 가 됩니다.
+     */
+    byte[] hash(Object... values) {
+        final Mac instance = mac.get();
+        for (Object value : values) {
+            instance.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            instance.update((byte) 0);
+        }
+        return instance.doFinal();
+    }
+
+    private ResponseEntity<?> await(CompletableFuture<ResponseEntity<?>> future) {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            //첫 요청과 같은 예외를 던져서 같은 응답을 받도록 합니다.
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with the same Idempotency-Key is still in progress !!");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for a request with the same Idempotency-Key !!");
+        }
+    }
+
+    long size() {
+        return responses.size();
+    }
+
+    private static final class Entry {
+        private final byte[] requestHash;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(byte[] requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
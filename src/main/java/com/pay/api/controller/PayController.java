@@ -1,44 +1,118 @@
 package com.pay.api.controller;
 
+import com.pay.api.controller.RequestExecutors.Lane;
 import com.pay.api.controller.cancel.CancelRequest;
 import com.pay.api.controller.cancel.CancelResponse;
 import com.pay.api.controller.find.FindResponse;
+import com.pay.api.controller.history.CardHistoryResponse;
+import com.pay.api.controller.pay.BatchPayResponse;
 import com.pay.api.controller.pay.PayRequest;
 import com.pay.api.controller.pay.PayResponse;
 import com.pay.api.domain.PayService;
+import com.pay.api.domain.TransactionExporter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 요청 검증은 Tomcat worker 스레드에서 하고, 검증을 통과한 요청은 RequestExecutors 의 종류별 executor 에서 처리합니다.
+ */
 @Validated
 @RestController
 @RequestMapping("/pay/transactions")
 public class PayController {
 
     private final PayService payService;
+    private final IdempotencyStore idempotencyStore;
+    private final RequestExecutors requestExecutors;
+    private final TransactionExporter transactionExporter;
 
-    public PayController(PayService payService) {
+    public PayController(PayService payService, IdempotencyStore idempotencyStore, RequestExecutors requestExecutors,
+                         TransactionExporter transactionExporter) {
         this.payService = payService;
+        this.idempotencyStore = idempotencyStore;
+        this.requestExecutors = requestExecutors;
+        this.transactionExporter = transactionExporter;
     }
 
     @PostMapping
-    public ResponseEntity<PayResponse> pay(@Valid @RequestBody PayRequest payRequest) {
-        final PayResponse payResponse = payService.pay(payRequest);
-        return ResponseEntity.status(HttpStatus.CREATED).body(payResponse);
+    public CompletableFuture<ResponseEntity<PayResponse>> pay(@RequestHeader(name = IdempotencyStore.HEADER, required = false) @Size(min = 1, max = 64) String idempotencyKey,
+                                                              @Valid @RequestBody PayRequest payRequest) {
+        return requestExecutors.submit(Lane.PAY, () -> idempotencyStore.execute("POST /pay/transactions", idempotencyKey, requestValues(payRequest),
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(payService.pay(payRequest))));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<BatchPayResponse> payAll(@RequestBody @NotEmpty @Size(max = 1_000) List<@Valid PayRequest> payRequests) {
+        return requestExecutors.submit(Lane.PAY, () -> payService.payAll(payRequests));
     }
 
     @DeleteMapping("/{transactionId}")
-    public CancelResponse cancel(@PathVariable @NotEmpty @Size(min = 20, max = 20) String transactionId, @Valid @RequestBody CancelRequest cancelRequest) {
-        return payService.cancel(transactionId, cancelRequest);
+    public CompletableFuture<ResponseEntity<CancelResponse>> cancel(@RequestHeader(name = IdempotencyStore.HEADER, required = false) @Size(min = 1, max = 64) String idempotencyKey,
+                                                                    @PathVariable @NotEmpty @Size(min = 20, max = 20) String transactionId,
+                                                                    @Valid @RequestBody CancelRequest cancelRequest) {
+        return requestExecutors.submit(Lane.CANCEL, () -> idempotencyStore.execute("DELETE /pay/transactions/" + transactionId, idempotencyKey, requestValues(cancelRequest),
+                () -> ResponseEntity.ok(payService.cancel(transactionId, cancelRequest))));
     }
 
     @GetMapping("/{transactionId}")
-    public FindResponse find(@PathVariable @NotEmpty @Size(min = 20, max = 20) String transactionId) {
-        return payService.find(transactionId);
+    public CompletableFuture<FindResponse> find(@PathVariable @NotEmpty @Size(min = 20, max = 20) String transactionId) {
+        return requestExecutors.submit(Lane.FIND, () -> payService.find(transactionId));
+    }
+
+    /**
+     * 카드별 거래 목록 : from <= 거래일시 < to, 최근 거래부터 size 건씩, 다음 페이지는 응답의 nextCursor 를 cursor 로 넘깁니다.
+     */
+    @GetMapping
+    public CompletableFuture<CardHistoryResponse> findCardHistory(@RequestParam("card") @NotEmpty @Size(min = 10, max = 16) @Pattern(regexp = "[0-9]+") String cardNumber,
+                                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                 @RequestParam(required = false) @Size(max = 100) String cursor,
+                                                                 @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return requestExecutors.submit(Lane.FIND, () -> payService.findCardHistory(cardNumber, from, to, cursor, size));
+    }
+
+    /**
+     * 기간 내 거래 추출 : from <= 거래일시 < to, 거래일시 순서대로 한 건씩 응답에 씁니다.
+     * 응답을 쓰기 시작한 뒤에 실패하면 상태 코드를 바꿀 수 없으므로, 검증은 응답을 쓰기 전에 합니다.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                        @RequestParam(defaultValue = "ndjson") @Pattern(regexp = "ndjson|csv") String format) {
+        checkArgument(from.isBefore(to), "from must be before to");
+
+        final TransactionExporter.Format exportFormat = TransactionExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + exportFormat.getExtension() + "\"")
+                .body(outputStream -> transactionExporter.export(from, to, exportFormat, outputStream));
+    }
+
+    private static Object[] requestValues(PayRequest payRequest) {
+        return new Object[]{payRequest.getCardNumber(), payRequest.getExpirationMonthYear(), payRequest.getCvc(),
+                payRequest.getInstallment(), payRequest.getAmount(), payRequest.getVat()};
+    }
+
+    private static Object[] requestValues(CancelRequest cancelRequest) {
+        return new Object[]{cancelRequest.getAmount(), cancelRequest.getVat()};
     }
-}
\ No newline at end of file
+}
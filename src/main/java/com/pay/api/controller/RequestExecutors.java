@@ -0,0 +1,107 @@
+package com.pay.api.controller;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pay.api.exception.OverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 결제/취소/조회 요청을 Tomcat worker 스레드가 아닌 요청 종류별 bounded executor 에서 처리합니다. (pay.async.*)
+ * - 종류별로 스레드와 대기열을 나누므로 결제/취소가 밀려도 조회는 자신의 스레드에서 처리됩니다.
+ * - 대기열이 가득 차면 기다리지 않고 OverloadedException(503) 을 던집니다.
+ * - 스레드 수는 DB connection pool 크기를 넘지 않도록 설정합니다.
+ */
+@Component
+public class RequestExecutors implements MeterBinder {
+
+    public enum Lane {
+        PAY,
+        CANCEL,
+        FIND;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<Lane, ThreadPoolExecutor> executors = new EnumMap<>(Lane.class);
+    private final Map<Lane, LongAdder> rejections = new EnumMap<>(Lane.class);
+
+    public RequestExecutors(@Value("${pay.async.pay.threads:8}") int payThreads,
+                            @Value("${pay.async.pay.queue-capacity:200}") int payQueueCapacity,
+                            @Value("${pay.async.cancel.threads:4}") int cancelThreads,
+                            @Value("${pay.async.cancel.queue-capacity:100}") int cancelQueueCapacity,
+                            @Value("${pay.async.find.threads:8}") int findThreads,
+                            @Value("${pay.async.find.queue-capacity:400}") int findQueueCapacity) {
+        executors.put(Lane.PAY, newExecutor(Lane.PAY, payThreads, payQueueCapacity));
+        executors.put(Lane.CANCEL, newExecutor(Lane.CANCEL, cancelThreads, cancelQueueCapacity));
+        executors.put(Lane.FIND, newExecutor(Lane.FIND, findThreads, findQueueCapacity));
+
+        for (Lane lane : Lane.values()) {
+            rejections.put(lane, new LongAdder());
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(Lane lane, int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("pay-" + lane.tag() + "-%d").build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * action 의 예외는 future 로 전달되고, 대기열이 가득 차서 실행하지 못한 경우에만 바로 OverloadedException 을 던집니다.
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Supplier<T> action) {
+        try {
+            return CompletableFuture.supplyAsync(action, executors.get(lane));
+        } catch (RejectedExecutionException e) {
+            rejections.get(lane).increment();
+            throw new OverloadedException("Too many " + lane.tag() + " requests, retry later !!");
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Lane lane : Lane.values()) {
+            final Tags tags = Tags.of("lane", lane.tag());
+            new ExecutorServiceMetrics(executors.get(lane), "pay.request.executor", tags).bindTo(registry);
+            FunctionCounter.builder("pay.request.rejected", rejections.get(lane), LongAdder::sum)
+                    .description("requests rejected because the executor queue was full")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 대기 중인 요청은 DB 연결 등이 아직 살아 있을 때 처리하도록 bean 들이 정리되기 전에 종료합니다.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    long rejected(Lane lane) {
+        return rejections.get(lane).sum();
+    }
+}
@@ -0,0 +1,38 @@
+package com.pay.api.controller;
+
+import com.pay.api.controller.RequestExecutors.Lane;
+import com.pay.api.controller.settlement.SettlementItem;
+import com.pay.api.controller.settlement.SettlementResponse;
+import com.pay.api.domain.settlement.SettlementAggregator;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/pay/settlements")
+public class SettlementController {
+
+    private final SettlementAggregator settlementAggregator;
+    private final RequestExecutors requestExecutors;
+
+    public SettlementController(SettlementAggregator settlementAggregator, RequestExecutors requestExecutors) {
+        this.settlementAggregator = settlementAggregator;
+        this.requestExecutors = requestExecutors;
+    }
+
+    /**
+     * 일자별 정산 합계 : 거래를 읽지 않고 (일자, 할부개월) 버킷만 읽습니다.
+     */
+    @GetMapping
+    public CompletableFuture<SettlementResponse> find(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return requestExecutors.submit(Lane.FIND, () -> new SettlementResponse(date, settlementAggregator.find(date).stream()
+                .map(SettlementItem::new)
+                .collect(Collectors.toList())));
+    }
+}
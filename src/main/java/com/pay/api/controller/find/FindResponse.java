@@ -1,10 +1,12 @@
 package com.pay.api.controller.find;
 
+import com.pay.api.domain.CardVault;
 import com.pay.api.domain.Transaction;
 import com.pay.api.type.TransactionType;
 import lombok.Getter;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -45,21 +47,60 @@ public class FindResponse {
     public FindResponse() {
     }
 
+    /**
+     * @param cardVault : 거래의 카드정보를 읽을 CardVault (Transaction.getCardNumber)
+     */
+    public FindResponse(Transaction transaction, CardVault cardVault) {
+        this(transaction);
+        fillCardInfo(requireNonNull(transaction.getCardNumber(cardVault)), requireNonNull(transaction.getExpirationMonthYear(cardVault)), requireNonNull(transaction.getCvc(cardVault)));
+    }
+
+    /**
+     * 카드정보 없이 만듭니다. 카드정보는 withCardInfo 로 채웁니다. (FindResponseCache 는 카드정보 없이 캐시합니다)
+     */
     public FindResponse(Transaction transaction) {
         this.transactionId = requireNonNull(transaction.getTransactionId());
         this.transactionType = requireNonNull(transaction.getTransactionType());
         this.createdAt = requireNonNull(transaction.getCreatedAt());
         this.updatedAt = transaction.getUpdatedAt();
-        this.cardNumber = requireNonNull(transaction.getCardNumber());
-        this.expirationMonthYear = requireNonNull(transaction.getExpirationMonthYear());
-        this.cvc = requireNonNull(transaction.getCvc());
         this.installment = requireNonNull(transaction.getInstallment());
         this.amount = requireNonNull(transaction.getAmount());
         this.vat = requireNonNull(transaction.getVat());
         this.remainAmount = requireNonNull(transaction.getRemainAmount());
         this.remainVat = requireNonNull(transaction.getRemainVat());
         this.payTransactionId = transaction.getPayTransaction() == null ? null : transaction.getPayTransaction().getTransactionId();
-        this.cancelTransactionList = transaction.getCancelTransactionList().stream().map(FindResponse::new).collect(Collectors.toList());
+        //취소 거래는 하위 취소 거래가 없으므로 지연 로딩 컬렉션을 건드리지 않습니다.
+        this.cancelTransactionList = TransactionType.CANCEL.equals(this.transactionType) ? Collections.emptyList() : transaction.getCancelTransactionList().stream().map(FindResponse::new).collect(Collectors.toList());
+    }
+
+    private FindResponse(FindResponse source) {
+        this.transactionId = source.transactionId;
+        this.transactionType = source.transactionType;
+        this.createdAt = source.createdAt;
+        this.updatedAt = source.updatedAt;
+        this.installment = source.installment;
+        this.amount = source.amount;
+        this.vat = source.vat;
+        this.remainAmount = source.remainAmount;
+        this.remainVat = source.remainVat;
+        this.payTransactionId = source.payTransactionId;
+        this.cancelTransactionList = source.cancelTransactionList.stream().map(FindResponse::new).collect(Collectors.toList());
+    }
+
+    /**
+     * 카드정보를 채운 사본을 반환합니다. 취소 거래는 원거래와 같은 카드이므로 취소 거래 목록에도 같은 카드정보를 채웁니다.
+     */
+    public FindResponse withCardInfo(String cardNumber, String expirationMonthYear, String cvc) {
+        final FindResponse findResponse = new FindResponse(this);
+        findResponse.fillCardInfo(requireNonNull(cardNumber), requireNonNull(expirationMonthYear), requireNonNull(cvc));
+        return findResponse;
+    }
+
+    private void fillCardInfo(String cardNumber, String expirationMonthYear, String cvc) {
+        this.cardNumber = cardNumber;
+        this.expirationMonthYear = expirationMonthYear;
+        this.cvc = cvc;
+        this.cancelTransactionList.forEach(cancelTransaction -> cancelTransaction.fillCardInfo(cardNumber, expirationMonthYear, cvc));
     }
 
     public String getCardNumber() {
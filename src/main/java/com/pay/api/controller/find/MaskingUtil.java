@@ -2,7 +2,10 @@ package com.pay.api.controller.find;
 
 import org.springframework.util.StringUtils;
 
-class MaskingUtil {
+public final class MaskingUtil {
+
+    private MaskingUtil() {
+    }
 
     private static final char MASKING_CHAR = '*';
 
@@ -12,7 +15,7 @@ class MaskingUtil {
      * @param cardNumber : target card number
      * @return masked cardNumber
      */
-    static String getMaskedCardNumber(String cardNumber) {
+    public static String getMaskedCardNumber(String cardNumber) {
 
         if (!StringUtils.hasText(cardNumber) || cardNumber.length() < 10 || cardNumber.length() > 16) {
             return "";
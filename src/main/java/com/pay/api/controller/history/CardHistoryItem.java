@@ -0,0 +1,47 @@
+package com.pay.api.controller.history;
+
+import com.pay.api.domain.TransactionSummary;
+import com.pay.api.type.TransactionType;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class CardHistoryItem {
+
+    private String transactionId;
+
+    private TransactionType transactionType;
+
+    private LocalDateTime createdAt;
+
+    private String cardNumber;
+
+    private Long amount;
+
+    private Long vat;
+
+    private Long remainAmount;
+
+    private Long remainVat;
+
+    private String payTransactionId;
+
+    public CardHistoryItem() {
+    }
+
+    /**
+     * @param maskedCardNumber : 같은 카드의 거래 목록이므로 요청한 카드번호를 마스킹해서 사용합니다. (복호화하지 않음)
+     */
+    public CardHistoryItem(TransactionSummary transaction, String maskedCardNumber) {
+        this.transactionId = transaction.getTransactionId();
+        this.transactionType = transaction.getTransactionType();
+        this.createdAt = transaction.getCreatedAt();
+        this.cardNumber = maskedCardNumber;
+        this.amount = transaction.getAmount();
+        this.vat = transaction.getVat();
+        this.remainAmount = transaction.getRemainAmount();
+        this.remainVat = transaction.getRemainVat();
+        this.payTransactionId = transaction.getPayTransactionId();
+    }
+}
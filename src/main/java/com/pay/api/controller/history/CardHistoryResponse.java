@@ -0,0 +1,24 @@
+package com.pay.api.controller.history;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 카드별 거래 목록 한 페이지 : 최근 거래부터, nextCursor 가 null 이면 마지막 페이지입니다.
+ */
+@Getter
+public class CardHistoryResponse {
+
+    private List<CardHistoryItem> transactions;
+
+    private String nextCursor;
+
+    public CardHistoryResponse() {
+    }
+
+    public CardHistoryResponse(List<CardHistoryItem> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,68 @@
+package com.pay.api.controller.pay;
+
+import com.pay.api.exception.ExceptionStatus;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+@Getter
+public class BatchPayResponse {
+
+    private int successCount;
+
+    private int failureCount;
+
+    private List<Item> items;
+
+    public BatchPayResponse() {
+    }
+
+    public BatchPayResponse(int size) {
+        this.items = new ArrayList<>(size);
+    }
+
+    public void success(int index, PayResponse payResponse) {
+        this.items.add(new Item(index, HttpStatus.CREATED.value(), payResponse, null));
+        this.successCount++;
+    }
+
+    public void failure(int index, Exception e) {
+        this.items.add(new Item(index, ExceptionStatus.of(e).value(), null, e.getMessage()));
+        this.failureCount++;
+    }
+
+    /**
+     * 요청 순서(index)대로 결과를 정렬합니다.
+     */
+    public BatchPayResponse sorted() {
+        this.items.sort(Comparator.comparingInt(Item::getIndex));
+        this.items = Collections.unmodifiableList(this.items);
+        return this;
+    }
+
+    @Getter
+    public static class Item {
+
+        private int index;
+
+        private int status;
+
+        private PayResponse result;
+
+        private String message;
+
+        public Item() {
+        }
+
+        private Item(int index, int status, PayResponse result, String message) {
+            this.index = index;
+            this.status = status;
+            this.result = result;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.pay.api.controller.settlement;
+
+import com.pay.api.domain.settlement.Settlement;
+import lombok.Getter;
+
+@Getter
+public class SettlementItem {
+
+    private int installment;
+
+    private long payCount;
+
+    private long payAmount;
+
+    private long payVat;
+
+    private long cancelCount;
+
+    private long cancelAmount;
+
+    private long cancelVat;
+
+    private long remainAmount;
+
+    private long remainVat;
+
+    public SettlementItem() {
+    }
+
+    public SettlementItem(Settlement settlement) {
+        this.installment = settlement.getInstallment();
+        this.payCount = settlement.getPayCount();
+        this.payAmount = settlement.getPayAmount();
+        this.payVat = settlement.getPayVat();
+        this.cancelCount = settlement.getCancelCount();
+        this.cancelAmount = settlement.getCancelAmount();
+        this.cancelVat = settlement.getCancelVat();
+        this.remainAmount = settlement.getRemainAmount();
+        this.remainVat = settlement.getRemainVat();
+    }
+}
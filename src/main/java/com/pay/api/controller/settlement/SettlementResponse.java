@@ -0,0 +1,25 @@
+package com.pay.api.controller.settlement;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 일자별 정산 합계 : 할부개월 순서, 거래가 없는 할부개월은 포함하지 않습니다.
+ */
+@Getter
+public class SettlementResponse {
+
+    private LocalDate date;
+
+    private List<SettlementItem> settlements;
+
+    public SettlementResponse() {
+    }
+
+    public SettlementResponse(LocalDate date, List<SettlementItem> settlements) {
+        this.date = date;
+        this.settlements = settlements;
+    }
+}
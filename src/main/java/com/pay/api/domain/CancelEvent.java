@@ -0,0 +1,97 @@
+package com.pay.api.domain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * 취소 한 건의 처리 시간과 단계별 처리 시간을 JFR 에 기록합니다. 기본 설정에서는 20ms 이상 걸린 취소만 기록합니다.
+ */
+@Name("com.pay.Cancel")
+@Label("Cancel")
+@Category({"Pay API", "Transaction"})
+@Description("Cancel request, including sequencer wait and commit")
+@Threshold("20 ms")
+@StackTrace(false)
+class CancelEvent extends Event {
+
+    @Label("Pay Transaction Id")
+    String payTransactionId;
+
+    @Label("Transaction Id")
+    String transactionId;
+
+    @Label("Amount")
+    long amount;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Lock")
+    @Timespan
+    long lock;
+
+    @Label("Load")
+    @Timespan
+    long load;
+
+    @Label("Validate")
+    @Timespan
+    long validate;
+
+    @Label("Decrypt")
+    @Timespan
+    long decrypt;
+
+    @Label("Message")
+    @Timespan
+    long message;
+
+    @Label("Update")
+    @Timespan
+    long update;
+
+    @Label("Save")
+    @Timespan
+    long save;
+
+    @Label("Outbox")
+    @Timespan
+    long outbox;
+
+    @Label("Commit")
+    @Timespan
+    long commit;
+
+    /**
+     * 기록 대상(활성화, threshold 이상)일 때만 필드를 채워서 기록합니다.
+     *
+     * @param transactionId : 실패한 취소이면 null
+     */
+    void complete(StageTimings timings, String payTransactionId, String transactionId, Long amount, Throwable error) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+
+        this.payTransactionId = payTransactionId;
+        this.transactionId = transactionId;
+        this.amount = amount == null ? 0 : amount;
+        this.outcome = error == null ? PayMetrics.SUCCESS : PayMetrics.outcomeOf(error);
+        this.lock = timings.getNanos(PayStage.LOCK);
+        this.load = timings.getNanos(PayStage.LOAD);
+        this.validate = timings.getNanos(PayStage.VALIDATE);
+        this.decrypt = timings.getNanos(PayStage.DECRYPT);
+        this.message = timings.getNanos(PayStage.MESSAGE);
+        this.update = timings.getNanos(PayStage.UPDATE);
+        this.save = timings.getNanos(PayStage.SAVE);
+        this.outbox = timings.getNanos(PayStage.OUTBOX);
+        this.commit = timings.getNanos(PayStage.COMMIT);
+        commit();
+    }
+}
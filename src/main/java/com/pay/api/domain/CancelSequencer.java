@@ -0,0 +1,91 @@
+package com.pay.api.domain;
+
+import com.pay.api.exception.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 같은 결제 건(payTransactionId)에 대한 취소 요청을 도착한 순서대로 하나씩 실행합니다. (pay.cancel.sequencer.*)
+ * - 결제 건마다 공정(fair) 락을 하나씩 두고, 대기 중인 요청이 maxQueueDepth 를 넘거나 maxWaitMillis 안에 차례가 오지 않으면 ConflictException 을 던집니다.
+ * - task 안에서 DB 트랜잭션이 커밋된 뒤에 다음 요청이 실행되므로 같은 노드 안에서는 낙관적 락 충돌이 나지 않습니다.
+ * - 비활성화(기본값) 상태에서는 task 를 바로 실행하고 충돌은 version 컬럼으로만 막습니다.
+ */
+@Slf4j
+@Component
+public class CancelSequencer {
+
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int maxQueueDepth;
+    private final long maxWaitMillis;
+
+    public CancelSequencer(@Value("${pay.cancel.sequencer.enabled:false}") boolean enabled,
+                           @Value("${pay.cancel.sequencer.max-queue-depth:32}") int maxQueueDepth,
+                           @Value("${pay.cancel.sequencer.max-wait-millis:3000}") long maxWaitMillis) {
+        this.enabled = enabled;
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public <T> T execute(String payTransactionId, Supplier<T> task) {
+        if (!enabled) {
+            return task.get();
+        }
+
+        final Lane lane = enter(payTransactionId);
+        try {
+            if (!lane.lock.tryLock(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConflictException("Timed out waiting for preceding cancel requests !!");
+            }
+
+            try {
+                return task.get();
+            } finally {
+                lane.lock.unlock();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for preceding cancel requests !!");
+        } finally {
+            leave(payTransactionId);
+        }
+    }
+
+    /**
+     * 대기 중인 요청 수는 ConcurrentMap.compute 안에서만 바꾸고, 마지막 요청이 빠져나가면 lane 을 제거합니다.
+     */
+    private Lane enter(String payTransactionId) {
+        return lanes.compute(payTransactionId, (key, lane) -> {
+            final Lane target = lane == null ? new Lane() : lane;
+            if (target.depth >= maxQueueDepth) {
+                throw new ConflictException("Too many cancel requests are waiting for the same transaction !!");
+            }
+            target.depth++;
+            return target;
+        });
+    }
+
+    private void leave(String payTransactionId) {
+        lanes.computeIfPresent(payTransactionId, (key, lane) -> --lane.depth == 0 ? null : lane);
+    }
+
+    int size() {
+        return lanes.size();
+    }
+
+    private static final class Lane {
+
+        private final ReentrantLock lock = new ReentrantLock(true);
+
+        private int depth;
+    }
+}
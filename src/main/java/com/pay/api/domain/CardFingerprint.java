@@ -0,0 +1,50 @@
+package com.pay.api.domain;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 카드번호를 복호화하지 않고 찾기 위한 카드 fingerprint 를 만듭니다.
+ * 카드번호의 keyed-HMAC(HmacSHA256, pay.card-fingerprint.secret) 을 base64url(43자리)로 저장하므로, secret 없이는 fingerprint 로 카드번호를 알아낼 수 없습니다.
+ * secret 은 기본값이 없으므로 설정하지 않으면 시작하지 않습니다. secret 을 바꾸면 이전 거래의 fingerprint 와 맞지 않으므로 운영 중에는 바꾸지 않습니다.
+ */
+@Component
+public class CardFingerprint {
+
+    public static final int LENGTH = 43;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> mac;
+
+    public CardFingerprint(@Value("${pay.card-fingerprint.secret}") String secret) {
+        checkArgument(hasText(secret), "pay.card-fingerprint.secret is mandatory");
+
+        final SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public String of(String cardNumber) {
+        checkArgument(hasText(cardNumber) && cardNumber.length() >= 10 && cardNumber.length() <= 16, "illegal cardNumber");
+
+        final byte[] digest = mac.get().doFinal(cardNumber.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
@@ -1,19 +1,21 @@
 package com.pay.api.domain;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.pay.api.exception.CryptoFailException;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
 import static org.springframework.util.StringUtils.hasText;
 
 
@@ -27,55 +29,161 @@ import static org.springframework.util.StringUtils.hasText;
 @Slf4j
 class CardInfoCrypto {
 
-    private final String transactionId;
+    private static final byte DELIMITER = '|';
+
+    /**
+     * 암/복호화 키. 이미 암호화해 둔 카드정보로 만든 경우(of)에는 없습니다.
+     */
+    private final SecretKeySpec key;
     private String cardNumber;
     private String expirationMonthYear;
     private String cvc;
+    private byte[] encryptedCardInfoBytes;
     private String encryptedCardInfo;
 
-    private CardInfoCrypto(String transactionId, String cardNumber, String expirationMonthYear, String cvc) {
-        checkArgument(hasText(transactionId) && transactionId.length() == 20, "illegal transactionId");
+    private CardInfoCrypto(SecretKeySpec key, String cardNumber, String expirationMonthYear, String cvc) {
         checkArgument(hasText(cardNumber) && cardNumber.length() >= 10 && cardNumber.length() <= 16, "illegal cardNumber");
         checkArgument(hasText(expirationMonthYear) && expirationMonthYear.length() == 4, "illegal expirationMonthYear");
         checkArgument(hasText(cvc) && cvc.length() == 3, "illegal cvc");
 
-        this.transactionId = transactionId;
+        this.key = key;
         this.cardNumber = cardNumber;
         this.expirationMonthYear = expirationMonthYear;
         this.cvc = cvc;
     }
 
-    private CardInfoCrypto(String transactionId, String encryptedCardInfo) {
-        checkArgument(hasText(transactionId) && transactionId.length() == 20, "illegal transactionId");
+    private CardInfoCrypto(SecretKeySpec key, String encryptedCardInfo) {
         checkArgument(hasText(encryptedCardInfo), "illegal encryptedCardInfo");
 
-        this.transactionId = transactionId;
+        this.key = key;
         this.encryptedCardInfo = encryptedCardInfo;
     }
 
+    private CardInfoCrypto(SecretKeySpec key, byte[] encryptedCardInfoBytes) {
+        checkArgument(encryptedCardInfoBytes != null && encryptedCardInfoBytes.length > 0, "illegal encryptedCardInfo");
+
+        this.key = key;
+        this.encryptedCardInfoBytes = encryptedCardInfoBytes;
+    }
+
     private CardInfoCrypto encrypt() {
-        String cardInfo = String.join("|", this.cardNumber, this.expirationMonthYear, this.cvc);
-        this.encryptedCardInfo = AES.encrypt(cardInfo, this.transactionId).orElseThrow(() -> new CryptoFailException("fail to encrypt"));
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+
+        final Optional<byte[]> encrypted = AES.encrypt(toPlainBytes(), this.key);
+        event.complete(CryptoEvent.ENCRYPT, encrypted.isPresent());
 
+        this.encryptedCardInfoBytes = encrypted.orElseThrow(() -> new CryptoFailException("fail to encrypt"));
         return this;
     }
 
     private CardInfoCrypto decrypt() {
-        String decrypted = AES.decrypt(this.encryptedCardInfo, this.transactionId).orElseThrow(() -> new CryptoFailException("fail to decrypt"));
-        String[] array = decrypted.split("\\|");
-        this.cardNumber = array[0];
-        this.expirationMonthYear = array[1];
-        this.cvc = array[2];
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+
+        boolean decrypted = false;
+        try {
+            if (this.encryptedCardInfoBytes == null) {
+                this.encryptedCardInfoBytes = Base64.getDecoder().decode(this.encryptedCardInfo);
+            }
+            decrypted = AES.decrypt(this.encryptedCardInfoBytes, this.key, this::fromPlainBytes);
+        } finally {
+            event.complete(CryptoEvent.DECRYPT, decrypted);
+        }
+
+        if (!decrypted) {
+            throw new CryptoFailException("fail to decrypt");
+        }
 
         return this;
     }
 
+    /**
+     * 카드번호|유효기간|cvc 를 문자열 결합 없이 바로 byte 배열로 만듭니다. 카드정보는 모두 숫자이므로 ASCII 로 충분합니다.
+     */
+    private byte[] toPlainBytes() {
+        final byte[] plain = new byte[this.cardNumber.length() + this.expirationMonthYear.length() + this.cvc.length() + 2];
+        int position = writeAscii(this.cardNumber, plain, 0);
+        plain[position++] = DELIMITER;
+        position = writeAscii(this.expirationMonthYear, plain, position);
+        plain[position++] = DELIMITER;
+        writeAscii(this.cvc, plain, position);
+        return plain;
+    }
+
+    private static int writeAscii(String value, byte[] target, int position) {
+        for (int i = 0; i < value.length(); i++) {
+            target[position++] = (byte) value.charAt(i);
+        }
+        return position;
+    }
+
+    /**
+     * 복호화 된 버퍼를 split 없이 구분자 위치로 나눠서 객체화합니다.
+     */
+    private void fromPlainBytes(byte[] plain, int length) {
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < length; i++) {
+            if (plain[i] == DELIMITER) {
+                if (first < 0) {
+                    first = i;
+                } else {
+                    second = i;
+                    break;
+                }
+            }
+        }
+
+        if (first < 0 || second < 0) {
+            throw new CryptoFailException("fail to decrypt");
+        }
+
+        this.cardNumber = new String(plain, 0, first, StandardCharsets.US_ASCII);
+        this.expirationMonthYear = new String(plain, first + 1, second - first - 1, StandardCharsets.US_ASCII);
+        this.cvc = new String(plain, second + 1, length - second - 1, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 관리번호로 만든 키로 암호화합니다. (CardVault 를 사용하기 전의 거래, 카드사 전문)
+     */
     static CardInfoCrypto encrypt(String transactionId, String cardNumber, String expirationMonthYear, String cvc) {
-        return new CardInfoCrypto(transactionId, cardNumber, expirationMonthYear, cvc).encrypt();
+        return new CardInfoCrypto(keyOf(transactionId), cardNumber, expirationMonthYear, cvc).encrypt();
+    }
+
+    /**
+     * 주어진 키로 암호화합니다. (CardVault)
+     */
+    static CardInfoCrypto encryptWithKey(SecretKeySpec key, String cardNumber, String expirationMonthYear, String cvc) {
+        return new CardInfoCrypto(requireNonNull(key), cardNumber, expirationMonthYear, cvc).encrypt();
+    }
+
+    /**
+     * 이미 암호화해 둔 카드정보(CardVault)로 만듭니다. 암/복호화하지 않습니다.
+     */
+    static CardInfoCrypto of(String cardNumber, String expirationMonthYear, String cvc, byte[] encryptedCardInfoBytes) {
+        checkArgument(encryptedCardInfoBytes != null && encryptedCardInfoBytes.length > 0, "illegal encryptedCardInfo");
+
+        final CardInfoCrypto cardInfoCrypto = new CardInfoCrypto(null, cardNumber, expirationMonthYear, cvc);
+        cardInfoCrypto.encryptedCardInfoBytes = encryptedCardInfoBytes;
+        return cardInfoCrypto;
     }
 
     static CardInfoCrypto decrypt(String transactionId, String encryptedCardInfo) {
-        return new CardInfoCrypto(transactionId, encryptedCardInfo).decrypt();
+        return new CardInfoCrypto(keyOf(transactionId), encryptedCardInfo).decrypt();
+    }
+
+    static CardInfoCrypto decrypt(String transactionId, byte[] encryptedCardInfoBytes) {
+        return new CardInfoCrypto(keyOf(transactionId), encryptedCardInfoBytes).decrypt();
+    }
+
+    static CardInfoCrypto decryptWithKey(SecretKeySpec key, byte[] encryptedCardInfoBytes) {
+        return new CardInfoCrypto(requireNonNull(key), encryptedCardInfoBytes).decrypt();
+    }
+
+    private static SecretKeySpec keyOf(String transactionId) {
+        checkArgument(hasText(transactionId) && transactionId.length() == 20, "illegal transactionId");
+        return AES.getSecretKeySpec(transactionId);
     }
 
     String getCardNumber() {
@@ -91,48 +199,111 @@ class CardInfoCrypto {
     }
 
     String getEncryptedCardInfo() {
+        if (this.encryptedCardInfo == null) {
+            this.encryptedCardInfo = Base64.getEncoder().encodeToString(this.encryptedCardInfoBytes);
+        }
         return encryptedCardInfo;
     }
 
+    byte[] getEncryptedCardInfoBytes() {
+        return encryptedCardInfoBytes;
+    }
+
+    /**
+     * 카드사 전문의 암호화된 카드정보. 카드사는 결제 관리번호로 만든 키로 복호화하므로,
+     * 다른 키로 암호화된 카드정보(CardVault)는 결제 관리번호로 만든 키로 다시 암호화합니다.
+     *
+     * @param payTransactionId : 결제 관리번호 (취소 거래는 원거래의 관리번호)
+     */
+    String getEncryptedCardInfo(String payTransactionId) {
+        final SecretKeySpec messageKey = keyOf(payTransactionId);
+        if (messageKey.equals(this.key)) {
+            return getEncryptedCardInfo();
+        }
+        return new CardInfoCrypto(messageKey, this.cardNumber, this.expirationMonthYear, this.cvc).encrypt().getEncryptedCardInfo();
+    }
+
+    /**
+     * Cipher, MessageDigest 는 thread-safe 하지 않으므로 스레드별로 재사용하고,
+     * 트랜잭션 아이디로부터 만든 키는 최근에 사용한 것들만 캐시합니다. (결제 직후의 취소/조회가 같은 키를 사용)
+     */
     private static class AES {
-        private static final String UTF_8 = StandardCharsets.UTF_8.toString();
         private static final String ALGORITHM = "AES/ECB/PKCS5PADDING";
+        private static final int KEY_CACHE_SIZE = 10_000;
+        private static final int BUFFER_SIZE = 64;
 
-        private static SecretKeySpec getSecretKeySpec(String secret) {
-            byte[] key;
-            SecretKeySpec secretKey = null;
+        private static final ThreadLocal<MessageDigest> SHA_1 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
             try {
-                MessageDigest sha = MessageDigest.getInstance("SHA-1");
-                key = Arrays.copyOf(sha.digest(secret.getBytes(UTF_8)), 16);
-                secretKey = new SecretKeySpec(key, "AES");
-            } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-                log.error("Error during SecretKeySpec", e);
+                return Cipher.getInstance(ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+        private static final Cache<String, SecretKeySpec> KEY_CACHE = CacheBuilder.newBuilder()
+                .maximumSize(KEY_CACHE_SIZE)
+                .build();
+
+        private static SecretKeySpec getSecretKeySpec(String secret) {
+            SecretKeySpec secretKey = KEY_CACHE.getIfPresent(secret);
+            if (secretKey == null) {
+                final MessageDigest sha = SHA_1.get();
+                sha.reset();
+                final byte[] digest = sha.digest(secret.getBytes(StandardCharsets.UTF_8));
+                secretKey = new SecretKeySpec(digest, 0, 16, "AES");
+                KEY_CACHE.put(secret, secretKey);
             }
             return secretKey;
         }
 
-        private static Optional<String> encrypt(String strToEncrypt, String secret) {
+        private static Optional<byte[]> encrypt(byte[] bytesToEncrypt, SecretKeySpec key) {
             try {
-                SecretKeySpec secretKey = getSecretKeySpec(secret);
-                Cipher cipher = Cipher.getInstance(ALGORITHM);
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-                return Optional.of(Base64.getEncoder().encodeToString(cipher.doFinal(strToEncrypt.getBytes(UTF_8))));
+                final Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.ENCRYPT_MODE, key);
+                return Optional.of(cipher.doFinal(bytesToEncrypt));
             } catch (Exception e) {
                 log.error("Error during encrypting", e);
             }
             return Optional.empty();
         }
 
-        private static Optional<String> decrypt(String strToDecrypt, String secret) {
+        private static boolean decrypt(byte[] bytesToDecrypt, SecretKeySpec key, PlainConsumer consumer) {
             try {
-                SecretKeySpec secretKey = getSecretKeySpec(secret);
-                Cipher cipher = Cipher.getInstance(ALGORITHM);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-                return Optional.of(new String(cipher.doFinal(Base64.getDecoder().decode(strToDecrypt))));
+                final Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, key);
+
+                byte[] buffer = BUFFER.get();
+                final int outputSize = cipher.getOutputSize(bytesToDecrypt.length);
+                if (outputSize > buffer.length) {
+                    buffer = new byte[outputSize];
+                }
+
+                final int length = cipher.doFinal(bytesToDecrypt, 0, bytesToDecrypt.length, buffer, 0);
+                try {
+                    consumer.accept(buffer, length);
+                } finally {
+                    Arrays.fill(buffer, 0, length, (byte) 0);
+                }
+                return true;
             } catch (Exception e) {
                 log.error("Error during decrypting", e);
             }
-            return Optional.empty();
+            return false;
         }
     }
+
+    @FunctionalInterface
+    private interface PlainConsumer {
+        void accept(byte[] plain, int length);
+    }
 }
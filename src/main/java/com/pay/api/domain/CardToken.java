@@ -0,0 +1,85 @@
+package com.pay.api.domain;
+
+import lombok.Getter;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * CardVault 에 한 번만 저장하는 카드정보. 카드정보는 pay.card-vault.secret 과 토큰으로 만든 키로 암호화합니다.
+ */
+@Getter
+@Entity
+@Table(indexes = {@Index(columnList = "KEY_VERSION", name = "IDX_CARD_TOKEN_KEY_VERSION")})
+public class CardToken implements Persistable<String> {
+
+    /**
+     * 토큰만으로 만든 키 (이전 버전). CardTokenReencryptor 가 SECRET_KEY 로 다시 암호화합니다.
+     */
+    static final int TOKEN_KEY = 0;
+
+    /**
+     * secret 과 토큰으로 만든 키
+     */
+    static final int SECRET_KEY = 1;
+
+    @Id
+    @Column(name = "TOKEN", nullable = false, updatable = false, length = CardVault.TOKEN_LENGTH)
+    private String token;
+
+    @Column(name = "ENCRYPTED_CARD_INFO", nullable = false, length = Transaction.ENCRYPTED_CARD_INFO_LENGTH)
+    private byte[] encryptedCardInfo;
+
+    @Column(name = "KEY_VERSION", nullable = false)
+    private int keyVersion;
+
+    @Column(name = "CREATED_AT", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 새로 만든 row 는 merge(select 후 insert) 하지 않고 바로 insert 합니다.
+     */
+    @Transient
+    private boolean created;
+
+    public CardToken() {
+    }
+
+    CardToken(String token, byte[] encryptedCardInfo) {
+        this(token, encryptedCardInfo, SECRET_KEY);
+    }
+
+    CardToken(String token, byte[] encryptedCardInfo, int keyVersion) {
+        this.token = token;
+        this.encryptedCardInfo = encryptedCardInfo;
+        this.keyVersion = keyVersion;
+        this.created = true;
+    }
+
+    void reencrypt(byte[] encryptedCardInfo) {
+        this.encryptedCardInfo = encryptedCardInfo;
+        this.keyVersion = SECRET_KEY;
+    }
+
+    @Override
+    public String getId() {
+        return token;
+    }
+
+    @Override
+    public boolean isNew() {
+        return created;
+    }
+
+    @PrePersist
+    protected void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PostPersist
+    @PostLoad
+    protected void loaded() {
+        this.created = false;
+    }
+}
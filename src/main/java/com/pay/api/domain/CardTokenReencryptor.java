@@ -0,0 +1,78 @@
+package com.pay.api.domain;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 토큰만으로 만든 키(CardToken.TOKEN_KEY)로 저장된 카드정보를 secret 으로 만든 키로 다시 암호화합니다.
+ * - 실행마다 pay.card-vault.reencrypt.chunk-size 건을 하나의 DB 트랜잭션에서 옮기므로 한 번에 오래 걸리지 않습니다.
+ * - 같은 토큰은 같은 값으로 다시 암호화되므로 여러 노드가 같은 row 를 바꿔도 결과가 같습니다.
+ * - 다시 암호화하기 전에도 CardVault 는 key version 으로 이전 키를 골라서 읽습니다.
+ */
+@Slf4j
+@Component
+public class CardTokenReencryptor implements MeterBinder {
+
+    private final CardTokenRepository cardTokenRepository;
+    private final CardVault cardVault;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    private final LongAdder reencrypted = new LongAdder();
+
+    public CardTokenReencryptor(CardTokenRepository cardTokenRepository, CardVault cardVault, PlatformTransactionManager transactionManager,
+                                @Value("${pay.card-vault.reencrypt.chunk-size:500}") int chunkSize) {
+        checkArgument(chunkSize > 0, "pay.card-vault.reencrypt.chunk-size must be positive");
+
+        this.cardTokenRepository = cardTokenRepository;
+        this.cardVault = cardVault;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${pay.card-vault.reencrypt.interval-millis:10000}")
+    public void reencrypt() {
+        try {
+            final int count = reencryptChunk();
+            if (count > 0) {
+                log.info("Re-encrypted {} card tokens", count);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error during re-encrypting card tokens", e);
+        }
+    }
+
+    /**
+     * @return 다시 암호화한 건수
+     */
+    int reencryptChunk() {
+        final Integer count = transactionTemplate.execute(status -> {
+            final List<CardToken> cardTokens = cardTokenRepository.findByKeyVersion(CardToken.TOKEN_KEY, PageRequest.of(0, chunkSize));
+            cardTokens.forEach(cardVault::reencrypt);
+            cardTokenRepository.saveAll(cardTokens);
+            return cardTokens.size();
+        });
+        reencrypted.add(count == null ? 0 : count);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pay.card-vault.reencrypted", reencrypted, LongAdder::sum)
+                .description("card tokens re-encrypted with the secret derived key")
+                .register(registry);
+    }
+}
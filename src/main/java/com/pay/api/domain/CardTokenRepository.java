@@ -0,0 +1,13 @@
+package com.pay.api.domain;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CardTokenRepository extends JpaRepository<CardToken, String> {
+
+    List<CardToken> findByKeyVersion(int keyVersion, Pageable pageable);
+}
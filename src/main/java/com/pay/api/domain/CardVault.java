@@ -0,0 +1,245 @@
+package com.pay.api.domain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 카드정보를 토큰으로 한 번만 저장하고(CardToken), Transaction 은 토큰만 가집니다.
+ * - 토큰은 카드번호|유효기간|cvc 의 keyed-HMAC(pay.card-vault.secret) 이므로 같은 카드는 같은 토큰이 되고, 카드정보는 한 번만 암호화합니다.
+ * - 암호화 키는 secret 으로 만든 키로 토큰을 HMAC 한 값이므로, DB 에 저장된 토큰만으로는 카드정보를 복호화할 수 없습니다.
+ * - 최근에 사용한 토큰의 카드정보는 캐시(pay.card-vault.cache.*)에 두므로 같은 카드의 재결제, 취소, 조회는 암/복호화하지 않습니다.
+ * - 캐시는 크기와 저장 후 유효시간으로 제한하고, 캐시에서 제거된 카드정보는 0 으로 덮어씁니다. 유효시간이 지난 항목은 주기적으로 정리합니다.
+ * - 저장한 토큰은 DB 트랜잭션이 커밋된 뒤에 캐시에 넣으므로, 롤백된 토큰이 캐시에 남지 않습니다.
+ * - secret 은 기본값이 없으므로 설정하지 않으면 시작하지 않습니다. secret 을 바꾸면 같은 카드가 다른 토큰으로 다시 저장됩니다. (이전 토큰도 계속 읽을 수 있습니다)
+ * 적중/실패/제거 횟수와 크기는 cache.*{cache=pay.card-vault} 메트릭으로 노출합니다.
+ */
+@Component
+public class CardVault implements MeterBinder {
+
+    public static final int TOKEN_LENGTH = 20;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte DELIMITER = '|';
+    private static final int AES_KEY_LENGTH = 16;
+
+    /**
+     * 토큰용 HMAC 과 같은 secret 을 쓰지 않도록 secret 으로 암호화 키를 만들 키를 따로 만듭니다.
+     */
+    private static final byte[] KEY_ENCRYPTION_KEY_LABEL = "pay.card-vault.key-encryption-key".getBytes(StandardCharsets.US_ASCII);
+
+    private final CardTokenRepository cardTokenRepository;
+
+    private final ThreadLocal<Mac> mac;
+    private final ThreadLocal<Mac> keyMac;
+
+    private final Cache<String, Entry> cache;
+
+    public CardVault(CardTokenRepository cardTokenRepository,
+                     @Value("${pay.card-vault.secret}") String secret,
+                     @Value("${pay.card-vault.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${pay.card-vault.cache.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+        checkArgument(hasText(secret), "pay.card-vault.secret is mandatory");
+
+        this.cardTokenRepository = cardTokenRepository;
+
+        final SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = threadLocalMac(key);
+        this.keyMac = threadLocalMac(new SecretKeySpec(this.mac.get().doFinal(KEY_ENCRYPTION_KEY_LABEL), ALGORITHM));
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .removalListener((RemovalListener<String, Entry>) notification -> notification.getValue().destroy())
+                .recordStats()
+                .build();
+    }
+
+    private static ThreadLocal<Mac> threadLocalMac(SecretKeySpec key) {
+        return ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * 카드정보의 토큰 (base64url 20자리)
+     */
+    String tokenOf(String cardNumber, String expirationMonthYear, String cvc) {
+        final Mac instance = mac.get();
+        instance.update(cardNumber.getBytes(StandardCharsets.US_ASCII));
+        instance.update(DELIMITER);
+        instance.update(expirationMonthYear.getBytes(StandardCharsets.US_ASCII));
+        instance.update(DELIMITER);
+        instance.update(cvc.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(instance.doFinal()).substring(0, TOKEN_LENGTH);
+    }
+
+    /**
+     * 토큰의 카드정보가 없을 때만 암호화해서 저장합니다. 진행 중인 DB 트랜잭션에서 저장하므로 결제와 함께 커밋/롤백됩니다.
+     */
+    CardInfoCrypto store(String token, String cardNumber, String expirationMonthYear, String cvc) {
+        final CardInfoCrypto cached = getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Optional<CardToken> stored = cardTokenRepository.findById(token);
+        final CardInfoCrypto cardInfo;
+        if (stored.isPresent()) {
+            //같은 토큰이면 같은 카드정보이므로 복호화하지 않습니다.
+            cardInfo = CardInfoCrypto.of(cardNumber, expirationMonthYear, cvc, stored.get().getEncryptedCardInfo());
+        } else {
+            cardInfo = CardInfoCrypto.encryptWithKey(keyOf(token), cardNumber, expirationMonthYear, cvc);
+            cardTokenRepository.save(new CardToken(token, cardInfo.getEncryptedCardInfoBytes()));
+        }
+
+        putAfterCommit(token, cardInfo);
+        return cardInfo;
+    }
+
+    /**
+     * 토큰의 카드정보. 캐시에 없으면 CardToken 을 읽어서 복호화합니다.
+     */
+    CardInfoCrypto load(String token) {
+        final CardInfoCrypto cached = getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CardToken cardToken = cardTokenRepository.findById(token)
+                .orElseThrow(() -> new IllegalStateException("card token not found"));
+        final CardInfoCrypto cardInfo = decrypt(token, cardToken.getEncryptedCardInfo(), cardToken.getKeyVersion());
+        cache.put(token, new Entry(cardInfo));
+        return cardInfo;
+    }
+
+    /**
+     * 이미 읽어 온 암호화된 카드정보로 토큰의 카드정보를 만듭니다. (TransactionExporter 처럼 DB 를 다시 읽을 수 없는 경우)
+     * 많은 카드를 한 번씩만 읽으므로 복호화한 카드정보는 캐시에 넣지 않습니다.
+     */
+    CardInfoCrypto load(String token, byte[] encryptedCardInfo, int keyVersion) {
+        final CardInfoCrypto cached = getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+        return decrypt(token, encryptedCardInfo, keyVersion);
+    }
+
+    private CardInfoCrypto decrypt(String token, byte[] encryptedCardInfo, int keyVersion) {
+        return keyVersion == CardToken.TOKEN_KEY
+                ? CardInfoCrypto.decrypt(token, encryptedCardInfo)
+                : CardInfoCrypto.decryptWithKey(keyOf(token), encryptedCardInfo);
+    }
+
+    /**
+     * 토큰만으로 만든 키(CardToken.TOKEN_KEY)로 암호화된 카드정보를 secret 으로 만든 키로 다시 암호화합니다.
+     */
+    void reencrypt(CardToken cardToken) {
+        if (cardToken.getKeyVersion() != CardToken.TOKEN_KEY) {
+            return;
+        }
+
+        final String token = cardToken.getToken();
+        final CardInfoCrypto cardInfo = CardInfoCrypto.decrypt(token, cardToken.getEncryptedCardInfo());
+        cardToken.reencrypt(CardInfoCrypto.encryptWithKey(keyOf(token), cardInfo.getCardNumber(), cardInfo.getExpirationMonthYear(), cardInfo.getCvc()).getEncryptedCardInfoBytes());
+        cache.invalidate(token);
+    }
+
+    /**
+     * 토큰의 카드정보를 암호화할 AES 키 : HMAC(secret 으로 만든 키, 토큰) 의 앞 16 byte
+     */
+    private SecretKeySpec keyOf(String token) {
+        return new SecretKeySpec(keyMac.get().doFinal(token.getBytes(StandardCharsets.US_ASCII)), 0, AES_KEY_LENGTH, "AES");
+    }
+
+    private CardInfoCrypto getIfPresent(String token) {
+        final Entry entry = cache.getIfPresent(token);
+        return entry == null ? null : entry.open();
+    }
+
+    private void putAfterCommit(String token, CardInfoCrypto cardInfo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.put(token, new Entry(cardInfo));
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                cache.put(token, new Entry(cardInfo));
+            }
+        });
+    }
+
+    /**
+     * 캐시는 접근할 때만 유효시간이 지난 항목을 제거하므로, 요청이 없어도 카드정보가 오래 남지 않도록 정리합니다.
+     */
+    @Scheduled(fixedDelayString = "${pay.card-vault.cache.clean-up-interval-millis:10000}")
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, "pay.card-vault");
+    }
+
+    /**
+     * 캐시된 카드정보. 제거되면 값을 0 으로 덮어쓰고, 그 뒤에는 열 수 없습니다. (열 때마다 새 문자열을 만듭니다)
+     */
+    private static final class Entry {
+        private final char[] cardNumber;
+        private final char[] expirationMonthYear;
+        private final char[] cvc;
+        private final byte[] encryptedCardInfo;
+        private boolean destroyed;
+
+        private Entry(CardInfoCrypto cardInfo) {
+            this.cardNumber = cardInfo.getCardNumber().toCharArray();
+            this.expirationMonthYear = cardInfo.getExpirationMonthYear().toCharArray();
+            this.cvc = cardInfo.getCvc().toCharArray();
+            this.encryptedCardInfo = cardInfo.getEncryptedCardInfoBytes().clone();
+        }
+
+        private synchronized CardInfoCrypto open() {
+            if (destroyed) {
+                return null;
+            }
+            return CardInfoCrypto.of(new String(cardNumber), new String(expirationMonthYear), new String(cvc), encryptedCardInfo.clone());
+        }
+
+        private synchronized void destroy() {
+            destroyed = true;
+            Arrays.fill(cardNumber, '\0');
+            Arrays.fill(expirationMonthYear, '\0');
+            Arrays.fill(cvc, '\0');
+            Arrays.fill(encryptedCardInfo, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.pay.api.domain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 카드정보 암/복호화 한 건을 JFR 에 기록합니다. 평소에는 수 us 이므로 기본 설정에서는 1ms 이상 걸린 경우만 기록합니다.
+ * 키를 만드는 값(관리번호, 카드 토큰)은 기록하지 않습니다. 기록을 가진 사람이 카드정보를 복호화할 수 있기 때문입니다.
+ */
+@Name("com.pay.Crypto")
+@Label("Card Info Crypto")
+@Category({"Pay API", "Crypto"})
+@Description("Card info encryption or decryption")
+@Threshold("1 ms")
+@StackTrace(false)
+class CryptoEvent extends Event {
+
+    static final String ENCRYPT = "encrypt";
+    static final String DECRYPT = "decrypt";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Success")
+    boolean success;
+
+    void complete(String operation, boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+
+        this.operation = operation;
+        this.success = success;
+        commit();
+    }
+}
@@ -0,0 +1,135 @@
+package com.pay.api.domain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.pay.api.controller.find.FindResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 조회 결과(FindResponse)를 transactionId 기준으로 캐시합니다. (pay.find-cache.*)
+ * 카드정보는 캐시하지 않고, 꺼낼 때마다 CardVault(또는 관리번호로 암호화된 카드정보)에서 채웁니다. (Entry.open)
+ * 결제 건의 조회 결과는 취소가 일어나면 바뀌므로, 취소가 커밋된 뒤 원거래 항목을 무효화합니다.
+ * 조회하는 도중에 무효화가 일어나면 이미 읽어 온 값이 오래된 값일 수 있으므로 캐시에 남기지 않습니다.
+ * 적중/실패/제거 횟수와 크기는 cache.*{cache=pay.find-response} 메트릭으로 노출합니다.
+ */
+@Component
+public class FindResponseCache implements MeterBinder {
+
+    private final Cache<String, Entry> cache;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FindResponseCache(@Value("${pay.find-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${pay.find-cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public Entry get(String transactionId, Function<String, Entry> loader) {
+        final Entry cached = cache.getIfPresent(transactionId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long before = invalidations.get();
+        final Entry loaded = loader.apply(transactionId);
+
+        if (invalidations.get() == before) {
+            cache.put(transactionId, loaded);
+
+            //put 직전에 무효화가 끼어들었으면 방금 넣은 값을 다시 제거합니다.
+            if (invalidations.get() != before) {
+                cache.invalidate(transactionId);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 진행 중인 DB 트랜잭션이 있으면 커밋 이후에, 없으면 바로 무효화합니다.
+     */
+    public void invalidateAfterCommit(String transactionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(transactionId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                invalidate(transactionId);
+            }
+        });
+    }
+
+    public void invalidate(String transactionId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(transactionId);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, "pay.find-response");
+    }
+
+    /**
+     * 카드정보를 뺀 조회 결과와, 카드정보를 다시 읽을 원거래의 토큰(또는 관리번호로 암호화된 카드정보)
+     */
+    static final class Entry {
+        private final FindResponse findResponse;
+        private final String payTransactionId;
+        private final String cardToken;
+        private final byte[] encryptedCardInfo;
+
+        Entry(FindResponse findResponse, String payTransactionId, String cardToken, byte[] encryptedCardInfo) {
+            this.findResponse = findResponse;
+            this.payTransactionId = payTransactionId;
+            this.cardToken = cardToken;
+            this.encryptedCardInfo = encryptedCardInfo;
+        }
+
+        /**
+         * 취소 거래는 원거래와 같은 카드이므로 원거래의 카드정보를 가집니다.
+         */
+        static Entry of(Transaction transaction) {
+            final Transaction payTransaction = transaction.getPayTransaction() == null ? transaction : transaction.getPayTransaction();
+            return new Entry(new FindResponse(transaction), payTransaction.getTransactionId(), payTransaction.getCardToken(), payTransaction.getEncryptedCardInfo());
+        }
+
+        /**
+         * 카드정보를 채운 조회 결과
+         */
+        FindResponse open(CardVault cardVault) {
+            final CardInfoCrypto cardInfo = cardToken == null
+                    ? CardInfoCrypto.decrypt(payTransactionId, encryptedCardInfo)
+                    : cardVault.load(cardToken);
+            return findResponse.withCardInfo(cardInfo.getCardNumber(), cardInfo.getExpirationMonthYear(), cardInfo.getCvc());
+        }
+
+        FindResponse getFindResponse() {
+            return findResponse;
+        }
+    }
+}
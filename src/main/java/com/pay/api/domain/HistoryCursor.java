@@ -0,0 +1,50 @@
+package com.pay.api.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 카드별 거래 목록의 keyset 페이지 위치 : 이전 페이지 마지막 거래의 (CREATED_AT, ID)
+ * 클라이언트에는 base64url 문자열로 넘기고, 다음 페이지는 이 값보다 앞선(오래된) 거래부터 읽습니다.
+ */
+final class HistoryCursor {
+
+    private static final char DELIMITER = ',';
+
+    private final LocalDateTime createdAt;
+    private final long id;
+
+    HistoryCursor(LocalDateTime createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((createdAt.toString() + DELIMITER + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static HistoryCursor decode(String cursor) {
+        checkArgument(hasText(cursor), "illegal cursor");
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            final int delimiter = decoded.lastIndexOf(DELIMITER);
+            checkArgument(delimiter > 0, "illegal cursor");
+            return new HistoryCursor(LocalDateTime.parse(decoded.substring(0, delimiter)), Long.parseLong(decoded.substring(delimiter + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("illegal cursor", e);
+        }
+    }
+}
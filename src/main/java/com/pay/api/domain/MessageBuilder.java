@@ -1,33 +1,52 @@
 package com.pay.api.domain;
 
-import com.google.common.base.Strings;
 import lombok.Getter;
 
-import java.util.function.BiFunction;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static org.springframework.util.StringUtils.hasText;
 
 
-class MessageBuilder {
+/**
+ * 카드사 전문(450 byte 고정 길이)을 만듭니다.
+ * 각 필드는 임시 문자열을 만들지 않고 byte 배열/ByteBuffer 에 바로 기록하며, 숫자도 자릿수 단위로 직접 기록합니다.
+ * 전문은 이 패키지에서만 만들고, 다른 패키지에는 만들어 둔 문자열 전문을 기록하는 encodeTo(CharSequence, ByteBuffer) 만 공개합니다.
+ */
+public final class MessageBuilder {
 
     private enum MessageType {
         PAYMENT,
         CANCEL
     }
 
-    private static final int DEFAULT_LENGTH = 450;
+    static final int DEFAULT_LENGTH = 450;
+
+    private static final int DATA_LENGTH = DEFAULT_LENGTH - 4;
+
+    private static final DataField[] FIELDS = DataField.values();
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[DEFAULT_LENGTH]);
 
-    private final String length = "446";
     private final MessageType type;
     private String id;
     private String cardNumber;
-    private String installment;
+    private int installment;
     private String expirationMonthYear;
     private String cvc;
-    private String amount;
-    private String vat;
+    private long amount;
+    private long vat;
+    /**
+     * 숫자 필드는 기본값 0 과 구분할 수 없으므로 설정 여부를 따로 둡니다.
+     */
+    private boolean installmentSet;
+    private boolean amountSet;
+    private boolean vatSet;
     private String payTransactionId = "";
     private String encryptedCardInformation;
     private final String temp = "";
@@ -68,20 +87,23 @@ class MessageBuilder {
     MessageBuilder installment(int installment) {
         checkArgument(installment >= 0 && installment <= 12, "illegal installment");
 
-        this.installment = String.valueOf(installment);
+        this.installment = installment;
+        this.installmentSet = true;
         return this;
     }
 
     MessageBuilder amount(long amount) {
         checkArgument(amount >= 100 && amount <= 1_000_000_000, "illegal amount");
 
-        this.amount = String.valueOf(amount);
+        this.amount = amount;
+        this.amountSet = true;
         return this;
     }
 
     MessageBuilder vat(long vat) {
         checkArgument(vat > -1, "illegal vat");
-        this.vat = String.valueOf(vat);
+        this.vat = vat;
+        this.vatSet = true;
         return this;
     }
 
@@ -105,61 +127,206 @@ class MessageBuilder {
         return new MessageBuilder(MessageType.CANCEL);
     }
 
+    /**
+     * 기존 호환용 문자열 전문. 스레드별 버퍼에 기록한 뒤 결과 문자열 하나만 만듭니다.
+     */
     String build() {
-        final StringBuilder stringBuilder = new StringBuilder(DEFAULT_LENGTH);
+        final byte[] buffer = BUFFER.get();
+        encodeTo(buffer, 0);
+        return new String(buffer, 0, DEFAULT_LENGTH, StandardCharsets.ISO_8859_1);
+    }
 
-        for (DataField field : DataField.values()) {
-            final BiFunction<Integer, String, String> generator = field.getDataType().getGenerator();
-            final String value = field.getValueSelector().apply(this);
-            final int length = field.getLength();
+    byte[] encode() {
+        final byte[] target = new byte[DEFAULT_LENGTH];
+        encodeTo(target, 0);
+        return target;
+    }
+
+    /**
+     * target 의 현재 position 에 전문을 기록하고 position 을 450 만큼 이동합니다.
+     */
+    void encodeTo(ByteBuffer target) {
+        encodeTo(target, this::encodeTo);
+    }
+
+    /**
+     * build 로 만들어 둔 문자열 전문을 target 의 현재 position 에 기록하고 position 을 450 만큼 이동합니다. build 와 같은 1 byte 문자를 씁니다.
+     */
+    public static void encodeTo(CharSequence message, ByteBuffer target) {
+        checkArgument(message != null && message.length() == DEFAULT_LENGTH, "illegal message");
+
+        encodeTo(target, (bytes, offset) -> {
+            for (int i = 0; i < DEFAULT_LENGTH; i++) {
+                bytes[offset + i] = (byte) message.charAt(i);
+            }
+        });
+    }
 
-            final String str = generator.apply(length, value);
-            stringBuilder.append(str);
+    /**
+     * heap buffer 는 배열에 바로 기록하고, direct buffer 는 스레드별 버퍼에 기록한 뒤 한 번에 복사합니다.
+     */
+    private static void encodeTo(ByteBuffer target, Encoder encoder) {
+        checkArgument(target.remaining() >= DEFAULT_LENGTH, "buffer remaining < " + DEFAULT_LENGTH);
+
+        final int position = target.position();
+        if (target.hasArray()) {
+            encoder.encodeTo(target.array(), target.arrayOffset() + position);
+            target.position(position + DEFAULT_LENGTH);
+        } else {
+            final byte[] buffer = BUFFER.get();
+            encoder.encodeTo(buffer, 0);
+            target.put(buffer, 0, DEFAULT_LENGTH);
         }
+    }
 
-        return stringBuilder.toString();
+    void encodeTo(byte[] target, int offset) {
+        checkArgument(target.length - offset >= DEFAULT_LENGTH, "buffer remaining < " + DEFAULT_LENGTH);
+
+        for (DataField field : FIELDS) {
+            final int fieldOffset = offset + field.getOffset();
+            if (field.isNumeric()) {
+                checkState(field.getSetSelector().test(this), "%s is not set", field);
+                field.getDataType().write(field, field.getNumberSelector().applyAsLong(this), target, fieldOffset);
+            } else {
+                field.getDataType().write(field, field.getTextSelector().apply(this), target, fieldOffset);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        void encodeTo(byte[] target, int offset);
     }
 
     enum DataField {
-        DATA_LENGTH(DataType.NUMBER, mb -> mb.length, 4),
-        DATA_TYPE(DataType.STRING, mb -> mb.type.name(), 10),
-        UID(DataType.STRING, mb -> mb.id, 20),
-        CARD_NUMBER(DataType.NUMBER_L, mb -> mb.cardNumber, 20),
-        INSTALLMENT(DataType.NUMBER_0, mb -> mb.installment, 2),
-        EXPIRATION_MONTH_YEAR(DataType.NUMBER_L, mb -> mb.expirationMonthYear, 4),
-        CVC(DataType.NUMBER_L, mb -> mb.cvc, 3),
-        AMOUNT(DataType.NUMBER, mb -> mb.amount, 10),
-        VAT(DataType.NUMBER_0, mb -> mb.vat, 10),
-        ORIGIN_TRANSACTION_ID(DataType.STRING, mb -> mb.payTransactionId, 20),
-        ENCRYPTED_CARD_INFO(DataType.STRING, mb -> mb.encryptedCardInformation, 300),
-        TEMP(DataType.STRING, mb -> mb.temp, 47);
+        DATA_LENGTH(DataType.NUMBER, 4, (MessageBuilder mb) -> MessageBuilder.DATA_LENGTH, (MessageBuilder mb) -> true),
+        DATA_TYPE(DataType.STRING, 10, (MessageBuilder mb) -> mb.type.name()),
+        UID(DataType.STRING, 20, (MessageBuilder mb) -> mb.id),
+        CARD_NUMBER(DataType.NUMBER_L, 20, (MessageBuilder mb) -> mb.cardNumber),
+        INSTALLMENT(DataType.NUMBER_0, 2, (MessageBuilder mb) -> mb.installment, (MessageBuilder mb) -> mb.installmentSet),
+        EXPIRATION_MONTH_YEAR(DataType.NUMBER_L, 4, (MessageBuilder mb) -> mb.expirationMonthYear),
+        CVC(DataType.NUMBER_L, 3, (MessageBuilder mb) -> mb.cvc),
+        AMOUNT(DataType.NUMBER, 10, (MessageBuilder mb) -> mb.amount, (MessageBuilder mb) -> mb.amountSet),
+        VAT(DataType.NUMBER_0, 10, (MessageBuilder mb) -> mb.vat, (MessageBuilder mb) -> mb.vatSet),
+        ORIGIN_TRANSACTION_ID(DataType.STRING, 20, (MessageBuilder mb) -> mb.payTransactionId),
+        ENCRYPTED_CARD_INFO(DataType.STRING, 300, (MessageBuilder mb) -> mb.encryptedCardInformation),
+        TEMP(DataType.STRING, 47, (MessageBuilder mb) -> mb.temp);
+
+        static {
+            int offset = 0;
+            for (DataField field : values()) {
+                field.offset = offset;
+                offset += field.length;
+            }
+            checkState(offset == DEFAULT_LENGTH, "sum of field length must be " + DEFAULT_LENGTH);
+        }
 
         @Getter
-        private DataType dataType;
+        private final DataType dataType;
         @Getter
-        private Function<MessageBuilder, String> valueSelector;
+        private final Function<MessageBuilder, String> textSelector;
         @Getter
-        private int length;
+        private final ToLongFunction<MessageBuilder> numberSelector;
+        @Getter
+        private final Predicate<MessageBuilder> setSelector;
+        @Getter
+        private final int length;
+        @Getter
+        private int offset;
+
+        DataField(DataType dataType, int length, Function<MessageBuilder, String> textSelector) {
+            this.dataType = dataType;
+            this.textSelector = textSelector;
+            this.numberSelector = null;
+            this.setSelector = null;
+            this.length = length;
+        }
 
-        DataField(DataType dataType, Function<MessageBuilder, String> valueSelector, int length) {
+        DataField(DataType dataType, int length, ToLongFunction<MessageBuilder> numberSelector, Predicate<MessageBuilder> setSelector) {
             this.dataType = dataType;
-            this.valueSelector = valueSelector;
+            this.textSelector = null;
+            this.numberSelector = numberSelector;
+            this.setSelector = setSelector;
             this.length = length;
         }
+
+        boolean isNumeric() {
+            return numberSelector != null;
+        }
     }
 
     enum DataType {
-        NUMBER(((integer, value) -> Strings.padStart(value, integer, ' '))),
-        NUMBER_0(((integer, value) -> Strings.padStart(value, integer, '0'))),
-        NUMBER_L(((integer, value) -> Strings.padEnd(value, integer, ' '))),
-        STRING(((integer, value) -> Strings.padEnd(value, integer, ' ')));
-
+        NUMBER(true, (byte) ' '),
+        NUMBER_0(true, (byte) '0'),
+        NUMBER_L(false, (byte) ' '),
+        STRING(false, (byte) ' ');
+
+        /**
+         * true 이면 오른쪽 정렬(앞을 padding), false 이면 왼쪽 정렬(뒤를 padding)
+         */
         @Getter
-        BiFunction<Integer, String, String> generator;
+        private final boolean rightAligned;
+        @Getter
+        private final byte padding;
+
+        DataType(boolean rightAligned, byte padding) {
+            this.rightAligned = rightAligned;
+            this.padding = padding;
+        }
+
+        void write(DataField field, String value, byte[] target, int offset) {
+            checkState(value != null, "%s is not set", field);
+
+            final int length = field.getLength();
+            final int size = value.length();
+            checkLength(field, size, length);
+
+            final int start = rightAligned ? offset + length - size : offset;
+            fill(target, offset, start);
+            for (int i = 0; i < size; i++) {
+                target[start + i] = (byte) value.charAt(i);
+            }
+            fill(target, start + size, offset + length);
+        }
+
+        void write(DataField field, long value, byte[] target, int offset) {
+            checkArgument(value >= 0, "%s must not be negative", field);
+
+            final int length = field.getLength();
+            final int size = digits(value);
+            checkLength(field, size, length);
+
+            final int start = rightAligned ? offset + length - size : offset;
+            fill(target, offset, start);
+            long remain = value;
+            for (int i = start + size - 1; i >= start; i--) {
+                target[i] = (byte) ('0' + (int) (remain % 10));
+                remain /= 10;
+            }
+            fill(target, start + size, offset + length);
+        }
+
+        private static void checkLength(DataField field, int size, int length) {
+            if (size > length) {
+                throw new IllegalArgumentException(field + " length " + size + " > " + length);
+            }
+        }
+
+        private void fill(byte[] target, int from, int to) {
+            for (int i = from; i < to; i++) {
+                target[i] = padding;
+            }
+        }
 
-        DataType(BiFunction<Integer, String, String> generator) {
-            this.generator = generator;
+        private static int digits(long value) {
+            int digits = 1;
+            long remain = value;
+            while (remain >= 10) {
+                remain /= 10;
+                digits++;
+            }
+            return digits;
         }
     }
 
-}
\ No newline at end of file
+}
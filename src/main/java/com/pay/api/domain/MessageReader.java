@@ -0,0 +1,217 @@
+package com.pay.api.domain;
+
+import com.pay.api.domain.MessageBuilder.DataField;
+import com.pay.api.domain.MessageBuilder.DataType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 카드사 전문(450 byte 고정 길이)을 복사하지 않고 읽습니다.
+ * MessageBuilder.DataField 의 offset 으로 필요한 필드만 읽고, 숫자 필드는 문자열을 만들지 않고 바로 변환합니다.
+ * wrap 으로 다른 전문을 가리키도록 재사용할 수 있으므로 저장된 전문을 대량으로 훑을 때는 하나의 인스턴스를 재사용합니다.
+ * 스레드 간에 공유하지 않습니다.
+ */
+public final class MessageReader {
+
+    public static final int MESSAGE_LENGTH = MessageBuilder.DEFAULT_LENGTH;
+
+    private static final String PAYMENT = "PAYMENT";
+    private static final String CANCEL = "CANCEL";
+
+    private CharSequence chars;
+    private ByteBuffer bytes;
+    private int base;
+
+    public MessageReader wrap(CharSequence message) {
+        checkArgument(message != null && message.length() >= MESSAGE_LENGTH, "illegal message");
+
+        this.chars = message;
+        this.bytes = null;
+        this.base = 0;
+        return this;
+    }
+
+    /**
+     * buffer 의 현재 position 부터 450 byte 를 전문으로 읽습니다. buffer 의 position/limit 은 바꾸지 않습니다.
+     */
+    public MessageReader wrap(ByteBuffer buffer) {
+        return wrap(buffer, buffer.position());
+    }
+
+    public MessageReader wrap(ByteBuffer buffer, int offset) {
+        checkArgument(buffer != null && offset >= 0 && buffer.limit() - offset >= MESSAGE_LENGTH, "illegal message");
+
+        this.chars = null;
+        this.bytes = buffer;
+        this.base = offset;
+        return this;
+    }
+
+    public int dataLength() {
+        return (int) readNumber(DataField.DATA_LENGTH);
+    }
+
+    public String dataType() {
+        return readText(DataField.DATA_TYPE);
+    }
+
+    public boolean isPayment() {
+        return textEquals(DataField.DATA_TYPE, PAYMENT);
+    }
+
+    public boolean isCancel() {
+        return textEquals(DataField.DATA_TYPE, CANCEL);
+    }
+
+    public String uid() {
+        return readText(DataField.UID);
+    }
+
+    /**
+     * 문자열을 만들지 않고 UID 를 비교합니다.
+     */
+    public boolean uidEquals(CharSequence uid) {
+        return textEquals(DataField.UID, uid);
+    }
+
+    public String cardNumber() {
+        return readText(DataField.CARD_NUMBER);
+    }
+
+    public int installment() {
+        return (int) readNumber(DataField.INSTALLMENT);
+    }
+
+    public String expirationMonthYear() {
+        return readText(DataField.EXPIRATION_MONTH_YEAR);
+    }
+
+    public String cvc() {
+        return readText(DataField.CVC);
+    }
+
+    public long amount() {
+        return readNumber(DataField.AMOUNT);
+    }
+
+    public long vat() {
+        return readNumber(DataField.VAT);
+    }
+
+    /**
+     * 결제 전문은 원거래 관리번호가 없으므로 빈 문자열을 반환합니다.
+     */
+    public String originTransactionId() {
+        return readText(DataField.ORIGIN_TRANSACTION_ID);
+    }
+
+    public String encryptedCardInfo() {
+        return readText(DataField.ENCRYPTED_CARD_INFO);
+    }
+
+    private char charAt(int index) {
+        if (chars != null) {
+            return chars.charAt(base + index);
+        }
+        return (char) (bytes.get(base + index) & 0xFF);
+    }
+
+    private long readNumber(DataField field) {
+        final int from = field.getOffset();
+        final int to = from + field.getLength();
+
+        int start = from;
+        while (start < to && charAt(start) == ' ') {
+            start++;
+        }
+
+        long value = 0;
+        int end = start;
+        for (; end < to; end++) {
+            final char c = charAt(end);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        for (int i = end; i < to; i++) {
+            if (charAt(i) != ' ') {
+                throw new IllegalArgumentException("illegal " + field);
+            }
+        }
+
+        if (end == start) {
+            throw new IllegalArgumentException("illegal " + field);
+        }
+        return value;
+    }
+
+    private String readText(DataField field) {
+        final int start = textStart(field);
+        final int end = textEnd(field);
+        if (start >= end) {
+            return "";
+        }
+
+        if (chars != null) {
+            return chars.subSequence(base + start, base + end).toString();
+        }
+
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + base + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        final char[] text = new char[end - start];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = charAt(start + i);
+        }
+        return new String(text);
+    }
+
+    private boolean textEquals(DataField field, CharSequence expected) {
+        final int start = textStart(field);
+        final int end = textEnd(field);
+        if (expected == null || end - start != expected.length()) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (charAt(i) != expected.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int textStart(DataField field) {
+        final int from = field.getOffset();
+        final int to = from + field.getLength();
+        if (!field.getDataType().isRightAligned()) {
+            return from;
+        }
+
+        int start = from;
+        while (start < to && charAt(start) == field.getDataType().getPadding()) {
+            start++;
+        }
+        return start;
+    }
+
+    private int textEnd(DataField field) {
+        final int from = field.getOffset();
+        int end = from + field.getLength();
+        if (field.getDataType().isRightAligned()) {
+            return end;
+        }
+
+        final DataType dataType = field.getDataType();
+        while (end > from && charAt(end - 1) == dataType.getPadding()) {
+            end--;
+        }
+        return end;
+    }
+}
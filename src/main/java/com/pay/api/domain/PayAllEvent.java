@@ -0,0 +1,78 @@
+package com.pay.api.domain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * 여러 건 결제(payAll) 한 번의 처리 시간과 단계별 처리 시간을 JFR 에 기록합니다. 기본 설정에서는 100ms 이상 걸린 요청만 기록합니다.
+ */
+@Name("com.pay.PayAll")
+@Label("Pay All")
+@Category({"Pay API", "Transaction"})
+@Description("Batch pay request, including lock acquisition and commit")
+@Threshold("100 ms")
+@StackTrace(false)
+class PayAllEvent extends Event {
+
+    @Label("Requests")
+    int requests;
+
+    @Label("Successes")
+    int successes;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Lock")
+    @Timespan
+    long lock;
+
+    @Label("Encrypt")
+    @Timespan
+    long encrypt;
+
+    @Label("Message")
+    @Timespan
+    long message;
+
+    @Label("Save")
+    @Timespan
+    long save;
+
+    @Label("Outbox")
+    @Timespan
+    long outbox;
+
+    @Label("Commit")
+    @Timespan
+    long commit;
+
+    /**
+     * 기록 대상(활성화, threshold 이상)일 때만 필드를 채워서 기록합니다.
+     *
+     * @param successes : 저장한 결제 건수, 실패한 요청이면 0
+     */
+    void complete(StageTimings timings, int requests, int successes, Throwable error) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+
+        this.requests = requests;
+        this.successes = successes;
+        this.outcome = error == null ? PayMetrics.SUCCESS : PayMetrics.outcomeOf(error);
+        this.lock = timings.getNanos(PayStage.LOCK);
+        this.encrypt = timings.getNanos(PayStage.ENCRYPT);
+        this.message = timings.getNanos(PayStage.MESSAGE);
+        this.save = timings.getNanos(PayStage.SAVE);
+        this.outbox = timings.getNanos(PayStage.OUTBOX);
+        this.commit = timings.getNanos(PayStage.COMMIT);
+        commit();
+    }
+}
@@ -0,0 +1,137 @@
+package com.pay.api.domain;
+
+import com.pay.api.exception.BadRequestException;
+import com.pay.api.exception.ConflictException;
+import com.pay.api.exception.IllegalStatusException;
+import com.pay.api.exception.TransactionNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 결제/여러 건 결제/취소/조회의 요청 처리 시간과 단계별 처리 시간, 카드번호 잠금 경합, 취소 충돌 횟수를 Micrometer 로 기록합니다.
+ * - pay.request{operation, outcome} : 요청 전체 처리 시간 (커밋 포함)
+ * - pay.stage{operation, stage} : PayStage 단계별 처리 시간
+ * - pay.card.lock.contention : 같은 카드번호의 결제가 처리 중이어서 거절된 횟수
+ * - pay.cancel.conflict{reason} : 다른 취소가 먼저 커밋되어 거절된 횟수
+ * 성공한 요청의 Timer 는 미리 만들어 두므로 기록할 때 meter 를 찾지 않고, 백분위 히스토그램은 설정하지 않는 한 만들지 않습니다.
+ * (management.metrics.distribution.percentiles-histogram.pay.request=true)
+ */
+@Component
+public class PayMetrics {
+
+    public enum Operation {
+        PAY(EnumSet.of(PayStage.LOCK, PayStage.VALIDATE, PayStage.ENCRYPT, PayStage.MESSAGE, PayStage.SAVE, PayStage.OUTBOX, PayStage.COMMIT)),
+        PAY_ALL(EnumSet.of(PayStage.LOCK, PayStage.ENCRYPT, PayStage.MESSAGE, PayStage.SAVE, PayStage.OUTBOX, PayStage.COMMIT)),
+        CANCEL(EnumSet.of(PayStage.LOCK, PayStage.LOAD, PayStage.VALIDATE, PayStage.DECRYPT, PayStage.MESSAGE, PayStage.UPDATE, PayStage.SAVE, PayStage.OUTBOX, PayStage.COMMIT)),
+        FIND(EnumSet.of(PayStage.LOAD));
+
+        private final Set<PayStage> stages;
+
+        Operation(Set<PayStage> stages) {
+            this.stages = stages;
+        }
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+
+    private final Map<Operation, Timer> successTimers = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<PayStage, Timer>> stageTimers = new EnumMap<>(Operation.class);
+
+    private final Counter cardLockContention;
+    private final Counter versionConflict;
+    private final Counter optimisticLockConflict;
+
+    public PayMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        for (Operation operation : Operation.values()) {
+            successTimers.put(operation, requestTimer(operation, SUCCESS));
+
+            final Map<PayStage, Timer> timers = new EnumMap<>(PayStage.class);
+            for (PayStage stage : operation.stages) {
+                timers.put(stage, Timer.builder("pay.stage")
+                        .description("processing time of each stage")
+                        .tag("operation", operation.tag())
+                        .tag("stage", stage.name().toLowerCase())
+                        .register(registry));
+            }
+            stageTimers.put(operation, timers);
+        }
+
+        this.cardLockContention = Counter.builder("pay.card.lock.contention")
+                .description("pay requests rejected because the same card number was being processed")
+                .register(registry);
+        this.versionConflict = cancelConflictCounter("version");
+        this.optimisticLockConflict = cancelConflictCounter("optimistic-lock");
+    }
+
+    /**
+     * @param error : 성공한 요청이면 null
+     */
+    void record(Operation operation, StageTimings timings, Throwable error) {
+        final long elapsedNanos = timings.getElapsedNanos();
+        final Timer requestTimer = error == null ? successTimers.get(operation) : requestTimer(operation, outcomeOf(error));
+        requestTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        for (Map.Entry<PayStage, Timer> entry : stageTimers.get(operation).entrySet()) {
+            if (timings.isRecorded(entry.getKey())) {
+                entry.getValue().record(timings.getNanos(entry.getKey()), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    void cardLockContended() {
+        cardLockContention.increment();
+    }
+
+    void versionConflicted() {
+        versionConflict.increment();
+    }
+
+    void optimisticLockConflicted() {
+        optimisticLockConflict.increment();
+    }
+
+    private Timer requestTimer(Operation operation, String outcome) {
+        return Timer.builder("pay.request")
+                .description("processing time of pay, cancel and find requests")
+                .tag("operation", operation.tag())
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Counter cancelConflictCounter(String reason) {
+        return Counter.builder("pay.cancel.conflict")
+                .description("cancel requests rejected because another cancel was committed first")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    static String outcomeOf(Throwable error) {
+        if (error instanceof ConflictException || error instanceof OptimisticLockingFailureException) {
+            return "conflict";
+        }
+        if (error instanceof TransactionNotFoundException) {
+            return "not-found";
+        }
+        if (error instanceof BadRequestException || error instanceof IllegalStatusException || error instanceof IllegalArgumentException) {
+            return "rejected";
+        }
+        return "error";
+    }
+}
@@ -3,59 +3,225 @@ package com.pay.api.domain;
 import com.pay.api.controller.cancel.CancelRequest;
 import com.pay.api.controller.cancel.CancelResponse;
 import com.pay.api.controller.find.FindResponse;
+import com.pay.api.controller.find.MaskingUtil;
+import com.pay.api.controller.history.CardHistoryItem;
+import com.pay.api.controller.history.CardHistoryResponse;
+import com.pay.api.controller.pay.BatchPayResponse;
 import com.pay.api.controller.pay.PayRequest;
 import com.pay.api.controller.pay.PayResponse;
-import com.pay.api.domain.card.CardCompanyApi;
+import com.pay.api.domain.card.CardCompanyOutbox;
+import com.pay.api.domain.card.CardCompanyOutboxRepository;
+import com.pay.api.domain.settlement.SettlementAggregator;
 import com.pay.api.exception.ConflictException;
 import com.pay.api.exception.IllegalStatusException;
 import com.pay.api.exception.TransactionNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 @Slf4j
 @Service
 public class PayService {
 
+    /**
+     * 카드별 거래 목록 순서 : 거래일시, ID 역순 (IDX_CARD_FINGERPRINT_CREATED_AT)
+     */
+    private static final Comparator<TransactionSummary> HISTORY_ORDER = Comparator.comparing(TransactionSummary::getCreatedAt)
+            .thenComparing(TransactionSummary::getId)
+            .reversed();
+
     private final ConcurrentMap<String, AtomicInteger> map;
 
     private final TransactionRepository transactionRepository;
-    private final CardCompanyApi cardCompanyApi;
+    private final TransactionArchiveRepository transactionArchiveRepository;
+    private final CardCompanyOutboxRepository cardCompanyOutboxRepository;
+    private final FindResponseCache findResponseCache;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final CancelSequencer cancelSequencer;
+    private final PayMetrics payMetrics;
+    private final CardFingerprint cardFingerprint;
+    private final CardVault cardVault;
+    private final SettlementAggregator settlementAggregator;
 
-    public PayService(TransactionRepository transactionRepository, CardCompanyApi cardCompanyApi) {
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public PayService(TransactionRepository transactionRepository, TransactionArchiveRepository transactionArchiveRepository,
+                      CardCompanyOutboxRepository cardCompanyOutboxRepository,
+                      FindResponseCache findResponseCache, TransactionIdGenerator transactionIdGenerator,
+                      CancelSequencer cancelSequencer, PayMetrics payMetrics, CardFingerprint cardFingerprint, CardVault cardVault,
+                      SettlementAggregator settlementAggregator, PlatformTransactionManager transactionManager) {
         this.transactionRepository = transactionRepository;
-        this.cardCompanyApi = cardCompanyApi;
+        this.transactionArchiveRepository = transactionArchiveRepository;
+        this.cardCompanyOutboxRepository = cardCompanyOutboxRepository;
+        this.findResponseCache = findResponseCache;
+        this.transactionIdGenerator = transactionIdGenerator;
+        this.cancelSequencer = cancelSequencer;
+        this.payMetrics = payMetrics;
+        this.cardFingerprint = cardFingerprint;
+        this.cardVault = cardVault;
+        this.settlementAggregator = settlementAggregator;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
 
         this.map = new ConcurrentHashMap<>();
     }
 
-    @Transactional
+    /**
+     * 카드번호 잠금은 DB 트랜잭션이 커밋된 뒤에 해제합니다.
+     * 처리 시간은 PayMetrics 와 JFR(PayEvent)에 단계별로 기록합니다.
+     */
     public PayResponse pay(PayRequest payRequest) {
 
+        final PayEvent event = new PayEvent();
+        event.begin();
+        final StageTimings timings = new StageTimings();
         final String cardNumber = payRequest.getCardNumber();
 
-        if (!tryAcquireBy(cardNumber)) {
-            throw new ConflictException("Only one request per card number can be processed at the same time !!");
+        final boolean acquired = tryAcquireBy(cardNumber);
+        timings.lap(PayStage.LOCK);
+        if (!acquired) {
+            final ConflictException e = new ConflictException("Only one request per card number can be processed at the same time !!");
+            payMetrics.cardLockContended();
+            payMetrics.record(PayMetrics.Operation.PAY, timings, e);
+            event.complete(timings, null, payRequest.getAmount(), e);
+            throw e;
         }
 
+        PayResponse payResponse = null;
+        Throwable error = null;
         try {
-            Transaction newTransaction = Transaction.newInstance(cardNumber, payRequest.getExpirationMonthYear(), payRequest.getCvc(), payRequest.getInstallment(), payRequest.getAmount(), payRequest.getVat());
-            Transaction transaction = transactionRepository.save(newTransaction);
-
-            cardCompanyApi.send(transaction.getMessage());
-
-            return new PayResponse(transaction);
+            payResponse = transactionTemplate.execute(status -> doPay(timings, payRequest));
+            timings.lap(PayStage.COMMIT);
+            return payResponse;
 
         } catch (Exception e) {
             log.error("Error during create pay transaction", e);
+            error = e;
             throw e;
         } finally {
             release(cardNumber);
+            payMetrics.record(PayMetrics.Operation.PAY, timings, error);
+            event.complete(timings, payResponse == null ? null : payResponse.getTransactionId(), payRequest.getAmount(), error);
+        }
+    }
+
+    private PayResponse doPay(StageTimings timings, PayRequest payRequest) {
+        Transaction newTransaction = Transaction.newInstance(timings, transactionIdGenerator.generate(), cardFingerprint.of(payRequest.getCardNumber()), cardVault, payRequest.getCardNumber(), payRequest.getExpirationMonthYear(), payRequest.getCvc(), payRequest.getInstallment(), payRequest.getAmount(), payRequest.getVat());
+        Transaction transaction = transactionRepository.save(newTransaction);
+        timings.lap(PayStage.SAVE);
+
+        cardCompanyOutboxRepository.save(newOutbox(transaction, CardCompanyOutbox.PAY_SEQUENCE));
+        timings.lap(PayStage.OUTBOX);
+        settlementAggregator.payAfterCommit(Collections.singletonList(transaction));
+
+        return new PayResponse(transaction);
+    }
+
+    /**
+     * 여러 건의 결제를 하나의 트랜잭션으로 처리합니다.
+     * 카드번호 락과 요청 검증은 건별로 수행하고, 실패한 건은 결과에만 기록하고 나머지 건은 계속 처리합니다.
+     * 생성된 트랜잭션은 saveAll 로 모아서 저장하므로 JDBC batch insert 로 전송됩니다.
+     * pay 와 같이 카드번호 잠금은 DB 트랜잭션이 커밋된 뒤에 해제하고, 처리 시간은 PayMetrics(pay_all)와 JFR(PayAllEvent)에 기록합니다.
+     */
+    public BatchPayResponse payAll(List<PayRequest> payRequests) {
+
+        final PayAllEvent event = new PayAllEvent();
+        event.begin();
+        final StageTimings timings = new StageTimings();
+
+        final BatchPayResponse batchPayResponse = new BatchPayResponse(payRequests.size());
+        final Set<String> acquiredCardNumbers = new LinkedHashSet<>();
+        final List<Integer> acquiredIndexes = new ArrayList<>(payRequests.size());
+
+        int successes = 0;
+        Throwable error = null;
+        try {
+            for (int index = 0; index < payRequests.size(); index++) {
+                final String cardNumber = payRequests.get(index).getCardNumber();
+
+                //같은 배치 안에서 동일한 카드번호는 이미 획득한 락을 공유합니다.
+                if (!acquiredCardNumbers.contains(cardNumber)) {
+                    if (!tryAcquireBy(cardNumber)) {
+                        payMetrics.cardLockContended();
+                        batchPayResponse.failure(index, new ConflictException("Only one request per card number can be processed at the same time !!"));
+                        continue;
+                    }
+                    acquiredCardNumbers.add(cardNumber);
+                }
+                acquiredIndexes.add(index);
+            }
+            timings.lap(PayStage.LOCK);
+
+            final Integer saved = transactionTemplate.execute(status -> doPayAll(timings, payRequests, acquiredIndexes, batchPayResponse));
+            timings.lap(PayStage.COMMIT);
+            successes = saved == null ? 0 : saved;
+            return batchPayResponse.sorted();
+
+        } catch (Exception e) {
+            log.error("Error during create pay transactions", e);
+            error = e;
+            throw e;
+        } finally {
+            acquiredCardNumbers.forEach(this::release);
+            payMetrics.record(PayMetrics.Operation.PAY_ALL, timings, error);
+            event.complete(timings, payRequests.size(), successes, error);
+        }
+    }
+
+    /**
+     * @return 저장한 결제 건수
+     */
+    private int doPayAll(StageTimings timings, List<PayRequest> payRequests, List<Integer> acquiredIndexes, BatchPayResponse batchPayResponse) {
+        final List<Integer> indexes = new ArrayList<>(acquiredIndexes.size());
+        final List<Transaction> newTransactions = new ArrayList<>(acquiredIndexes.size());
+        for (int index : acquiredIndexes) {
+            final PayRequest payRequest = payRequests.get(index);
+            try {
+                newTransactions.add(Transaction.newInstance(timings, transactionIdGenerator.generate(), cardFingerprint.of(payRequest.getCardNumber()), cardVault, payRequest.getCardNumber(), payRequest.getExpirationMonthYear(), payRequest.getCvc(), payRequest.getInstallment(), payRequest.getAmount(), payRequest.getVat()));
+                indexes.add(index);
+            } catch (RuntimeException e) {
+                batchPayResponse.failure(index, e);
+            }
+        }
+
+        final List<Transaction> transactions = transactionRepository.saveAll(newTransactions);
+        timings.lap(PayStage.SAVE);
+
+        final List<CardCompanyOutbox> outboxes = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            final Transaction transaction = transactions.get(i);
+            outboxes.add(newOutbox(transaction, CardCompanyOutbox.PAY_SEQUENCE));
+            batchPayResponse.success(indexes.get(i), new PayResponse(transaction));
         }
+
+        cardCompanyOutboxRepository.saveAll(outboxes);
+        transactionRepository.flush();
+        timings.lap(PayStage.OUTBOX);
+        settlementAggregator.payAfterCommit(transactions);
+
+        return transactions.size();
     }
 
     private boolean tryAcquireBy(final String cardNumber) {
@@ -67,27 +233,151 @@ public class PayService {
         map.remove(cardNumber);
     }
 
-    @Transactional
+    /**
+     * 같은 결제 건의 취소는 CancelSequencer 를 거쳐 순서대로 실행되고, 각 취소는 자신의 DB 트랜잭션이 커밋된 뒤에 다음 취소에 차례를 넘깁니다.
+     */
     public CancelResponse cancel(String transactionId, CancelRequest cancelRequest) {
+        final CancelEvent event = new CancelEvent();
+        event.begin();
+        final StageTimings timings = new StageTimings();
 
-        final Transaction targetTransaction = transactionRepository.findByTransactionId(transactionId)
-                .orElseThrow(() -> new TransactionNotFoundException("transactionId : " + transactionId));
+        CancelResponse cancelResponse = null;
+        Throwable error = null;
+        try {
+            cancelResponse = cancelSequencer.execute(transactionId, () -> {
+                timings.lap(PayStage.LOCK);
+                final CancelResponse response = transactionTemplate.execute(status -> doCancel(timings, transactionId, cancelRequest));
+                timings.lap(PayStage.COMMIT);
+                return response;
+            });
+            return cancelResponse;
+        } catch (OptimisticLockingFailureException e) {
+            payMetrics.optimisticLockConflicted();
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            payMetrics.record(PayMetrics.Operation.CANCEL, timings, error);
+            event.complete(timings, transactionId, cancelResponse == null ? null : cancelResponse.getTransactionId(), cancelRequest.getAmount(), error);
+        }
+    }
+
+    /**
+     * 원거래는 읽기 전용으로 조회하고, 잔액 차감은 version/잔액 조건을 건 update 한 번으로 처리합니다.
+     * 조회 이후 다른 취소가 먼저 커밋되어 수정된 row 가 없으면 ConflictException 을 던집니다.
+     */
+    private CancelResponse doCancel(StageTimings timings, String transactionId, CancelRequest cancelRequest) {
+
+        final Transaction targetTransaction = transactionRepository.findForCancelByTransactionId(transactionId)
+                .orElseThrow(() -> transactionArchiveRepository.existsByTransactionId(transactionId)
+                        ? new IllegalStatusException("Archived transaction can not be cancelled.")
+                        : new TransactionNotFoundException("transactionId : " + transactionId));
+        timings.lap(PayStage.LOAD);
 
         if (!targetTransaction.isCancellableTransaction()) {
             throw new IllegalStatusException("Cancellation requests are only available for pay transaction.");
         }
 
-        Transaction cancelTransactionRequest = targetTransaction.cancel(cancelRequest.getAmount(), cancelRequest.getVat());
+        final Long version = targetTransaction.getVersion();
+        Transaction cancelTransactionRequest = targetTransaction.cancel(timings, transactionIdGenerator.generate(), cardVault, cancelRequest.getAmount(), cancelRequest.getVat());
+
+        final int updated = transactionRepository.decreaseRemainAmountAndVat(targetTransaction.getId(), version,
+                cancelTransactionRequest.getAmount(), cancelTransactionRequest.getVat(), LocalDateTime.now());
+        timings.lap(PayStage.UPDATE);
+        if (updated == 0) {
+            payMetrics.versionConflicted();
+            throw new ConflictException("The transaction has been modified by another cancel request !!");
+        }
+
         Transaction cancelTransaction = transactionRepository.save(cancelTransactionRequest);
+        timings.lap(PayStage.SAVE);
 
-        cardCompanyApi.send(cancelTransaction.getMessage());
+        cardCompanyOutboxRepository.save(newOutbox(cancelTransaction, version + 1));
+        timings.lap(PayStage.OUTBOX);
+        findResponseCache.invalidateAfterCommit(transactionId);
+        settlementAggregator.cancelAfterCommit(targetTransaction, cancelTransaction);
         return new CancelResponse(cancelTransaction);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * 카드사 전문은 같은 DB 트랜잭션에서 outbox 에 저장하고, 커밋 이후 CardCompanyOutboxDispatcher 가 전송합니다.
+     * 취소 전문의 순번은 version 조건 update 로 올린 원 결제의 version 이라 노드가 달라도 결제 건 안에서 겹치지 않고 커집니다.
+     */
+    private CardCompanyOutbox newOutbox(Transaction transaction, long sequence) {
+        final String payTransactionId = transaction.getPayTransaction() == null ? transaction.getTransactionId() : transaction.getPayTransaction().getTransactionId();
+        return new CardCompanyOutbox(payTransactionId, transaction.getTransactionId(), sequence, transaction.getMessage(cardVault));
+    }
+
+    /**
+     * 캐시에 없을 때만 읽기 전용 트랜잭션을 열어서 조회합니다. 카드정보는 캐시하지 않으므로 CardVault 에서 채웁니다.
+     */
     public FindResponse find(String transactionId) {
-        return transactionRepository.findByTransactionId(transactionId)
-                .map(FindResponse::new)
-                .orElseThrow(() -> new TransactionNotFoundException("transactionId : " + transactionId));
+        final StageTimings timings = new StageTimings();
+
+        Throwable error = null;
+        try {
+            return findResponseCache.get(transactionId, id -> load(timings, id)).open(cardVault);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            payMetrics.record(PayMetrics.Operation.FIND, timings, error);
+        }
+    }
+
+    /**
+     * Transaction 에 없으면 TransactionArchiver 가 옮긴 TransactionArchive 에서 찾습니다.
+     */
+    private FindResponseCache.Entry load(StageTimings timings, String transactionId) {
+        final FindResponseCache.Entry entry = readOnlyTransactionTemplate.execute(status -> {
+            final Optional<FindResponseCache.Entry> hot = transactionRepository.findWithCancelTransactionsByTransactionId(transactionId).map(FindResponseCache.Entry::of);
+            if (hot.isPresent()) {
+                return hot.get();
+            }
+            return transactionArchiveRepository.findWithCancelTransactionsByTransactionId(transactionId)
+                    .map(archive -> FindResponseCache.Entry.of(Transaction.restore(archive)))
+                    .orElseThrow(() -> new TransactionNotFoundException("transactionId : " + transactionId));
+        });
+        timings.lap(PayStage.LOAD);
+        return entry;
+    }
+
+    /**
+     * 카드번호의 fingerprint 인덱스로 기간 안의 거래를 최근 거래부터 size 건씩 읽습니다. 카드정보는 복호화하지 않습니다.
+     * 결제 테이블과 보관 테이블에서 각각 size + 1 건까지 읽어서 합칩니다. (보관해도 ID 와 거래일시는 바뀌지 않으므로 cursor 는 그대로 사용)
+     *
+     * @param cursor : 이전 페이지의 nextCursor, 첫 페이지는 null
+     */
+    public CardHistoryResponse findCardHistory(String cardNumber, LocalDateTime from, LocalDateTime to, String cursor, int size) {
+        checkArgument(from.isBefore(to), "from must be before to");
+        checkArgument(size > 0, "illegal size");
+
+        final String fingerprint = cardFingerprint.of(cardNumber);
+        final PageRequest page = PageRequest.of(0, size + 1);
+        final HistoryCursor after = cursor == null ? null : HistoryCursor.decode(cursor);
+
+        final List<TransactionSummary> transactions = readOnlyTransactionTemplate.execute(status -> {
+            final List<TransactionSummary> hot = after == null
+                    ? transactionRepository.findCardHistory(fingerprint, from, to, page)
+                    : transactionRepository.findCardHistoryAfter(fingerprint, from, to, after.getCreatedAt(), after.getId(), page);
+            final List<TransactionSummary> archived = after == null
+                    ? transactionArchiveRepository.findCardHistory(fingerprint, from, to, page)
+                    : transactionArchiveRepository.findCardHistoryAfter(fingerprint, from, to, after.getCreatedAt(), after.getId(), page);
+            return Stream.concat(hot.stream(), archived.stream())
+                    .sorted(HISTORY_ORDER)
+                    .limit(page.getPageSize())
+                    .collect(Collectors.toList());
+        });
+
+        //한 건을 더 읽어서 다음 페이지가 있는지 확인합니다.
+        final boolean hasNext = transactions.size() > size;
+        final List<TransactionSummary> current = hasNext ? transactions.subList(0, size) : transactions;
+        final TransactionSummary last = current.isEmpty() ? null : current.get(current.size() - 1);
+
+        final String maskedCardNumber = MaskingUtil.getMaskedCardNumber(cardNumber);
+        return new CardHistoryResponse(current.stream().map(transaction -> new CardHistoryItem(transaction, maskedCardNumber)).collect(Collectors.toList()),
+                hasNext ? new HistoryCursor(last.getCreatedAt(), last.getId()).encode() : null);
     }
 }
@@ -0,0 +1,37 @@
+package com.pay.api.domain;
+
+/**
+ * 결제/취소/조회 요청을 처리하는 단계. 단계별 소요 시간은 StageTimings 에 기록됩니다.
+ */
+public enum PayStage {
+    /**
+     * 카드번호 잠금 획득, 취소 순서 대기
+     */
+    LOCK,
+    /**
+     * 원거래 조회
+     */
+    LOAD,
+    /**
+     * 금액/카드정보 검증
+     */
+    VALIDATE,
+    ENCRYPT,
+    DECRYPT,
+    /**
+     * 카드사 전문 생성 (MessageBuilder.build)
+     */
+    MESSAGE,
+    /**
+     * 원거래 잔액 차감 update
+     */
+    UPDATE,
+    SAVE,
+    /**
+     * 카드사 전문 outbox 저장
+     */
+    OUTBOX,
+    COMMIT;
+
+    static final PayStage[] VALUES = values();
+}
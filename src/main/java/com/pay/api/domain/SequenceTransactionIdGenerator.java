@@ -0,0 +1,110 @@
+package com.pay.api.domain;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * yyMMddHHmmssSSS(15) + node(2) + 밀리초 내 순번(3) 형식의 관리번호를 만듭니다.
+ * - (밀리초 * 1000 + 순번)을 AtomicLong 하나에 두고 CAS 로 증가시키므로 같은 노드 안에서는 락 없이 중복되지 않습니다.
+ * - 한 밀리초에 1,000건을 넘으면 다음 밀리초를 미리 사용하고, 시계가 뒤로 가도 마지막 값 이후로만 발급합니다.
+ * - 노드끼리는 node id(pay.transaction-id.node-id, 0 ~ 99)로 구분하므로 노드마다 다른 값을 설정해야 합니다.
+ * - 같은 시각이 두 번 나오는 서머타임 지역에서는 중복될 수 있으므로 서머타임이 없는 시간대(Asia/Seoul 등)에서 사용합니다.
+ */
+@Component
+public class SequenceTransactionIdGenerator implements TransactionIdGenerator {
+
+    static final int MAX_NODE_ID = 99;
+
+    private static final int SEQUENCE_PER_MILLIS = 1_000;
+
+    private final AtomicLong last = new AtomicLong();
+
+    private final int nodeId;
+    private final ZoneId zoneId;
+    private final LongSupplier clock;
+
+    /**
+     * 초 단위 prefix(yyMMddHHmmss)는 초가 바뀔 때만 다시 계산합니다.
+     */
+    private volatile SecondPrefix secondPrefix = new SecondPrefix(Long.MIN_VALUE, null);
+
+    @Autowired
+    public SequenceTransactionIdGenerator(@Value("${pay.transaction-id.node-id:0}") int nodeId) {
+        this(nodeId, ZoneId.systemDefault(), System::currentTimeMillis);
+    }
+
+    SequenceTransactionIdGenerator(int nodeId, ZoneId zoneId, LongSupplier clock) {
+        checkArgument(nodeId >= 0 && nodeId <= MAX_NODE_ID, "illegal nodeId");
+
+        this.nodeId = nodeId;
+        this.zoneId = zoneId;
+        this.clock = clock;
+    }
+
+    @Override
+    public String generate() {
+        final long now = clock.getAsLong() * SEQUENCE_PER_MILLIS;
+
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            next = Math.max(now, prev + 1);
+        } while (!last.compareAndSet(prev, next));
+
+        return format(next / SEQUENCE_PER_MILLIS, (int) (next % SEQUENCE_PER_MILLIS));
+    }
+
+    private String format(long epochMillis, int sequence) {
+        final char[] chars = new char[LENGTH];
+
+        final long epochSecond = Math.floorDiv(epochMillis, 1000);
+        SecondPrefix prefix = this.secondPrefix;
+        if (prefix.epochSecond != epochSecond) {
+            prefix = new SecondPrefix(epochSecond, LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zoneId));
+            this.secondPrefix = prefix;
+        }
+        System.arraycopy(prefix.chars, 0, chars, 0, prefix.chars.length);
+
+        writeDigits(chars, 12, 3, (int) (epochMillis - epochSecond * 1000));
+        writeDigits(chars, 15, 2, nodeId);
+        writeDigits(chars, 17, 3, sequence);
+        return new String(chars);
+    }
+
+    private static void writeDigits(char[] chars, int offset, int length, int value) {
+        int remain = value;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + remain % 10);
+            remain /= 10;
+        }
+    }
+
+    private static final class SecondPrefix {
+
+        private final long epochSecond;
+        private final char[] chars;
+
+        private SecondPrefix(long epochSecond, LocalDateTime dateTime) {
+            this.epochSecond = epochSecond;
+            this.chars = new char[12];
+            if (dateTime != null) {
+                writeDigits(chars, 0, 2, dateTime.getYear() % 100);
+                writeDigits(chars, 2, 2, dateTime.getMonthValue());
+                writeDigits(chars, 4, 2, dateTime.getDayOfMonth());
+                writeDigits(chars, 6, 2, dateTime.getHour());
+                writeDigits(chars, 8, 2, dateTime.getMinute());
+                writeDigits(chars, 10, 2, dateTime.getSecond());
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.pay.api.domain;
+
+/**
+ * 요청 하나를 처리하는 동안 단계별 소요 시간(ns)을 기록합니다.
+ * 직전 기록 시점부터 지금까지를 해당 단계의 시간으로 더하므로 단계 사이에 System.nanoTime 한 번만 호출합니다.
+ * 요청을 처리하는 스레드에서만 사용합니다.
+ */
+final class StageTimings {
+
+    private final long startedAt;
+    private final long[] nanos = new long[PayStage.VALUES.length];
+    private int recorded;
+    private long mark;
+
+    StageTimings() {
+        this.startedAt = System.nanoTime();
+        this.mark = startedAt;
+    }
+
+    /**
+     * 직전 기록 시점부터 지금까지를 stage 의 시간으로 기록합니다.
+     */
+    void lap(PayStage stage) {
+        final long now = System.nanoTime();
+        nanos[stage.ordinal()] += now - mark;
+        recorded |= 1 << stage.ordinal();
+        mark = now;
+    }
+
+    boolean isRecorded(PayStage stage) {
+        return (recorded & (1 << stage.ordinal())) != 0;
+    }
+
+    long getNanos(PayStage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    long getElapsedNanos() {
+        return System.nanoTime() - startedAt;
+    }
+}
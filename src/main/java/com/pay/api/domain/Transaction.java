@@ -1,37 +1,39 @@
 package com.pay.api.domain;
 
-import com.google.common.base.Strings;
 import com.pay.api.exception.BadRequestException;
 import com.pay.api.exception.IllegalStatusException;
 import com.pay.api.type.TransactionType;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.hibernate.annotations.DynamicUpdate;
-import org.hibernate.annotations.OptimisticLockType;
-import org.hibernate.annotations.OptimisticLocking;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.*;
 import static org.springframework.util.StringUtils.hasText;
 
 @Getter
-@OptimisticLocking(type = OptimisticLockType.ALL)
 @DynamicUpdate
 @Entity
-@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"TRANSACTION_ID"}, name = "UK_TRANSACTION_ID")})
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"TRANSACTION_ID"}, name = "UK_TRANSACTION_ID")},
+        indexes = {@Index(columnList = "CARD_FINGERPRINT, CREATED_AT, ID", name = "IDX_CARD_FINGERPRINT_CREATED_AT"),
+                @Index(columnList = "CREATED_AT, ID", name = "IDX_CREATED_AT")})
 public class Transaction {
 
-    private static DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyMMddHHmmssSSS");
+    static final int ENCRYPTED_CARD_INFO_LENGTH = 32;
 
+    /**
+     * IDENTITY 전략은 insert 마다 키를 받아와야 해서 JDBC batch insert 가 비활성화 되므로
+     * pooled sequence 로 키를 미리 할당 받습니다.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "ID", nullable = false, insertable = false, updatable = false)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "TRANSACTION_SEQ_GENERATOR")
+    @SequenceGenerator(name = "TRANSACTION_SEQ_GENERATOR", sequenceName = "TRANSACTION_SEQ", allocationSize = 50)
+    @Column(name = "ID", nullable = false, updatable = false)
     private Long id;
 
     @Column(name = "TRANSACTION_ID", nullable = false, length = 20)
@@ -41,11 +43,23 @@ public class Transaction {
     @Enumerated(value = EnumType.STRING)
     private TransactionType transactionType;
 
-    @Column(name = "ENCRYPTED_CARD_INFO", nullable = false, length = 300)
-    private String encryptedCardInfo;
+    /**
+     * 카드정보(최대 25 byte)를 관리번호로 만든 키로 AES 암호화한 값. CardVault 를 사용하기 전의 거래만 값이 있습니다.
+     */
+    @Column(name = "ENCRYPTED_CARD_INFO", length = ENCRYPTED_CARD_INFO_LENGTH)
+    private byte[] encryptedCardInfo;
 
-    @Column(name = "MESSAGE", nullable = false, length = 500)
-    private String message;
+    /**
+     * CardVault 에 저장한 카드정보의 토큰. 취소 거래는 원거래의 값을 그대로 사용합니다.
+     */
+    @Column(name = "CARD_TOKEN", length = CardVault.TOKEN_LENGTH)
+    private String cardToken;
+
+    /**
+     * 카드번호의 keyed-HMAC (CardFingerprint). 취소 거래는 원거래의 값을 그대로 사용합니다.
+     */
+    @Column(name = "CARD_FINGERPRINT", length = CardFingerprint.LENGTH)
+    private String cardFingerprint;
 
     @Column(name = "INSTALLMENT", nullable = false, length = 3)
     private Integer installment;
@@ -70,6 +84,13 @@ public class Transaction {
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "payTransaction")
     private List<Transaction> cancelTransactionList = new ArrayList<>();
 
+    /**
+     * 같은 결제 건의 동시 취소 방지 : 수정된 컬럼 전체 대신 version 컬럼 하나로 비교합니다.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
     @Column(name = "CREATED_AT")
     private LocalDateTime createdAt;
 
@@ -78,42 +99,50 @@ public class Transaction {
 
     private transient CardInfoCrypto cardInfoCrypto;
 
+    /**
+     * 카드사 전문은 저장하지 않고 row 의 값으로 다시 만듭니다. (getMessage)
+     */
+    @Getter(AccessLevel.NONE)
+    private transient String message;
+
     public Transaction() {
     }
 
-    private Transaction(TransactionType transactionType) {
-        this.transactionId = generateTransactionId();
+    private Transaction(String transactionId, TransactionType transactionType) {
+        this.transactionId = transactionId;
         this.transactionType = transactionType;
     }
 
-    private Transaction(String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
-        this(TransactionType.PAY);
+    private Transaction(StageTimings timings, String transactionId, String cardFingerprint, CardVault cardVault, String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
+        this(transactionId, TransactionType.PAY);
 
+        this.cardFingerprint = cardFingerprint;
         this.installment = installment;
-        this.encryptedCardInfo = CardInfoCrypto.encrypt(this.transactionId, cardNumber, expirationMonthYear, cvc).getEncryptedCardInfo();
+        if (cardVault == null) {
+            this.cardInfoCrypto = CardInfoCrypto.encrypt(this.transactionId, cardNumber, expirationMonthYear, cvc);
+            this.encryptedCardInfo = this.cardInfoCrypto.getEncryptedCardInfoBytes();
+        } else {
+            this.cardToken = cardVault.tokenOf(cardNumber, expirationMonthYear, cvc);
+            this.cardInfoCrypto = cardVault.store(this.cardToken, cardNumber, expirationMonthYear, cvc);
+        }
+        timings.lap(PayStage.ENCRYPT);
 
         this.amount = amount;
         this.vat = vat;
         this.remainAmount = this.amount;
         this.remainVat = this.vat;
 
-        this.message = MessageBuilder.newPaymentMessageBuilder()
-                .id(this.transactionId)
-                .cardNumber(cardNumber)
-                .expirationMonthYear(expirationMonthYear)
-                .cvc(cvc)
-                .installment(installment)
-                .amount(amount)
-                .vat(vat)
-                .encryptedCardInformation(this.encryptedCardInfo)
-                .build();
+        this.message = buildMessage(this.cardInfoCrypto);
+        timings.lap(PayStage.MESSAGE);
     }
 
-    private Transaction(Transaction payTransaction, Long requestedAmount, Long requestedVat) {
-        this(TransactionType.CANCEL);
+    private Transaction(StageTimings timings, String transactionId, Transaction payTransaction, CardVault cardVault, Long requestedAmount, Long requestedVat) {
+        this(transactionId, TransactionType.CANCEL);
 
         this.installment = 0;
         this.encryptedCardInfo = payTransaction.getEncryptedCardInfo();
+        this.cardToken = payTransaction.getCardToken();
+        this.cardFingerprint = payTransaction.getCardFingerprint();
 
         this.amount = requestedAmount;
         this.vat = requestedVat;
@@ -122,18 +151,11 @@ public class Transaction {
 
         this.payTransaction = payTransaction;
 
-        final CardInfoCrypto cardInfoCrypto = payTransaction.getCardInfo();
-        this.message = MessageBuilder.newCancelMessageBuilder()
-                .id(this.transactionId)
-                .cardNumber(cardInfoCrypto.getCardNumber())
-                .expirationMonthYear(cardInfoCrypto.getExpirationMonthYear())
-                .cvc(cardInfoCrypto.getCvc())
-                .installment(this.installment)
-                .amount(requestedAmount)
-                .vat(requestedVat)
-                .payTransactionId(payTransaction.getTransactionId())
-                .encryptedCardInformation(this.encryptedCardInfo)
-                .build();
+        final CardInfoCrypto cardInfoCrypto = payTransaction.getCardInfo(cardVault);
+        timings.lap(PayStage.DECRYPT);
+
+        this.message = buildMessage(cardInfoCrypto);
+        timings.lap(PayStage.MESSAGE);
 
         payTransaction.updateRemainAmountAndVat(this.remainAmount, this.remainVat);
     }
@@ -148,13 +170,25 @@ public class Transaction {
         this.updatedAt = LocalDateTime.now();
     }
 
-    private static String generateTransactionId() {
-        int random = ThreadLocalRandom.current().nextInt(99999);
-        String paddedRandom = Strings.padStart(String.valueOf(random), 5, '0');
-        return LocalDateTime.now().format(FORMATTER) + paddedRandom;
+    /**
+     * @param transactionId : TransactionIdGenerator 로 만든 20자리 관리번호
+     */
+    static Transaction newInstance(String transactionId, String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
+        return newInstance(new StageTimings(), transactionId, null, cardNumber, expirationMonthYear, cvc, installment, amount, vat);
     }
 
-    static Transaction newInstance(String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
+    static Transaction newInstance(StageTimings timings, String transactionId, String cardFingerprint, String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
+        return newInstance(timings, transactionId, cardFingerprint, null, cardNumber, expirationMonthYear, cvc, installment, amount, vat);
+    }
+
+    /**
+     * 검증, 카드정보 암호화, 전문 생성에 걸린 시간을 timings 에 기록합니다.
+     *
+     * @param cardFingerprint : CardFingerprint 로 만든 카드번호의 fingerprint
+     * @param cardVault       : 카드정보를 저장할 CardVault, null 이면 관리번호로 만든 키로 암호화해서 거래에 저장합니다.
+     */
+    static Transaction newInstance(StageTimings timings, String transactionId, String cardFingerprint, CardVault cardVault, String cardNumber, String expirationMonthYear, String cvc, Integer installment, Long amount, Long vat) {
+        checkArgument(hasText(transactionId) && transactionId.length() == TransactionIdGenerator.LENGTH, "illegal transactionId");
         checkArgument(hasText(cardNumber) && cardNumber.length() >= 10 && cardNumber.length() <= 16, "illegal cardNumber");
         checkArgument(hasText(expirationMonthYear) && expirationMonthYear.length() == 4, "illegal expirationMonthYear");
         checkArgument(hasText(cvc) && cvc.length() == 3, "illegal cvc");
@@ -170,7 +204,9 @@ public class Transaction {
             throw new BadRequestException("vat can not be greater than amount");
         }
 
-        return new Transaction(cardNumber, expirationMonthYear, cvc, installment, amount, vat);
+        timings.lap(PayStage.VALIDATE);
+
+        return new Transaction(timings, transactionId, cardFingerprint, cardVault, cardNumber, expirationMonthYear, cvc, installment, amount, vat);
     }
 
 
@@ -180,7 +216,17 @@ public class Transaction {
      * 부가가치세는 결제금액보다 클 수 없습니다.
      * 결제금액이 1,000원일 때, 부가가치세는 0원일 수 있습니다.
      */
-    Transaction cancel(Long requestedAmount, Long requestedVat) {
+    Transaction cancel(String transactionId, Long requestedAmount, Long requestedVat) {
+        return cancel(new StageTimings(), transactionId, null, requestedAmount, requestedVat);
+    }
+
+    /**
+     * 검증, 원거래 카드정보 복호화, 전문 생성에 걸린 시간을 timings 에 기록합니다.
+     *
+     * @param cardVault : 원거래의 카드정보를 읽을 CardVault (getCardInfo)
+     */
+    Transaction cancel(StageTimings timings, String transactionId, CardVault cardVault, Long requestedAmount, Long requestedVat) {
+        checkArgument(hasText(transactionId) && transactionId.length() == TransactionIdGenerator.LENGTH, "illegal transactionId");
         requireNonNull(requestedAmount, "requestedAmount is mandatory.");
 
         if (isNull(requestedVat)) {
@@ -207,7 +253,45 @@ public class Transaction {
 
         }
 
-        return new Transaction(this, requestedAmount, requestedVat);
+        timings.lap(PayStage.VALIDATE);
+
+        return new Transaction(timings, transactionId, this, cardVault, requestedAmount, requestedVat);
+    }
+
+    /**
+     * 보관된 거래를 조회용으로 되돌립니다. 영속 상태가 아니므로 저장하거나 취소하지 않습니다.
+     * 결제는 취소 거래 목록을, 취소는 원거래를 함께 되돌립니다.
+     */
+    static Transaction restore(TransactionArchive archive) {
+        final Transaction transaction = copyOf(archive);
+        if (archive.getPayTransaction() != null) {
+            transaction.payTransaction = copyOf(archive.getPayTransaction());
+            return transaction;
+        }
+
+        for (TransactionArchive cancelArchive : archive.getCancelTransactionList()) {
+            final Transaction cancelTransaction = copyOf(cancelArchive);
+            cancelTransaction.payTransaction = transaction;
+            transaction.cancelTransactionList.add(cancelTransaction);
+        }
+        return transaction;
+    }
+
+    private static Transaction copyOf(TransactionArchive archive) {
+        final Transaction transaction = new Transaction(archive.getTransactionId(), archive.getTransactionType());
+        transaction.id = archive.getId();
+        transaction.encryptedCardInfo = archive.getEncryptedCardInfo();
+        transaction.cardToken = archive.getCardToken();
+        transaction.cardFingerprint = archive.getCardFingerprint();
+        transaction.installment = archive.getInstallment();
+        transaction.amount = archive.getAmount();
+        transaction.vat = archive.getVat();
+        transaction.remainAmount = archive.getRemainAmount();
+        transaction.remainVat = archive.getRemainVat();
+        transaction.version = archive.getVersion();
+        transaction.createdAt = archive.getCreatedAt();
+        transaction.updatedAt = archive.getUpdatedAt();
+        return transaction;
     }
 
     private void updateRemainAmountAndVat(Long remainAmount, Long remainVat) {
@@ -225,27 +309,71 @@ public class Transaction {
         return Math.round(requestedAmount / 11d);
     }
 
-    public String getCardNumber() {
-        CardInfoCrypto decryptedCardInfo = getCardInfo();
-        return decryptedCardInfo.getCardNumber();
+    public String getCardNumber(CardVault cardVault) {
+        return getCardInfo(cardVault).getCardNumber();
+    }
+
+    public String getExpirationMonthYear(CardVault cardVault) {
+        return getCardInfo(cardVault).getExpirationMonthYear();
     }
 
-    public String getExpirationMonthYear() {
-        CardInfoCrypto decryptedCardInfo = getCardInfo();
-        return decryptedCardInfo.getExpirationMonthYear();
+    public String getCvc(CardVault cardVault) {
+        return getCardInfo(cardVault).getCvc();
     }
 
-    public String getCvc() {
-        CardInfoCrypto decryptedCardInfo = getCardInfo();
-        return decryptedCardInfo.getCvc();
+    /**
+     * 카드사 전문. 생성할 때 만든 전문이 없으면(조회한 거래) 카드정보를 복호화해서 다시 만듭니다.
+     */
+    public String getMessage(CardVault cardVault) {
+        if (this.message == null) {
+            this.message = buildMessage(getCardInfo(cardVault));
+        }
+        return message;
     }
 
-    private CardInfoCrypto getCardInfo() {
+    /**
+     * 전문의 암호화된 카드정보는 기존과 같이 결제 관리번호로 만든 키로 암호화한 Base64 문자열입니다.
+     * 취소 전문은 원거래의 관리번호로 암호화하므로, 카드사는 CardVault 사용 여부와 관계없이 같은 방법으로 복호화합니다.
+     */
+    private String buildMessage(CardInfoCrypto cardInfo) {
+        final boolean pay = TransactionType.PAY.equals(this.transactionType);
+        final String payTransactionId = pay ? this.transactionId : this.payTransaction.getTransactionId();
+        final MessageBuilder builder = pay
+                ? MessageBuilder.newPaymentMessageBuilder()
+                : MessageBuilder.newCancelMessageBuilder().payTransactionId(payTransactionId);
+
+        return builder.id(this.transactionId)
+                .cardNumber(cardInfo.getCardNumber())
+                .expirationMonthYear(cardInfo.getExpirationMonthYear())
+                .cvc(cardInfo.getCvc())
+                .installment(this.installment)
+                .amount(this.amount)
+                .vat(this.vat)
+                .encryptedCardInformation(cardInfo.getEncryptedCardInfo(payTransactionId))
+                .build();
+    }
+
+    /**
+     * 취소 거래는 원거래와 같은 카드정보를 가지므로 원거래가 복호화한 결과를 함께 사용합니다.
+     * 토큰이 있는 거래는 cardVault 에서, 없는 거래는 거래에 저장된 카드정보를 관리번호로 복호화합니다.
+     *
+     * @param cardVault : 토큰의 카드정보를 읽을 CardVault, CardVault 를 사용하기 전의 거래만 null 일 수 있습니다.
+     */
+    private CardInfoCrypto getCardInfo(CardVault cardVault) {
         if (this.cardInfoCrypto != null) {
             return this.cardInfoCrypto;
         }
 
-        final CardInfoCrypto decryptedCardInfo = CardInfoCrypto.decrypt(TransactionType.PAY.equals(this.transactionType) ? this.transactionId : this.payTransaction.getTransactionId(), this.encryptedCardInfo);
+        if (!TransactionType.PAY.equals(this.transactionType)) {
+            return this.payTransaction.getCardInfo(cardVault);
+        }
+
+        final CardInfoCrypto decryptedCardInfo;
+        if (this.cardToken == null) {
+            decryptedCardInfo = CardInfoCrypto.decrypt(this.transactionId, this.encryptedCardInfo);
+        } else {
+            decryptedCardInfo = requireNonNull(cardVault, "cardVault is mandatory for a card token").load(this.cardToken);
+        }
         this.cardInfoCrypto = decryptedCardInfo;
         return decryptedCardInfo;
     }
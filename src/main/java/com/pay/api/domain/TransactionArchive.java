@@ -0,0 +1,79 @@
+package com.pay.api.domain;
+
+import com.pay.api.type.TransactionType;
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TransactionArchiver 가 Transaction 에서 옮긴 거래 (cold). 결제 건(결제 + 취소) 단위로 옮기고 수정하지 않습니다.
+ * 컬럼은 Transaction 과 같고, 옮긴 순서와 상관없이 insert 할 수 있도록 외래키는 만들지 않습니다.
+ */
+@Getter
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"TRANSACTION_ID"}, name = "UK_TRANSACTION_ARCHIVE_TRANSACTION_ID")},
+        indexes = {@Index(columnList = "PAY_TRANSACTION_ID", name = "IDX_TRANSACTION_ARCHIVE_PAY_TRANSACTION_ID"),
+                @Index(columnList = "CARD_FINGERPRINT, CREATED_AT, ID", name = "IDX_TRANSACTION_ARCHIVE_CARD_FINGERPRINT_CREATED_AT"),
+                @Index(columnList = "CREATED_AT, ID", name = "IDX_TRANSACTION_ARCHIVE_CREATED_AT")})
+public class TransactionArchive {
+
+    @Id
+    @Column(name = "ID", nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "TRANSACTION_ID", nullable = false, length = 20)
+    private String transactionId;
+
+    @Column(name = "TRANSACTION_TYPE", nullable = false, length = 15)
+    @Enumerated(value = EnumType.STRING)
+    private TransactionType transactionType;
+
+    @Column(name = "ENCRYPTED_CARD_INFO", length = Transaction.ENCRYPTED_CARD_INFO_LENGTH)
+    private byte[] encryptedCardInfo;
+
+    @Column(name = "CARD_TOKEN", length = CardVault.TOKEN_LENGTH)
+    private String cardToken;
+
+    @Column(name = "CARD_FINGERPRINT", length = CardFingerprint.LENGTH)
+    private String cardFingerprint;
+
+    @Column(name = "INSTALLMENT", nullable = false, length = 3)
+    private Integer installment;
+
+    @Column(name = "AMOUNT", nullable = false, length = 20)
+    private Long amount;
+
+    @Column(name = "VAT", nullable = false, length = 20)
+    private Long vat;
+
+    @Column(name = "REMAIN_AMOUNT", nullable = false, length = 20)
+    private Long remainAmount;
+
+    @Column(name = "REMAIN_VAT", nullable = false, length = 20)
+    private Long remainVat;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "PAY_TRANSACTION_ID", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private TransactionArchive payTransaction;
+
+    @OneToMany(mappedBy = "payTransaction")
+    private List<TransactionArchive> cancelTransactionList = new ArrayList<>();
+
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
+    @Column(name = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    @Column(name = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "ARCHIVED_AT", nullable = false)
+    private LocalDateTime archivedAt;
+
+    public TransactionArchive() {
+    }
+}
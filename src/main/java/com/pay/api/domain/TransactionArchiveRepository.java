@@ -0,0 +1,53 @@
+package com.pay.api.domain;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TransactionArchiveRepository extends JpaRepository<TransactionArchive, Long> {
+
+    boolean existsByTransactionId(String transactionId);
+
+    /**
+     * 조회용 : TransactionRepository.findWithCancelTransactionsByTransactionId 와 같이 원거래와 취소 거래 목록을 한 번에 가져옵니다.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct t from TransactionArchive t " +
+            "left join fetch t.payTransaction " +
+            "left join fetch t.cancelTransactionList " +
+            "where t.transactionId = :transactionId")
+    Optional<TransactionArchive> findWithCancelTransactionsByTransactionId(@Param("transactionId") String transactionId);
+
+    /**
+     * 카드별 거래 목록 첫 페이지 : TransactionRepository.findCardHistory 와 같은 조건으로 보관된 거래를 읽습니다.
+     */
+    @Query("select new com.pay.api.domain.TransactionSummary(t.id, t.transactionId, t.transactionType, t.createdAt, t.amount, t.vat, t.remainAmount, t.remainVat, p.transactionId) " +
+            "from TransactionArchive t left join t.payTransaction p " +
+            "where t.cardFingerprint = :cardFingerprint and t.createdAt >= :from and t.createdAt < :to " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransactionSummary> findCardHistory(@Param("cardFingerprint") String cardFingerprint,
+                                             @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                             Pageable pageable);
+
+    /**
+     * 카드별 거래 목록 다음 페이지 : TransactionRepository.findCardHistoryAfter 와 같은 조건으로 보관된 거래를 읽습니다.
+     */
+    @Query("select new com.pay.api.domain.TransactionSummary(t.id, t.transactionId, t.transactionType, t.createdAt, t.amount, t.vat, t.remainAmount, t.remainVat, p.transactionId) " +
+            "from TransactionArchive t left join t.payTransaction p " +
+            "where t.cardFingerprint = :cardFingerprint and t.createdAt >= :from and t.createdAt < :to " +
+            "and (t.createdAt < :createdAt or (t.createdAt = :createdAt and t.id < :id)) " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransactionSummary> findCardHistoryAfter(@Param("cardFingerprint") String cardFingerprint,
+                                                  @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                                  @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                                  Pageable pageable);
+}
@@ -0,0 +1,144 @@
+package com.pay.api.domain;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 더 바뀌지 않는 결제 건(결제 + 취소)을 Transaction 에서 TransactionArchive 로 옮겨서 Transaction 을 작게 유지합니다.
+ * - 대상 : 전액 취소된 뒤 pay.archive.cancelled-after-days(7) 가 지난 결제, 또는 pay.archive.after-days(365) 가 지난 결제
+ * - chunk-size 건씩 ID 순서대로 읽고, chunk 마다 하나의 DB 트랜잭션에서 insert ... select 와 delete 로 옮깁니다.
+ * - 한 번 실행할 때 max-chunks-per-run 개의 chunk 까지만 옮기고 나머지는 다음 실행에서 옮기므로, 밀린 건이 많아도 스케줄러 스레드를 오래 잡지 않습니다.
+ * - 옮기기 전에 결제 row 를 잠그고 조건을 다시 확인하므로, 동시에 들어온 취소는 version 조건에 걸려서 실패하고 다른 노드와 같은 건을 두 번 옮기지 않습니다.
+ * - 옮긴 결제는 조회만 할 수 있고(PayService.find), 취소는 IllegalStatusException 으로 거절합니다.
+ */
+@Slf4j
+@Component
+public class TransactionArchiver implements MeterBinder {
+
+    private static final String COLUMNS = "ID, TRANSACTION_ID, TRANSACTION_TYPE, ENCRYPTED_CARD_INFO, CARD_TOKEN, CARD_FINGERPRINT, INSTALLMENT, " +
+            "AMOUNT, VAT, REMAIN_AMOUNT, REMAIN_VAT, PAY_TRANSACTION_ID, VERSION, CREATED_AT, UPDATED_AT";
+
+    private static final String ARCHIVABLE = "TRANSACTION_TYPE = 'PAY' " +
+            "AND ((REMAIN_AMOUNT = 0 AND UPDATED_AT < :cancelledBefore) OR CREATED_AT < :createdBefore)";
+
+    private static final String SELECT_CANDIDATES = "SELECT ID FROM Transaction WHERE ID > :afterId AND " + ARCHIVABLE + " ORDER BY ID LIMIT :limit";
+
+    private static final String LOCK = "SELECT ID FROM Transaction WHERE ID IN (:ids) AND " + ARCHIVABLE + " ORDER BY ID FOR UPDATE";
+
+    private static final String COPY = "INSERT INTO TransactionArchive (" + COLUMNS + ", ARCHIVED_AT) " +
+            "SELECT " + COLUMNS + ", :archivedAt FROM Transaction WHERE ID IN (:ids) OR PAY_TRANSACTION_ID IN (:ids) ORDER BY ID";
+
+    private static final String DELETE_CANCELS = "DELETE FROM Transaction WHERE PAY_TRANSACTION_ID IN (:ids)";
+
+    private static final String DELETE_PAYS = "DELETE FROM Transaction WHERE ID IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final int cancelledAfterDays;
+    private final int afterDays;
+
+    private final LongAdder archived = new LongAdder();
+
+    public TransactionArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${pay.archive.chunk-size:500}") int chunkSize,
+                               @Value("${pay.archive.max-chunks-per-run:20}") int maxChunksPerRun,
+                               @Value("${pay.archive.cancelled-after-days:7}") int cancelledAfterDays,
+                               @Value("${pay.archive.after-days:365}") int afterDays) {
+        checkArgument(chunkSize > 0, "pay.archive.chunk-size must be positive");
+        checkArgument(maxChunksPerRun > 0, "pay.archive.max-chunks-per-run must be positive");
+
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.cancelledAfterDays = cancelledAfterDays;
+        this.afterDays = afterDays;
+    }
+
+    @Scheduled(fixedDelayString = "${pay.archive.interval-millis:60000}")
+    public void archive() {
+        final LocalDateTime now = LocalDateTime.now();
+        try {
+            final long moved = archive(now.minusDays(cancelledAfterDays), now.minusDays(afterDays));
+            if (moved > 0) {
+                log.info("Archived {} pay transactions", moved);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error during archiving transactions", e);
+        }
+    }
+
+    /**
+     * cancelledBefore 이전에 전액 취소되었거나 createdBefore 이전에 생성된 결제 건을 max-chunks-per-run 개의 chunk 까지 옮깁니다.
+     *
+     * @return 옮긴 결제 건수 (취소 거래 제외)
+     */
+    public long archive(LocalDateTime cancelledBefore, LocalDateTime createdBefore) {
+        long moved = 0;
+        long afterId = 0;
+        for (int chunks = 0; chunks < maxChunksPerRun; chunks++) {
+            final MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("afterId", afterId)
+                    .addValue("cancelledBefore", Timestamp.valueOf(cancelledBefore))
+                    .addValue("createdBefore", Timestamp.valueOf(createdBefore))
+                    .addValue("limit", chunkSize);
+            final List<Long> candidates = jdbcTemplate.queryForList(SELECT_CANDIDATES, parameters, Long.class);
+            if (candidates.isEmpty()) {
+                return moved;
+            }
+
+            final Integer count = transactionTemplate.execute(status -> move(candidates, parameters));
+            moved += count == null ? 0 : count;
+            afterId = candidates.get(candidates.size() - 1);
+
+            if (candidates.size() < chunkSize) {
+                return moved;
+            }
+        }
+        return moved;
+    }
+
+    private int move(List<Long> candidates, MapSqlParameterSource parameters) {
+        final List<Long> ids = jdbcTemplate.queryForList(LOCK, new MapSqlParameterSource(parameters.getValues()).addValue("ids", candidates), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final MapSqlParameterSource chunk = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("archivedAt", Timestamp.valueOf(LocalDateTime.now()));
+        jdbcTemplate.update(COPY, chunk);
+        jdbcTemplate.update(DELETE_CANCELS, chunk);
+        jdbcTemplate.update(DELETE_PAYS, chunk);
+
+        archived.add(ids.size());
+        return ids.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pay.archive.transactions", archived, LongAdder::sum)
+                .description("pay transactions moved to the archive with their cancels")
+                .register(registry);
+    }
+}
@@ -0,0 +1,244 @@
+package com.pay.api.domain;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.pay.api.controller.find.MaskingUtil;
+import com.pay.api.type.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 기간 안의 거래를 한 건씩 읽어서 바로 응답에 씁니다. (정산/재무용 추출)
+ * - 결제 테이블과 보관 테이블(TransactionArchiver 가 옮긴 거래)을 함께 읽으므로 보관 여부와 관계없이 기간 안의 거래를 모두 씁니다.
+ * - JPA 엔티티와 취소 목록을 만들지 않고, forward-only JDBC cursor 로 fetch-size 건씩 가져오므로 추출 건수와 상관없이 heap 사용량이 일정합니다.
+ * - 카드정보는 행마다 복호화(CardVault 캐시에 있으면 캐시 사용, 복호화한 카드정보는 캐시에 넣지 않음)해서 카드번호만 마스킹해서 쓰고, 유효기간/cvc 는 쓰지 않습니다.
+ */
+@Component
+public class TransactionExporter {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String SQL = select("Transaction") + " UNION ALL " + select("TransactionArchive") + " ORDER BY CREATED_AT, ID";
+
+    private static final String CSV_HEADER = "transactionId,transactionType,createdAt,cardNumber,installment,amount,vat,remainAmount,remainVat,payTransactionId";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 결제 테이블과 보관 테이블을 같은 컬럼으로 읽습니다. 보관된 취소 거래의 원거래는 함께 보관되므로 같은 테이블에서 찾습니다.
+     */
+    private static String select(String table) {
+        return "SELECT t.ID, t.TRANSACTION_ID, t.TRANSACTION_TYPE, t.CREATED_AT, t.ENCRYPTED_CARD_INFO, t.CARD_TOKEN, " +
+                "v.ENCRYPTED_CARD_INFO AS VAULT_ENCRYPTED_CARD_INFO, v.KEY_VERSION AS VAULT_KEY_VERSION, t.INSTALLMENT, " +
+                "t.AMOUNT, t.VAT, t.REMAIN_AMOUNT, t.REMAIN_VAT, p.TRANSACTION_ID AS PAY_TRANSACTION_ID " +
+                "FROM " + table + " t LEFT JOIN " + table + " p ON p.ID = t.PAY_TRANSACTION_ID " +
+                "LEFT JOIN CardToken v ON v.TOKEN = t.CARD_TOKEN " +
+                "WHERE t.CREATED_AT >= ? AND t.CREATED_AT < ?";
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardVault cardVault;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int fetchSize;
+
+    public TransactionExporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, CardVault cardVault,
+                               @Value("${pay.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardVault = cardVault;
+        this.fetchSize = fetchSize;
+
+        //cursor 를 유지하려면 autocommit 을 끈 트랜잭션 안에서 읽어야 하는 DB 가 있습니다.
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * from <= 거래일시 < to 인 거래를 거래일시 순서대로 씁니다.
+     *
+     * @return 쓴 거래 건수
+     */
+    public long export(LocalDateTime from, LocalDateTime to, Format format, OutputStream outputStream) throws IOException {
+        checkArgument(from.isBefore(to), "from must be before to");
+
+        try {
+            final Long count = readOnlyTransactionTemplate.execute(status -> {
+                try {
+                    return format == Format.CSV ? writeCsv(from, to, outputStream) : writeNdjson(from, to, outputStream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return count == null ? 0 : count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeNdjson(LocalDateTime from, LocalDateTime to, OutputStream outputStream) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            json.setRootValueSeparator(null);
+            final long count = query(from, to, row -> {
+                json.writeStartObject();
+                json.writeStringField("transactionId", row.transactionId);
+                json.writeStringField("transactionType", row.transactionType);
+                json.writeStringField("createdAt", row.createdAt);
+                json.writeStringField("cardNumber", row.cardNumber);
+                json.writeNumberField("installment", row.installment);
+                json.writeNumberField("amount", row.amount);
+                json.writeNumberField("vat", row.vat);
+                json.writeNumberField("remainAmount", row.remainAmount);
+                json.writeNumberField("remainVat", row.remainVat);
+                if (row.payTransactionId == null) {
+                    json.writeNullField("payTransactionId");
+                } else {
+                    json.writeStringField("payTransactionId", row.payTransactionId);
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+            });
+            json.flush();
+            return count;
+        }
+    }
+
+    private long writeCsv(LocalDateTime from, LocalDateTime to, OutputStream outputStream) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            //모든 값이 숫자, 영문 enum, ISO 일시, 마스킹된 카드번호이므로 따옴표로 감쌀 필요가 없습니다.
+            final long count = query(from, to, row -> {
+                writer.write(row.transactionId);
+                writer.write(',');
+                writer.write(row.transactionType);
+                writer.write(',');
+                writer.write(row.createdAt);
+                writer.write(',');
+                writer.write(row.cardNumber);
+                writer.write(',');
+                writer.write(Integer.toString(row.installment));
+                writer.write(',');
+                writer.write(Long.toString(row.amount));
+                writer.write(',');
+                writer.write(Long.toString(row.vat));
+                writer.write(',');
+                writer.write(Long.toString(row.remainAmount));
+                writer.write(',');
+                writer.write(Long.toString(row.remainVat));
+                writer.write(',');
+                if (row.payTransactionId != null) {
+                    writer.write(row.payTransactionId);
+                }
+                writer.write('\n');
+            });
+            writer.flush();
+            return count;
+        }
+    }
+
+    private long query(LocalDateTime from, LocalDateTime to, RowWriter rowWriter) {
+        final Row row = new Row();
+        final long[] count = {0};
+
+        jdbcTemplate.query(connection -> {
+            final PreparedStatement statement = connection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setTimestamp(1, Timestamp.valueOf(from));
+            statement.setTimestamp(2, Timestamp.valueOf(to));
+            statement.setTimestamp(3, Timestamp.valueOf(from));
+            statement.setTimestamp(4, Timestamp.valueOf(to));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            row.read(resultSet, cardVault);
+            try {
+                rowWriter.write(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Row row) throws IOException;
+    }
+
+    /**
+     * 행마다 새로 만들지 않고 재사용합니다.
+     */
+    private static final class Row {
+        private String transactionId;
+        private String transactionType;
+        private String createdAt;
+        private String cardNumber;
+        private int installment;
+        private long amount;
+        private long vat;
+        private long remainAmount;
+        private long remainVat;
+        private String payTransactionId;
+
+        void read(ResultSet resultSet, CardVault cardVault) throws SQLException {
+            this.transactionId = resultSet.getString("TRANSACTION_ID");
+            this.transactionType = resultSet.getString("TRANSACTION_TYPE");
+            this.createdAt = resultSet.getTimestamp("CREATED_AT").toLocalDateTime().toString();
+            this.installment = resultSet.getInt("INSTALLMENT");
+            this.amount = resultSet.getLong("AMOUNT");
+            this.vat = resultSet.getLong("VAT");
+            this.remainAmount = resultSet.getLong("REMAIN_AMOUNT");
+            this.remainVat = resultSet.getLong("REMAIN_VAT");
+            this.payTransactionId = resultSet.getString("PAY_TRANSACTION_ID");
+
+            //CardVault 의 카드정보는 같은 행에서 함께 읽으므로 cursor 를 연 채로 DB 를 다시 읽지 않습니다.
+            final String cardToken = resultSet.getString("CARD_TOKEN");
+            if (cardToken != null) {
+                this.cardNumber = MaskingUtil.getMaskedCardNumber(cardVault.load(cardToken, resultSet.getBytes("VAULT_ENCRYPTED_CARD_INFO"), resultSet.getInt("VAULT_KEY_VERSION")).getCardNumber());
+                return;
+            }
+
+            //취소 거래의 카드정보는 원거래의 관리번호로 암호화되어 있습니다.
+            final String keyTransactionId = TransactionType.CANCEL.name().equals(this.transactionType) ? this.payTransactionId : this.transactionId;
+            this.cardNumber = MaskingUtil.getMaskedCardNumber(CardInfoCrypto.decrypt(keyTransactionId, resultSet.getBytes("ENCRYPTED_CARD_INFO")).getCardNumber());
+        }
+    }
+}
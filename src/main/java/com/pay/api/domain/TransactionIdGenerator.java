@@ -0,0 +1,11 @@
+package com.pay.api.domain;
+
+/**
+ * 관리번호(transactionId) 생성기. 카드사 전문의 UID 필드에 그대로 들어가므로 항상 20자리 문자열을 반환해야 합니다.
+ */
+public interface TransactionIdGenerator {
+
+    int LENGTH = 20;
+
+    String generate();
+}
@@ -1,8 +1,16 @@
 package com.pay.api.domain;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -10,4 +18,54 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
 
     Optional<Transaction> findByTransactionId(String transactionId);
 
+    /**
+     * 취소용 : 원거래는 decreaseRemainAmountAndVat 로만 수정하므로 dirty checking 없이 읽기 전용으로 조회합니다.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.READ_ONLY, value = "true"))
+    Optional<Transaction> findForCancelByTransactionId(String transactionId);
+
+    /**
+     * 조회한 시점의 version 과 같고 잔액이 충분할 때만 잔액을 차감합니다. 수정된 row 수(0 또는 1)를 반환합니다.
+     */
+    @Modifying
+    @Query("update Transaction t " +
+            "set t.remainAmount = t.remainAmount - :amount, t.remainVat = t.remainVat - :vat, t.version = t.version + 1, t.updatedAt = :updatedAt " +
+            "where t.id = :id and t.version = :version and t.remainAmount >= :amount and t.remainVat >= :vat")
+    int decreaseRemainAmountAndVat(@Param("id") Long id, @Param("version") Long version,
+                                   @Param("amount") Long amount, @Param("vat") Long vat,
+                                   @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 조회용 : 원거래와 취소 거래 목록을 한 번의 select 로 가져옵니다.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct t from Transaction t " +
+            "left join fetch t.payTransaction " +
+            "left join fetch t.cancelTransactionList " +
+            "where t.transactionId = :transactionId")
+    Optional<Transaction> findWithCancelTransactionsByTransactionId(@Param("transactionId") String transactionId);
+
+    /**
+     * 카드별 거래 목록 첫 페이지 : (CARD_FINGERPRINT, CREATED_AT, ID) 인덱스를 역순으로 읽습니다.
+     */
+    @Query("select new com.pay.api.domain.TransactionSummary(t.id, t.transactionId, t.transactionType, t.createdAt, t.amount, t.vat, t.remainAmount, t.remainVat, p.transactionId) " +
+            "from Transaction t left join t.payTransaction p " +
+            "where t.cardFingerprint = :cardFingerprint and t.createdAt >= :from and t.createdAt < :to " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransactionSummary> findCardHistory(@Param("cardFingerprint") String cardFingerprint,
+                                             @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                             Pageable pageable);
+
+    /**
+     * 카드별 거래 목록 다음 페이지 : offset 대신 이전 페이지 마지막 거래의 (CREATED_AT, ID) 다음부터 읽습니다. (keyset pagination)
+     */
+    @Query("select new com.pay.api.domain.TransactionSummary(t.id, t.transactionId, t.transactionType, t.createdAt, t.amount, t.vat, t.remainAmount, t.remainVat, p.transactionId) " +
+            "from Transaction t left join t.payTransaction p " +
+            "where t.cardFingerprint = :cardFingerprint and t.createdAt >= :from and t.createdAt < :to " +
+            "and (t.createdAt < :createdAt or (t.createdAt = :createdAt and t.id < :id)) " +
+            "order by t.createdAt desc, t.id desc")
+    List<TransactionSummary> findCardHistoryAfter(@Param("cardFingerprint") String cardFingerprint,
+                                                  @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                                  @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                                  Pageable pageable);
 }
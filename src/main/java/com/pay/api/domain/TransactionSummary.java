@@ -0,0 +1,36 @@
+package com.pay.api.domain;
+
+import com.pay.api.type.TransactionType;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 카드별 거래 목록용 : 카드정보를 복호화하지 않도록 암호화된 컬럼과 전문은 읽지 않습니다.
+ */
+@Getter
+public class TransactionSummary {
+
+    private final Long id;
+    private final String transactionId;
+    private final TransactionType transactionType;
+    private final LocalDateTime createdAt;
+    private final Long amount;
+    private final Long vat;
+    private final Long remainAmount;
+    private final Long remainVat;
+    private final String payTransactionId;
+
+    public TransactionSummary(Long id, String transactionId, TransactionType transactionType, LocalDateTime createdAt,
+                              Long amount, Long vat, Long remainAmount, Long remainVat, String payTransactionId) {
+        this.id = id;
+        this.transactionId = transactionId;
+        this.transactionType = transactionType;
+        this.createdAt = createdAt;
+        this.amount = amount;
+        this.vat = vat;
+        this.remainAmount = remainAmount;
+        this.remainVat = remainVat;
+        this.payTransactionId = payTransactionId;
+    }
+}
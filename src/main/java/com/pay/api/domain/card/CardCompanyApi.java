@@ -1,7 +1,16 @@
 package com.pay.api.domain.card;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface CardCompanyApi {
 
     boolean send(String message);
 
+    /**
+     * 전송이 끝나면(카드사에 기록되면) 결과로 완료되는 future 를 반환합니다. 전송에 실패하면 false 또는 예외로 완료됩니다.
+     * 여러 전문을 모아서 보낼 수 있는 구현은 이 메서드로 먼저 받아 두었다가 한 번에 보냅니다.
+     */
+    default CompletableFuture<Boolean> sendAsync(String message) {
+        return CompletableFuture.completedFuture(send(message));
+    }
 }
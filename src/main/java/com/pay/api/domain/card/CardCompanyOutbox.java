@@ -0,0 +1,115 @@
+package com.pay.api.domain.card;
+
+import com.pay.api.type.OutboxStatus;
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * 카드사로 전송할 전문을 결제/취소 트랜잭션과 같은 DB 트랜잭션 안에서 저장합니다.
+ * 실제 전송은 커밋 이후 CardCompanyOutboxDispatcher 가 수행합니다.
+ */
+@Getter
+@Entity
+@Table(indexes = {@Index(name = "IDX_CARD_COMPANY_OUTBOX_STATUS", columnList = "STATUS,ID"),
+        @Index(name = "IDX_CARD_COMPANY_OUTBOX_PAY_TRANSACTION_ID", columnList = "PAY_TRANSACTION_ID,SEQUENCE_NO")})
+public class CardCompanyOutbox {
+
+    /**
+     * 결제 전문의 순번, 취소 전문은 원 결제의 version 을 올린 뒤의 값을 순번으로 씁니다.
+     */
+    public static final long PAY_SEQUENCE = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CARD_COMPANY_OUTBOX_SEQ_GENERATOR")
+    @SequenceGenerator(name = "CARD_COMPANY_OUTBOX_SEQ_GENERATOR", sequenceName = "CARD_COMPANY_OUTBOX_SEQ", allocationSize = 50)
+    @Column(name = "ID", nullable = false, updatable = false)
+    private Long id;
+
+    /**
+     * 결제 건 단위로 전송 순서를 보장하기 위한 키 (결제는 자신의, 취소는 원 결제의 트랜잭션 아이디)
+     */
+    @Column(name = "PAY_TRANSACTION_ID", nullable = false, length = 20)
+    private String payTransactionId;
+
+    @Column(name = "TRANSACTION_ID", nullable = false, length = 20)
+    private String transactionId;
+
+    /**
+     * 결제 건 안의 전송 순서 (ID 는 노드마다 미리 할당받은 sequence 라 노드 사이에서 순서를 보장하지 않습니다)
+     */
+    @Column(name = "SEQUENCE_NO", nullable = false)
+    private long sequence;
+
+    @Column(name = "MESSAGE", nullable = false, length = 500)
+    private String message;
+
+    @Column(name = "STATUS", nullable = false, length = 10)
+    @Enumerated(value = EnumType.STRING)
+    private OutboxStatus status;
+
+    @Column(name = "ATTEMPTS", nullable = false)
+    private int attempts;
+
+    @Column(name = "NEXT_ATTEMPT_AT", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 전문을 가져간 dispatcher, claimedUntil 이 지나면 다른 dispatcher 가 다시 가져갈 수 있습니다.
+     */
+    @Column(name = "CLAIMED_BY", length = 36)
+    private String claimedBy;
+
+    @Column(name = "CLAIMED_UNTIL")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    public CardCompanyOutbox() {
+    }
+
+    public CardCompanyOutbox(String payTransactionId, String transactionId, long sequence, String message) {
+        this.payTransactionId = requireNonNull(payTransactionId);
+        this.transactionId = requireNonNull(transactionId);
+        this.sequence = sequence;
+        this.message = requireNonNull(message);
+        this.status = OutboxStatus.READY;
+    }
+
+    @PrePersist
+    protected void prePersist() {
+        this.createdAt = LocalDateTime.now();
+        if (this.nextAttemptAt == null) {
+            this.nextAttemptAt = this.createdAt;
+        }
+    }
+
+    boolean isClaimedBy(String owner, LocalDateTime now) {
+        return owner.equals(this.claimedBy) && this.claimedUntil != null && this.claimedUntil.isAfter(now);
+    }
+
+    boolean isReadyAt(LocalDateTime now) {
+        return !this.nextAttemptAt.isAfter(now);
+    }
+
+    void retryAt(LocalDateTime nextAttemptAt) {
+        this.attempts++;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    void dead() {
+        this.attempts++;
+        this.status = OutboxStatus.DEAD;
+    }
+
+    /**
+     * 같은 결제 건의 앞선 전문이 DEAD 이므로 전송하지 않고 DEAD 로 남깁니다. (전송 시도 횟수는 늘리지 않습니다)
+     */
+    void deadBehind() {
+        this.status = OutboxStatus.DEAD;
+    }
+}
@@ -0,0 +1,276 @@
+package com.pay.api.domain.card;
+
+import com.pay.api.type.OutboxStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * outbox 에 쌓인 전문을 배치 단위로 카드사에 전송합니다.
+ * - 노드마다 dispatcher 가 돌므로 전송할 전문은 owner/lease 컬럼(claimedBy, claimedUntil)을 조건부 update 로 먼저 가져가고(claim), 주기가 끝나면 보내지 못한 전문을 놓아줍니다(release).
+ *   노드가 죽어 놓아주지 못한 전문은 lease(pay.outbox.lease-millis)가 지나면 다른 노드가 가져갑니다.
+ * - 같은 결제 건(payTransactionId)의 전문은 순번(sequence) 순서대로 전송하고, 앞선 순번을 다른 dispatcher 가 가져갔으면 이번 주기에는 보내지 않습니다.
+ *   앞선 전문이 실패하면 앞선 전문이 실패하면 뒤의 전문은 다음 주기로 미룹니다.
+ * - 앞선 전문이 DEAD 가 된 결제 건의 뒤 전문은 전송하지 않고 DEAD 로 남깁니다. (카드사가 받지 못한 결제의 취소를 보내지 않도록, 복구할 때는 앞선 전문부터 READY 로 되돌립니다)
+ * - 한 주기에 가져갈 수 있는 READY 전문을 ID 순서대로 batchSize 건씩 끝까지 읽으므로, 재시도를 기다리는 전문이 앞에 쌓여도 뒤의 전문은 전송됩니다.
+ * - 배치는 결제 건마다 한 건씩 묶어서(wave) 한꺼번에 보내고 모두 끝나면 다음 wave 를 보내므로, 결제 건 안의 순서를 지키면서 카드사 API 가 묶어서 저장할 수 있습니다.
+ * - 실패한 전문은 지수 백오프로 재시도하고 maxAttempts 를 넘으면 DEAD 로 남깁니다.
+ * - 전송 성공 후 삭제 전에 장애가 나면 재전송될 수 있으므로(at-least-once) 카드사는 UID 로 중복을 걸러야 합니다.
+ * - 전문 한 건의 전송 시간은 pay.card-company.send{outcome} 메트릭과 JFR(CardSendEvent)로 기록합니다.
+ */
+@Slf4j
+@Component
+public class CardCompanyOutboxDispatcher {
+
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final CardCompanyOutboxRepository repository;
+    private final CardCompanyApi cardCompanyApi;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long leaseMillis;
+
+    /**
+     * 전문을 가져갈 때 claimedBy 에 남기는 dispatcher 아이디
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Timer sendSuccessTimer;
+    private final Timer sendFailureTimer;
+
+    public CardCompanyOutboxDispatcher(CardCompanyOutboxRepository repository,
+                                       CardCompanyApi cardCompanyApi,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${pay.outbox.batch-size:100}") int batchSize,
+                                       @Value("${pay.outbox.max-attempts:10}") int maxAttempts,
+                                       @Value("${pay.outbox.retry-backoff-millis:500}") long retryBackoffMillis,
+                                       @Value("${pay.outbox.lease-millis:60000}") long leaseMillis) {
+        this.repository = repository;
+        this.cardCompanyApi = cardCompanyApi;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.leaseMillis = leaseMillis;
+
+        this.sendSuccessTimer = sendTimer(meterRegistry, "success");
+        this.sendFailureTimer = sendTimer(meterRegistry, "failure");
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("pay.card-company.send")
+                .description("time to send a message to the card company")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 이전 page 에서 막힌/DEAD 가 된 결제 건은 다음 page 에서도 전송하지 않습니다.
+     */
+    @Scheduled(fixedDelayString = "${pay.outbox.poll-interval-millis:100}")
+    public void dispatch() {
+        final LocalDateTime now = LocalDateTime.now();
+        final LocalDateTime claimedUntil = now.plus(leaseMillis, ChronoUnit.MILLIS);
+        final Set<String> blockedPayTransactionIds = new HashSet<>();
+        final Set<String> deadPayTransactionIds = new HashSet<>();
+
+        boolean claimed = false;
+        try {
+            long afterId = 0;
+            List<CardCompanyOutbox> candidates;
+            do {
+                candidates = repository.findClaimable(OutboxStatus.READY, afterId, now, PageRequest.of(0, batchSize));
+                if (candidates.isEmpty()) {
+                    return;
+                }
+                afterId = candidates.get(candidates.size() - 1).getId();
+
+                final List<Long> ids = new ArrayList<>(candidates.size());
+                final Set<String> payTransactionIds = new HashSet<>();
+                for (CardCompanyOutbox candidate : candidates) {
+                    ids.add(candidate.getId());
+                    payTransactionIds.add(candidate.getPayTransactionId());
+                }
+                if (repository.claim(OutboxStatus.READY, ids, owner, claimedUntil, now) > 0) {
+                    claimed = true;
+                    dispatch(claimedInSequence(repository.findByPayTransactionIds(OutboxStatus.READY, payTransactionIds), now),
+                            now, blockedPayTransactionIds, deadPayTransactionIds);
+                }
+            } while (candidates.size() == batchSize);
+        } finally {
+            if (claimed) {
+                repository.release(owner);
+            }
+        }
+    }
+
+    /**
+     * 결제 건, 순번 순서로 정렬된 전문에서 결제 건마다 이 dispatcher 가 가져간 앞쪽 전문만 남깁니다.
+     * 앞선 순번을 다른 dispatcher 가 가져갔거나 아직 아무도 가져가지 않았으면 그 뒤의 전문은 보내지 않습니다.
+     */
+    private List<CardCompanyOutbox> claimedInSequence(List<CardCompanyOutbox> outboxes, LocalDateTime now) {
+        final List<CardCompanyOutbox> claimed = new ArrayList<>(outboxes.size());
+        final Set<String> skippedPayTransactionIds = new HashSet<>();
+        for (CardCompanyOutbox outbox : outboxes) {
+            if (skippedPayTransactionIds.contains(outbox.getPayTransactionId())) {
+                continue;
+            }
+            if (outbox.isClaimedBy(owner, now)) {
+                claimed.add(outbox);
+            } else {
+                skippedPayTransactionIds.add(outbox.getPayTransactionId());
+            }
+        }
+        return claimed;
+    }
+
+    int dispatch(List<CardCompanyOutbox> outboxes) {
+        return dispatch(outboxes, LocalDateTime.now(), new HashSet<>(), new HashSet<>());
+    }
+
+    private int dispatch(List<CardCompanyOutbox> outboxes, LocalDateTime now, Set<String> blockedPayTransactionIds, Set<String> deadPayTransactionIds) {
+        if (outboxes.isEmpty()) {
+            return 0;
+        }
+
+        final Set<String> payTransactionIds = new HashSet<>();
+        for (CardCompanyOutbox outbox : outboxes) {
+            if (!deadPayTransactionIds.contains(outbox.getPayTransactionId())) {
+                payTransactionIds.add(outbox.getPayTransactionId());
+            }
+        }
+        if (!payTransactionIds.isEmpty()) {
+            deadPayTransactionIds.addAll(repository.findPayTransactionIds(OutboxStatus.DEAD, payTransactionIds));
+        }
+
+        final List<Long> sentIds = new ArrayList<>(outboxes.size());
+
+        List<CardCompanyOutbox> remaining = outboxes;
+        while (!remaining.isEmpty()) {
+            final Set<String> waveTransactionIds = new HashSet<>();
+            final List<CardCompanyOutbox> wave = new ArrayList<>();
+            final List<CardCompanyOutbox> next = new ArrayList<>();
+
+            for (CardCompanyOutbox outbox : remaining) {
+                final String payTransactionId = outbox.getPayTransactionId();
+                if (deadPayTransactionIds.contains(payTransactionId)) {
+                    deadBehind(outbox);
+                    continue;
+                }
+
+                if (blockedPayTransactionIds.contains(payTransactionId)) {
+                    continue;
+                }
+
+                if (waveTransactionIds.contains(payTransactionId)) {
+                    next.add(outbox);
+                    continue;
+                }
+
+                if (!outbox.isReadyAt(now)) {
+                    blockedPayTransactionIds.add(payTransactionId);
+                    continue;
+                }
+
+                waveTransactionIds.add(payTransactionId);
+                wave.add(outbox);
+            }
+
+            final List<CompletableFuture<Boolean>> results = sendAll(wave);
+            for (int i = 0; i < wave.size(); i++) {
+                final CardCompanyOutbox outbox = wave.get(i);
+                if (await(outbox, results.get(i))) {
+                    sentIds.add(outbox.getId());
+                } else {
+                    blockedPayTransactionIds.add(outbox.getPayTransactionId());
+                    if (fail(outbox, now)) {
+                        deadPayTransactionIds.add(outbox.getPayTransactionId());
+                    }
+                }
+            }
+            remaining = next;
+        }
+
+        if (!sentIds.isEmpty()) {
+            repository.deleteByIdIn(sentIds);
+        }
+        return sentIds.size();
+    }
+
+    /**
+     * 결제 건마다 하나씩 모은 전문을 한꺼번에 넘겨서 카드사 API 가 묶어서 처리(group commit)할 수 있게 합니다.
+     */
+    private List<CompletableFuture<Boolean>> sendAll(List<CardCompanyOutbox> wave) {
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>(wave.size());
+        for (CardCompanyOutbox outbox : wave) {
+            final CardSendEvent event = new CardSendEvent();
+            event.begin();
+            final long startedAt = System.nanoTime();
+
+            CompletableFuture<Boolean> result;
+            try {
+                result = cardCompanyApi.sendAsync(outbox.getMessage());
+            } catch (Exception e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+            if (result == null) {
+                result = CompletableFuture.completedFuture(false);
+            }
+
+            results.add(result.whenComplete((sent, error) -> {
+                final boolean success = error == null && Boolean.TRUE.equals(sent);
+                (success ? sendSuccessTimer : sendFailureTimer).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                event.complete(outbox, success);
+            }));
+        }
+        return results;
+    }
+
+    private boolean await(CardCompanyOutbox outbox, CompletableFuture<Boolean> result) {
+        try {
+            return Boolean.TRUE.equals(result.join());
+        } catch (Exception e) {
+            log.warn("Error during sending card company message. transactionId : {}", outbox.getTransactionId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * @return DEAD 가 되었으면 true
+     */
+    private boolean fail(CardCompanyOutbox outbox, LocalDateTime now) {
+        final boolean dead = outbox.getAttempts() + 1 >= maxAttempts;
+        if (dead) {
+            outbox.dead();
+            log.error("Card company message is dead after {} attempts. transactionId : {}", outbox.getAttempts(), outbox.getTransactionId());
+        } else {
+            final long backoffMillis = Math.min(MAX_BACKOFF_MILLIS, retryBackoffMillis << Math.min(outbox.getAttempts(), 16));
+            outbox.retryAt(now.plus(backoffMillis, ChronoUnit.MILLIS));
+        }
+        repository.save(outbox);
+        return dead;
+    }
+
+    private void deadBehind(CardCompanyOutbox outbox) {
+        outbox.deadBehind();
+        log.error("Card company message is dead because a previous message of the pay transaction is dead. transactionId : {}, payTransactionId : {}",
+                outbox.getTransactionId(), outbox.getPayTransactionId());
+        repository.save(outbox);
+    }
+}
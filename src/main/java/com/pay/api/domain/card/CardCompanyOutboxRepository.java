@@ -0,0 +1,53 @@
+package com.pay.api.domain.card;
+
+import com.pay.api.type.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CardCompanyOutboxRepository extends JpaRepository<CardCompanyOutbox, Long> {
+
+    /**
+     * 다른 dispatcher 가 가져가지 않았거나 가져간 기한(claimedUntil)이 지난 전문을 ID 순서대로 조회합니다.
+     */
+    @Query("select o from CardCompanyOutbox o where o.status = :status and o.id > :id " +
+            "and (o.claimedUntil is null or o.claimedUntil < :now) order by o.id")
+    List<CardCompanyOutbox> findClaimable(@Param("status") OutboxStatus status, @Param("id") Long id, @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * 조회한 뒤에 다른 dispatcher 가 먼저 가져간 전문은 조건에 걸려 수정되지 않습니다. 가져간 row 수를 반환합니다.
+     */
+    @Transactional
+    @Modifying
+    @Query("update CardCompanyOutbox o set o.claimedBy = :owner, o.claimedUntil = :until " +
+            "where o.id in :ids and o.status = :status and (o.claimedUntil is null or o.claimedUntil < :now)")
+    int claim(@Param("status") OutboxStatus status, @Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("update CardCompanyOutbox o set o.claimedBy = null, o.claimedUntil = null where o.claimedBy = :owner")
+    int release(@Param("owner") String owner);
+
+    /**
+     * 결제 건의 전문 전체를 결제 건, 순번 순서대로 조회합니다. (순번이 같은 기존 row 는 ID 순서)
+     */
+    @Query("select o from CardCompanyOutbox o where o.status = :status and o.payTransactionId in :payTransactionIds order by o.payTransactionId, o.sequence, o.id")
+    List<CardCompanyOutbox> findByPayTransactionIds(@Param("status") OutboxStatus status, @Param("payTransactionIds") Collection<String> payTransactionIds);
+
+    @Query("select distinct o.payTransactionId from CardCompanyOutbox o where o.status = :status and o.payTransactionId in :payTransactionIds")
+    List<String> findPayTransactionIds(@Param("status") OutboxStatus status, @Param("payTransactionIds") Collection<String> payTransactionIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CardCompanyOutbox o where o.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,23 +1,90 @@
 package com.pay.api.domain.card;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * 카드사와 통신하는 부분은 Embedded Database(ex. H2)에 전문을 저장하는 것으로 대체합니다. (pay.card-company.transport=database, 기본값)
+ * group commit (pay.card-company.group-commit.*)
+ * - sendAsync 로 받은 전문은 ring buffer 에 넣고, writer 스레드 하나가 maxBatchSize 건이 모이거나 첫 전문을 받은 지 maxWaitMicros 가 지나면
+ *   multi-row insert 한 번(한 번의 commit)으로 저장합니다.
+ * - 각 전문의 future 는 자신이 포함된 insert 가 commit 된 뒤에 완료되므로 commit 횟수가 아니라 batch 크기에 비례해서 처리량이 늘어납니다.
+ * - ring buffer 가 가득 차면 기다리지 않고 실패로 완료하므로 호출한 쪽(outbox)에서 재시도합니다.
+ */
 @Slf4j
 @Service
-public class CardCompanyRepositoryApi implements CardCompanyApi {
+@ConditionalOnProperty(name = "pay.card-company.transport", havingValue = "database", matchIfMissing = true)
+public class CardCompanyRepositoryApi implements CardCompanyApi, MeterBinder {
+
+    private static final String INSERT_PREFIX = "INSERT INTO CardCompany (MESSAGE) VALUES ";
 
     private final CardCompanyRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean groupCommitEnabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final RingBuffer<Pending> buffer;
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile boolean writerParked;
 
-    public CardCompanyRepositoryApi(CardCompanyRepository repository) {
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedMessages = new LongAdder();
+
+    public CardCompanyRepositoryApi(CardCompanyRepository repository, JdbcTemplate jdbcTemplate,
+                                    @Value("${pay.card-company.group-commit.enabled:true}") boolean groupCommitEnabled,
+                                    @Value("${pay.card-company.group-commit.max-batch-size:256}") int maxBatchSize,
+                                    @Value("${pay.card-company.group-commit.max-wait-micros:200}") long maxWaitMicros,
+                                    @Value("${pay.card-company.group-commit.buffer-size:4096}") int bufferSize) {
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.groupCommitEnabled = groupCommitEnabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+
+        if (groupCommitEnabled) {
+            this.buffer = new RingBuffer<>(bufferSize);
+            this.running = true;
+            this.writer = new Thread(this::write, "card-company-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        } else {
+            this.buffer = null;
+            this.writer = null;
+        }
     }
 
     @Transactional
     @Override
     public boolean send(String message) {
+        if (groupCommitEnabled) {
+            try {
+                sendAsync(message).join();
+            } catch (Exception e) {
+                log.info("CardCompanyApi error", e);
+            }
+            return true;
+        }
+
         try {
             CardCompany card = new CardCompany(message);
             repository.save(card);
@@ -28,4 +95,118 @@ public class CardCompanyRepositoryApi implements CardCompanyApi {
         }
         return true;
     }
+
+    @Override
+    public CompletableFuture<Boolean> sendAsync(String message) {
+        if (!groupCommitEnabled) {
+            return CompletableFuture.completedFuture(send(message));
+        }
+
+        final Pending pending = new Pending(message);
+        if (message == null) {
+            pending.future.completeExceptionally(new NullPointerException("message"));
+            return pending.future;
+        }
+
+        if (!running || !buffer.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("card company send buffer is full"));
+            return pending.future;
+        }
+
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return pending.future;
+    }
+
+    private void write() {
+        final List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !buffer.isEmpty()) {
+            final Pending first = buffer.poll();
+            if (first == null) {
+                park();
+                continue;
+            }
+
+            batch.add(first);
+            final long deadline = System.nanoTime() + maxWaitNanos;
+            while (batch.size() < maxBatchSize) {
+                final Pending next = buffer.poll();
+                if (next != null) {
+                    batch.add(next);
+                } else if (System.nanoTime() - deadline >= 0) {
+                    break;
+                } else {
+                    Thread.yield();
+                }
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 생산자가 writerParked 를 보고 깨우므로, park 하기 전에 한 번 더 비어 있는지 확인합니다.
+     */
+    private void park() {
+        writerParked = true;
+        if (buffer.isEmpty() && running) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        writerParked = false;
+    }
+
+    private void flush(List<Pending> batch) {
+        final StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * 5).append(INSERT_PREFIX);
+        final Object[] args = new Object[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(?)" : ",(?)");
+            args[i] = batch.get(i).message;
+        }
+
+        try {
+            jdbcTemplate.update(sql.toString(), args);
+        } catch (Exception e) {
+            log.warn("Error during writing {} card company messages", batch.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+
+        batches.increment();
+        batchedMessages.add(batch.size());
+        batch.forEach(pending -> pending.future.complete(true));
+    }
+
+    /**
+     * 이미 받은 전문은 모두 저장한 뒤에 writer 를 종료합니다.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        if (!groupCommitEnabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pay.card-company.batches", batches, LongAdder::sum)
+                .description("multi-row inserts written by the group commit writer")
+                .register(registry);
+        FunctionCounter.builder("pay.card-company.batched.messages", batchedMessages, LongAdder::sum)
+                .description("messages written by the group commit writer")
+                .register(registry);
+    }
+
+    private static final class Pending {
+        private final String message;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private Pending(String message) {
+            this.message = message;
+        }
+    }
 }
@@ -0,0 +1,289 @@
+package com.pay.api.domain.card;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.pay.api.domain.MessageReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * 카드사 전문을 memory-mapped segment 파일에 순서대로 덧붙이는 journal 입니다.
+ * - record : 길이(4) + CRC32(4) + 전문(450 byte), 모든 record 의 크기가 같으므로 sequence 로 segment 와 위치를 바로 계산합니다.
+ * - segment 파일(card-messages-{첫 sequence 20자리}.journal)마다 recordsPerSegment 건을 담고, 가득 차면 다음 segment 를 만듭니다.
+ * - append 는 mapping 된 메모리에 기록만 하고, force 를 호출한 쪽이 그동안 덧붙인 record 를 한 번에 디스크에 내립니다. (group force)
+ * - 다시 열 때는 마지막 segment 에서 길이/CRC 가 맞지 않는 첫 record 를 끝으로 보고, 그 뒤의 record 를 0 으로 지운 다음 이어서 씁니다.
+ */
+public final class CardMessageJournal implements Closeable {
+
+    public static final int HEADER_LENGTH = 8;
+    public static final int RECORD_LENGTH = HEADER_LENGTH + MessageReader.MESSAGE_LENGTH;
+
+    private static final String PREFIX = "card-messages-";
+    private static final String SUFFIX = ".journal";
+    private static final int READ_SEGMENT_CACHE_SIZE = 4;
+
+    /**
+     * record 를 하나씩 넘겨받습니다. message 는 전문 450 byte 만 보이는 읽기 전용 buffer 이며 다음 record 를 읽으면 재사용됩니다.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(long sequence, ByteBuffer message);
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long segmentLength;
+
+    /**
+     * 아직 force 하지 않은 record 가 있을 수 있는, 쓰기용으로 mapping 된 segment
+     */
+    private final Map<Long, MappedByteBuffer> writableSegments = new ConcurrentHashMap<>();
+    private final LoadingCache<Long, ByteBuffer> readableSegments;
+
+    private final byte[] record = new byte[RECORD_LENGTH];
+    private final CRC32 crc = new CRC32();
+
+    private long nextSequence;
+    private ByteBuffer writer;
+    private long writerSegment = -1;
+
+    private final Object forceLock = new Object();
+    private volatile long forcedSequence;
+
+    public CardMessageJournal(Path directory, int recordsPerSegment) throws IOException {
+        checkArgument(recordsPerSegment > 0, "recordsPerSegment must be positive");
+
+        this.directory = Files.createDirectories(directory);
+        this.recordsPerSegment = recordsPerSegment;
+        this.segmentLength = (long) recordsPerSegment * RECORD_LENGTH;
+        this.readableSegments = CacheBuilder.newBuilder()
+                .maximumSize(READ_SEGMENT_CACHE_SIZE)
+                .build(CacheLoader.from(segment -> map(segment, FileChannel.MapMode.READ_ONLY)));
+
+        this.nextSequence = recover();
+        this.forcedSequence = nextSequence;
+    }
+
+    /**
+     * 마지막 segment 에서 끝까지 쓰인 record 의 다음 sequence 를 찾습니다.
+     */
+    private long recover() throws IOException {
+        final long lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .mapToLong(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) / recordsPerSegment)
+                    .max()
+                    .orElse(-1);
+        }
+        if (lastSegment < 0) {
+            return 0;
+        }
+
+        final MappedByteBuffer segment = map(lastSegment, FileChannel.MapMode.READ_WRITE);
+        final CRC32 checksum = new CRC32();
+        int index = 0;
+        while (index < recordsPerSegment && isValid(segment, index * RECORD_LENGTH, checksum)) {
+            index++;
+        }
+        truncate(segment, index);
+        return lastSegment * recordsPerSegment + index;
+    }
+
+    /**
+     * 끝으로 본 record 부터 segment 끝까지 남아 있는 record 를 0 으로 덮어씁니다.
+     * 덮어쓰지 않으면 이어서 쓰다가 다시 장애가 났을 때, 그 뒤에 남아 있던 이전 record 의 길이/CRC 가 맞아서 끝으로 이어 붙을 수 있습니다.
+     */
+    private void truncate(MappedByteBuffer segment, int fromIndex) {
+        final byte[] zeros = new byte[RECORD_LENGTH];
+        boolean truncated = false;
+        for (int index = fromIndex; index < recordsPerSegment; index++) {
+            final int position = index * RECORD_LENGTH;
+            if (segment.getLong(position) != 0) {
+                segment.position(position);
+                segment.put(zeros);
+                truncated = true;
+            }
+        }
+        segment.clear();
+        if (truncated) {
+            segment.force();
+        }
+    }
+
+    /**
+     * 전문을 덧붙이고 sequence 를 반환합니다. force 하기 전까지는 장애 시 유실될 수 있습니다.
+     */
+    public synchronized long append(CharSequence message) {
+        checkArgument(message != null && message.length() == MessageReader.MESSAGE_LENGTH, "illegal message");
+
+        final long sequence = nextSequence;
+        final long segment = sequence / recordsPerSegment;
+        if (segment != writerSegment) {
+            writer = writableSegments.computeIfAbsent(segment, index -> map(index, FileChannel.MapMode.READ_WRITE)).duplicate();
+            writerSegment = segment;
+        }
+
+        for (int i = 0; i < MessageReader.MESSAGE_LENGTH; i++) {
+            record[HEADER_LENGTH + i] = (byte) message.charAt(i);
+        }
+        crc.reset();
+        crc.update(record, HEADER_LENGTH, MessageReader.MESSAGE_LENGTH);
+
+        //길이를 마지막에 기록해서, 길이가 있는 record 는 본문과 CRC 가 모두 기록된 것으로 봅니다.
+        final int position = (int) (sequence % recordsPerSegment) * RECORD_LENGTH;
+        writer.position(position + 4);
+        writer.putInt((int) crc.getValue());
+        writer.put(record, HEADER_LENGTH, MessageReader.MESSAGE_LENGTH);
+        writer.putInt(position, MessageReader.MESSAGE_LENGTH);
+
+        nextSequence = sequence + 1;
+        return sequence;
+    }
+
+    /**
+     * 지금까지 덧붙인 record 를 디스크에 내리고, 내린 마지막 record 의 다음 sequence 를 반환합니다.
+     * 여러 스레드가 동시에 호출하면 하나만 force 하고 나머지는 그 결과를 기다립니다.
+     */
+    public long force() {
+        synchronized (forceLock) {
+            final long target = nextSequence();
+            final long from = forcedSequence;
+            if (target <= from) {
+                return from;
+            }
+
+            final long firstSegment = from / recordsPerSegment;
+            final long lastSegment = (target - 1) / recordsPerSegment;
+            for (long segment = firstSegment; segment <= lastSegment; segment++) {
+                final MappedByteBuffer buffer = writableSegments.get(segment);
+                if (buffer != null) {
+                    buffer.force();
+                }
+                //다 채우고 force 한 segment 는 더 쓰지 않으므로 쓰기용 mapping 을 놓습니다.
+                if (segment < lastSegment) {
+                    writableSegments.remove(segment);
+                }
+            }
+            if (target % recordsPerSegment == 0) {
+                writableSegments.remove(lastSegment);
+            }
+
+            forcedSequence = target;
+            return target;
+        }
+    }
+
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    public long forcedSequence() {
+        return forcedSequence;
+    }
+
+    /**
+     * sequence 번째 전문을 읽습니다. segment 와 위치를 계산해서 바로 읽으므로 journal 크기와 상관없이 일정한 시간이 걸립니다.
+     */
+    public String read(long sequence) {
+        checkArgument(sequence >= 0 && sequence < nextSequence(), "sequence out of range : " + sequence);
+
+        final ByteBuffer segment = segmentForRead(sequence / recordsPerSegment);
+        final int position = (int) (sequence % recordsPerSegment) * RECORD_LENGTH;
+        checkState(isValid(segment, position, new CRC32()), "corrupted record : " + sequence);
+
+        final byte[] message = new byte[MessageReader.MESSAGE_LENGTH];
+        segment.position(position + HEADER_LENGTH);
+        segment.get(message);
+        return new String(message, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * fromSequence 부터 마지막으로 덧붙인 record 까지 순서대로 읽습니다. (대사용)
+     * 전문을 복사하지 않고 segment 의 buffer 를 그대로 넘기므로 MessageReader.wrap(ByteBuffer) 로 필요한 필드만 읽습니다.
+     */
+    public void replay(long fromSequence, RecordHandler handler) {
+        checkArgument(fromSequence >= 0, "fromSequence must not be negative");
+
+        final long until = nextSequence();
+        final CRC32 checksum = new CRC32();
+        long sequence = fromSequence;
+        while (sequence < until) {
+            final ByteBuffer segment = segmentForRead(sequence / recordsPerSegment);
+            final long segmentEnd = Math.min(until, (sequence / recordsPerSegment + 1) * recordsPerSegment);
+            for (; sequence < segmentEnd; sequence++) {
+                final int position = (int) (sequence % recordsPerSegment) * RECORD_LENGTH;
+                checkState(isValid(segment, position, checksum), "corrupted record : " + sequence);
+
+                segment.limit(position + RECORD_LENGTH).position(position + HEADER_LENGTH);
+                handler.handle(sequence, segment.slice().asReadOnlyBuffer());
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * 호출한 스레드만 쓰도록 mapping 을 duplicate 해서 반환합니다.
+     */
+    private ByteBuffer segmentForRead(long segment) {
+        final MappedByteBuffer writable = writableSegments.get(segment);
+        if (writable != null) {
+            return writable.duplicate();
+        }
+        try {
+            return readableSegments.getUnchecked(segment).duplicate();
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static boolean isValid(ByteBuffer segment, int position, CRC32 checksum) {
+        if (segment.getInt(position) != MessageReader.MESSAGE_LENGTH) {
+            return false;
+        }
+
+        segment.limit(position + RECORD_LENGTH).position(position + HEADER_LENGTH);
+        checksum.reset();
+        checksum.update(segment);
+        segment.clear();
+        return (int) checksum.getValue() == segment.getInt(position + 4);
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) {
+        final Path path = directory.resolve(String.format("%s%020d%s", PREFIX, segment * recordsPerSegment, SUFFIX));
+        final StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(mode, 0, segmentLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        writableSegments.clear();
+        readableSegments.invalidateAll();
+    }
+}
@@ -0,0 +1,46 @@
+package com.pay.api.domain.card;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 카드사 전문 한 건의 전송을 JFR 에 기록합니다. 기본 설정에서는 50ms 이상 걸린 전송만 기록합니다.
+ */
+@Name("com.pay.CardSend")
+@Label("Card Company Send")
+@Category({"Pay API", "Card Company"})
+@Description("Sending one message from the outbox to the card company")
+@Threshold("50 ms")
+@StackTrace(false)
+class CardSendEvent extends Event {
+
+    @Label("Pay Transaction Id")
+    String payTransactionId;
+
+    @Label("Transaction Id")
+    String transactionId;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Success")
+    boolean success;
+
+    void complete(CardCompanyOutbox outbox, boolean success) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+
+        this.payTransactionId = outbox.getPayTransactionId();
+        this.transactionId = outbox.getTransactionId();
+        this.attempts = outbox.getAttempts() + 1;
+        this.success = success;
+        commit();
+    }
+}
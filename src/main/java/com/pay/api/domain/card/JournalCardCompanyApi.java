@@ -0,0 +1,162 @@
+package com.pay.api.domain.card;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 카드사 전문을 DB 대신 memory-mapped journal(CardMessageJournal)에 덧붙입니다. (pay.card-company.transport=journal)
+ * - 전문은 호출한 스레드에서 바로 journal 에 기록하고, force 스레드 하나가 그동안 쌓인 전문을 force() 한 번으로 디스크에 내린 뒤 future 를 완료합니다. (group force)
+ * - force 하는 동안 들어온 전문은 다음 force 에 함께 내려가므로 force 횟수가 아니라 한 번에 내리는 건수에 비례해서 처리량이 늘어납니다.
+ * - 저장된 전문은 sequence 로 바로 읽거나(read) 처음부터 순서대로 읽어서(replay) 대사에 사용합니다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "pay.card-company.transport", havingValue = "journal")
+public class JournalCardCompanyApi implements CardCompanyApi, MeterBinder {
+
+    private final CardMessageJournal journal;
+
+    private final Queue<Pending> pendings = new ConcurrentLinkedQueue<>();
+    private final Thread forcer;
+    private volatile boolean running = true;
+    private volatile boolean forcerParked;
+
+    private final LongAdder forces = new LongAdder();
+    private final LongAdder forcedMessages = new LongAdder();
+
+    public JournalCardCompanyApi(@Value("${pay.card-company.journal.directory:${java.io.tmpdir}/pay-card-company-journal}") String directory,
+                                 @Value("${pay.card-company.journal.records-per-segment:65536}") int recordsPerSegment) throws IOException {
+        this.journal = new CardMessageJournal(Paths.get(directory), recordsPerSegment);
+
+        this.forcer = new Thread(this::force, "card-company-journal-force");
+        this.forcer.setDaemon(true);
+        this.forcer.start();
+    }
+
+    public CardMessageJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public boolean send(String message) {
+        try {
+            return sendAsync(message).join();
+        } catch (CompletionException e) {
+            log.info("CardCompanyApi error", e.getCause());
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendAsync(String message) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("card company journal is closed"));
+            return future;
+        }
+
+        try {
+            pendings.offer(new Pending(journal.append(message), future));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (forcerParked) {
+            LockSupport.unpark(forcer);
+        }
+        return future;
+    }
+
+    private void force() {
+        while (running || !pendings.isEmpty()) {
+            if (pendings.isEmpty()) {
+                forcerParked = true;
+                if (pendings.isEmpty() && running) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                forcerParked = false;
+                continue;
+            }
+
+            final long forced;
+            try {
+                forced = journal.force();
+            } catch (Exception e) {
+                log.warn("Error during forcing card company journal", e);
+                failAll(e);
+                continue;
+            }
+            forces.increment();
+
+            //append 한 뒤에 queue 에 넣으므로, 순서가 뒤바뀌어 들어온 전문도 이번 force 에 포함되었는지 sequence 로 확인합니다.
+            final Iterator<Pending> iterator = pendings.iterator();
+            while (iterator.hasNext()) {
+                final Pending pending = iterator.next();
+                if (pending.sequence < forced) {
+                    iterator.remove();
+                    forcedMessages.increment();
+                    pending.future.complete(true);
+                }
+            }
+        }
+    }
+
+    private void failAll(Exception cause) {
+        Pending pending;
+        while ((pending = pendings.poll()) != null) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 이미 받은 전문은 모두 force 한 뒤에 journal 을 닫습니다.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(forcer);
+        forcer.join(TimeUnit.SECONDS.toMillis(10));
+        journal.close();
+        failAll(new RejectedExecutionException("card company journal is closed"));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pay.card-company.journal.forces", forces, LongAdder::sum)
+                .description("force calls of the card company journal")
+                .register(registry);
+        FunctionCounter.builder("pay.card-company.journal.forced.messages", forcedMessages, LongAdder::sum)
+                .description("messages made durable by the card company journal")
+                .register(registry);
+    }
+
+    private static final class Pending {
+        private final long sequence;
+        private final CompletableFuture<Boolean> future;
+
+        private Pending(long sequence, CompletableFuture<Boolean> future) {
+            this.sequence = sequence;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.pay.api.domain.card;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * 여러 스레드가 넣고 한 스레드만 꺼내는 고정 크기 ring buffer 입니다.
+ * 잠금 없이 slot 별 sequence 로 넣기/꺼내기 순서를 맞추며, 가득 차면 기다리지 않고 offer 가 false 를 반환합니다.
+ * - slot 의 sequence 가 넣을 위치(tail)와 같으면 비어 있고, tail + 1 이면 값이 들어 있습니다.
+ * - 꺼낸 slot 은 sequence 를 한 바퀴(capacity) 뒤로 옮겨서 다음 차례의 생산자에게 넘깁니다.
+ */
+final class RingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 소비자 스레드만 읽고 씁니다.
+     */
+    private long head;
+
+    RingBuffer(int capacity) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of two");
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(E element) {
+        checkArgument(element != null, "element must not be null");
+
+        long position;
+        while (true) {
+            position = tail.get();
+            final long sequence = sequences.get(index(position));
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                //한 바퀴 전의 값을 아직 꺼내지 않았으므로 가득 찬 상태입니다.
+                return false;
+            }
+        }
+
+        final int index = index(position);
+        elements.lazySet(index, element);
+        sequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * 소비자 스레드에서만 호출합니다. 비어 있으면 null 을 반환합니다.
+     */
+    E poll() {
+        final int index = index(head);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        final E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, head + capacity);
+        head++;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return sequences.get(index(head)) != head + 1;
+    }
+
+    private int index(long position) {
+        return (int) (position & mask);
+    }
+}
@@ -0,0 +1,427 @@
+package com.pay.api.domain.card;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pay.api.domain.MessageBuilder;
+import com.pay.api.domain.MessageReader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 카드사와 TCP 로 통신합니다. (pay.card-company.transport=tcp)
+ * - 요청 : 450 byte 고정 길이 전문, 응답 : UID(20) + 응답코드(2, "00" 이면 승인)
+ * - 연결 pool(pay.card-company.tcp.connections)의 연결마다 응답을 기다리지 않고 여러 전문을 이어서 보내고(pipelining), 응답은 도착 순서와 상관없이 UID 로 찾습니다.
+ * - 연결마다 max-in-flight 를 넘으면 다른 연결을 쓰고, 모든 연결이 가득 차거나 끊겨 있으면 기다리지 않고 실패로 완료합니다. (outbox 에서 재시도)
+ * - 전문은 I/O 스레드 하나가 direct ByteBuffer 에 바로 기록해서 씁니다.
+ * - timeout-millis 안에 응답이 없으면 TimeoutException 으로 완료하고, 그 뒤에 도착한 응답은 버립니다.
+ * - 연결이 끊기면 응답을 기다리던 전문은 모두 실패로 완료하고 reconnect-backoff-millis 뒤에 다시 연결합니다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "pay.card-company.transport", havingValue = "tcp")
+public class TcpCardCompanyApi implements CardCompanyApi, MeterBinder {
+
+    static final int UID_LENGTH = 20;
+    static final int RESPONSE_LENGTH = UID_LENGTH + 2;
+    static final String APPROVED = "00";
+
+    private static final int WRITE_BUFFER_MESSAGES = 32;
+    private static final int READ_BUFFER_RESPONSES = 256;
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+    private final InetSocketAddress address;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final long reconnectBackoffNanos;
+
+    private final Connection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    private final Selector selector;
+    private final AtomicBoolean wakeupRequested = new AtomicBoolean();
+    private final Thread ioThread;
+    private final ScheduledThreadPoolExecutor timer;
+    private volatile boolean running = true;
+
+    private final LongAdder timeouts = new LongAdder();
+
+    public TcpCardCompanyApi(@Value("${pay.card-company.tcp.host:localhost}") String host,
+                             @Value("${pay.card-company.tcp.port:9450}") int port,
+                             @Value("${pay.card-company.tcp.connections:4}") int connections,
+                             @Value("${pay.card-company.tcp.max-in-flight:256}") int maxInFlight,
+                             @Value("${pay.card-company.tcp.timeout-millis:3000}") long timeoutMillis,
+                             @Value("${pay.card-company.tcp.reconnect-backoff-millis:1000}") long reconnectBackoffMillis) throws IOException {
+        this.address = new InetSocketAddress(host, port);
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+        this.reconnectBackoffNanos = TimeUnit.MILLISECONDS.toNanos(reconnectBackoffMillis);
+
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            this.connections[i] = new Connection();
+        }
+
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("card-company-timeout-%d").setDaemon(true).build());
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        this.selector = Selector.open();
+        this.ioThread = new Thread(this::run, "card-company-io");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * 응답을 받을 때까지 기다리고, 실패나 timeout 이면 false 를 반환합니다.
+     */
+    @Override
+    public boolean send(String message) {
+        try {
+            return sendAsync(message).join();
+        } catch (CompletionException e) {
+            log.info("CardCompanyApi error", e.getCause());
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendAsync(String message) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (message == null || message.length() != MessageReader.MESSAGE_LENGTH) {
+            future.completeExceptionally(new IllegalArgumentException("illegal message"));
+            return future;
+        }
+
+        final Connection connection = reserve();
+        if (connection == null) {
+            future.completeExceptionally(new RejectedExecutionException("card company connections are busy or closed"));
+            return future;
+        }
+
+        final Pending pending = new Pending(connection, new MessageReader().wrap(message).uid(), message, future);
+        if (connection.inFlight.putIfAbsent(pending.uid, pending) != null) {
+            connection.inFlightCount.decrementAndGet();
+            future.completeExceptionally(new IllegalStateException("message with the same uid is in flight : " + pending.uid));
+            return future;
+        }
+
+        pending.timeout = timer.schedule(() -> expire(pending), timeoutMillis, TimeUnit.MILLISECONDS);
+        connection.outbound.offer(pending);
+        if (wakeupRequested.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+        return future;
+    }
+
+    /**
+     * 연결된 연결 중에서 in-flight 가 max-in-flight 보다 적은 연결을 돌아가면서 고릅니다.
+     */
+    private Connection reserve() {
+        if (!running) {
+            return null;
+        }
+
+        final int start = nextConnection.getAndIncrement();
+        for (int i = 0; i < connections.length; i++) {
+            final Connection connection = connections[Math.floorMod(start + i, connections.length)];
+            if (!connection.connected) {
+                continue;
+            }
+            if (connection.inFlightCount.incrementAndGet() <= maxInFlight) {
+                return connection;
+            }
+            connection.inFlightCount.decrementAndGet();
+        }
+        return null;
+    }
+
+    private void expire(Pending pending) {
+        if (finish(pending, null, new TimeoutException("no response from card company within " + timeoutMillis + "ms. uid : " + pending.uid))) {
+            timeouts.increment();
+        }
+    }
+
+    /**
+     * in-flight 에서 먼저 꺼낸 쪽(응답, timeout, 연결 끊김)만 future 를 완료합니다.
+     */
+    private boolean finish(Pending pending, Boolean approved, Throwable error) {
+        final Connection connection = pending.connection;
+        if (!connection.inFlight.remove(pending.uid, pending)) {
+            return false;
+        }
+        connection.inFlightCount.decrementAndGet();
+
+        final ScheduledFuture<?> timeout = pending.timeout;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+
+        if (error != null) {
+            pending.future.completeExceptionally(error);
+        } else {
+            pending.future.complete(approved);
+        }
+        return true;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                final long now = System.nanoTime();
+                for (Connection connection : connections) {
+                    connection.connectIfNeeded(now);
+                }
+
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                wakeupRequested.set(false);
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    ((Connection) key.attachment()).handle(key);
+                }
+
+                for (Connection connection : connections) {
+                    connection.flush();
+                }
+            } catch (Exception e) {
+                log.warn("Error in card company I/O loop", e);
+            }
+        }
+
+        for (Connection connection : connections) {
+            connection.disconnect(new ClosedChannelException());
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.info("Error during closing card company selector", e);
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        ioThread.join(TimeUnit.SECONDS.toMillis(10));
+        timer.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pay.card-company.tcp.in-flight", connections, TcpCardCompanyApi::inFlight)
+                .description("messages waiting for a card company response")
+                .register(registry);
+        Gauge.builder("pay.card-company.tcp.connections", connections, TcpCardCompanyApi::connected)
+                .description("connected card company connections")
+                .register(registry);
+        FunctionCounter.builder("pay.card-company.tcp.timeouts", timeouts, LongAdder::sum)
+                .description("messages without a card company response within the timeout")
+                .register(registry);
+    }
+
+    private static double inFlight(Connection[] connections) {
+        int sum = 0;
+        for (Connection connection : connections) {
+            sum += connection.inFlightCount.get();
+        }
+        return sum;
+    }
+
+    private static double connected(Connection[] connections) {
+        int sum = 0;
+        for (Connection connection : connections) {
+            sum += connection.connected ? 1 : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * channel, buffer, reconnectAt 은 I/O 스레드에서만 사용합니다.
+     */
+    private final class Connection {
+        private final Queue<Pending> outbound = new ConcurrentLinkedQueue<>();
+        private final ConcurrentHashMap<String, Pending> inFlight = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlightCount = new AtomicInteger();
+        private volatile boolean connected;
+
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_MESSAGES * MessageReader.MESSAGE_LENGTH);
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_RESPONSES * RESPONSE_LENGTH);
+        private final byte[] response = new byte[RESPONSE_LENGTH];
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long reconnectAt = System.nanoTime();
+
+        void connectIfNeeded(long now) {
+            if (channel != null || !running || now - reconnectAt < 0) {
+                return;
+            }
+
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                if (channel.connect(address)) {
+                    connected();
+                }
+            } catch (IOException e) {
+                log.warn("Error during connecting to card company {}", address, e);
+                disconnect(e);
+            }
+        }
+
+        void handle(SelectionKey key) {
+            try {
+                if (key.isConnectable() && channel.finishConnect()) {
+                    connected();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush();
+                }
+            } catch (IOException e) {
+                log.warn("Card company connection to {} is closed", address, e);
+                disconnect(e);
+            }
+        }
+
+        private void connected() {
+            key.interestOps(SelectionKey.OP_READ);
+            connected = true;
+            log.info("Connected to card company {}", address);
+        }
+
+        private void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                throw new EOFException("card company closed the connection");
+            }
+
+            readBuffer.flip();
+            while (readBuffer.remaining() >= RESPONSE_LENGTH) {
+                readBuffer.get(response);
+                final String uid = new String(response, 0, UID_LENGTH, StandardCharsets.ISO_8859_1).trim();
+                final Pending pending = inFlight.get(uid);
+                if (pending == null) {
+                    log.info("Card company response without a waiting message. uid : {}", uid);
+                    continue;
+                }
+                finish(pending, response[UID_LENGTH] == APPROVED.charAt(0) && response[UID_LENGTH + 1] == APPROVED.charAt(1), null);
+            }
+            readBuffer.compact();
+        }
+
+        /**
+         * 대기 중인 전문을 write buffer 에 채우고, 소켓이 받는 만큼 씁니다. 다 쓰지 못하면 OP_WRITE 를 기다립니다.
+         */
+        void flush() {
+            if (!connected) {
+                return;
+            }
+
+            try {
+                while (true) {
+                    fill();
+                    if (writeBuffer.position() == 0) {
+                        break;
+                    }
+
+                    writeBuffer.flip();
+                    channel.write(writeBuffer);
+                    final boolean drained = !writeBuffer.hasRemaining();
+                    writeBuffer.compact();
+                    if (!drained) {
+                        break;
+                    }
+                }
+                key.interestOps(writeBuffer.position() == 0 ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                log.warn("Card company connection to {} is closed", address, e);
+                disconnect(e);
+            }
+        }
+
+        private void fill() {
+            Pending pending;
+            while (writeBuffer.remaining() >= MessageReader.MESSAGE_LENGTH && (pending = outbound.poll()) != null) {
+                if (inFlight.get(pending.uid) != pending) {
+                    //이미 timeout 된 전문은 보내지 않습니다.
+                    continue;
+                }
+
+                MessageBuilder.encodeTo(pending.message, writeBuffer);
+            }
+        }
+
+        void disconnect(IOException cause) {
+            connected = false;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.info("Error during closing card company connection", e);
+                }
+            }
+            channel = null;
+            key = null;
+            reconnectAt = System.nanoTime() + reconnectBackoffNanos;
+            writeBuffer.clear();
+            readBuffer.clear();
+
+            outbound.clear();
+            for (Pending pending : inFlight.values()) {
+                finish(pending, null, cause);
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final Connection connection;
+        private final String uid;
+        private final String message;
+        private final CompletableFuture<Boolean> future;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Pending(Connection connection, String uid, String message, CompletableFuture<Boolean> future) {
+            this.connection = connection;
+            this.uid = uid;
+            this.message = message;
+            this.future = future;
+        }
+    }
+}
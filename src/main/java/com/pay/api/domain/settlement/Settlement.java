@@ -0,0 +1,46 @@
+package com.pay.api.domain.settlement;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * 일자/할부개월별 정산 합계 (SettlementSummary 에 아직 반영하지 않은 증분 포함)
+ */
+@Getter
+public class Settlement {
+
+    static final int PAY_COUNT = 0;
+    static final int PAY_AMOUNT = 1;
+    static final int PAY_VAT = 2;
+    static final int CANCEL_COUNT = 3;
+    static final int CANCEL_AMOUNT = 4;
+    static final int CANCEL_VAT = 5;
+    static final int REMAIN_AMOUNT = 6;
+    static final int REMAIN_VAT = 7;
+    static final int SIZE = 8;
+
+    private final LocalDate settlementDate;
+    private final int installment;
+    private final long payCount;
+    private final long payAmount;
+    private final long payVat;
+    private final long cancelCount;
+    private final long cancelAmount;
+    private final long cancelVat;
+    private final long remainAmount;
+    private final long remainVat;
+
+    Settlement(LocalDate settlementDate, int installment, long[] values) {
+        this.settlementDate = settlementDate;
+        this.installment = installment;
+        this.payCount = values[PAY_COUNT];
+        this.payAmount = values[PAY_AMOUNT];
+        this.payVat = values[PAY_VAT];
+        this.cancelCount = values[CANCEL_COUNT];
+        this.cancelAmount = values[CANCEL_AMOUNT];
+        this.cancelVat = values[CANCEL_VAT];
+        this.remainAmount = values[REMAIN_AMOUNT];
+        this.remainVat = values[REMAIN_VAT];
+    }
+}
@@ -0,0 +1,265 @@
+package com.pay.api.domain.settlement;
+
+import com.pay.api.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 결제/취소가 커밋될 때마다 일자/할부개월별 정산 합계를 메모리에서 더하고, 주기적으로 증분만 SettlementSummary 에 반영합니다.
+ * - 버킷은 (일자, 할부개월) 마다 하나이고 값은 LongAdder 로 나눠서 더하므로, 같은 버킷에 동시에 더해도 경합하지 않습니다.
+ * - flush 는 버킷마다 지난 flush 이후의 증분을 update 한 번으로 더하므로, 여러 노드가 같은 row 에 반영해도 덮어쓰지 않습니다.
+ * - 조회는 그 날짜의 summary row 와 아직 반영하지 않은 증분을 더하므로 거래 건수가 아니라 버킷 수에 비례합니다.
+ * - 어제/오늘 버킷만 lock 없이 더하고, 그 전 날짜(지난 결제의 취소)는 ConcurrentHashMap.compute 안에서 더합니다.
+ *   그 전 날짜의 버킷은 모두 반영되면 computeIfPresent 로 지우므로, 더하는 중인 버킷을 지워서 증분을 잃지 않습니다.
+ * - 반영하지 않은 증분은 장애 시 유실될 수 있습니다. (원장은 Transaction 이므로 README 의 SQL 로 다시 만들 수 있습니다)
+ */
+@Slf4j
+@Component
+public class SettlementAggregator {
+
+    /**
+     * lock 없이 더하는 날짜 수 (오늘부터 거슬러), 지우는 날짜는 자정 전후에 더하던 버킷과 겹치지 않도록 하루를 더 둡니다.
+     */
+    private static final int OPEN_DAYS = 2;
+
+    private final SettlementSummaryRepository settlementSummaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ConcurrentMap<SettlementSummary.Key, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * flush 와 조회가 같은 증분을 두 번 더하지 않도록 순서를 맞춥니다.
+     */
+    private final Object flushLock = new Object();
+
+    public SettlementAggregator(SettlementSummaryRepository settlementSummaryRepository, PlatformTransactionManager transactionManager) {
+        this.settlementSummaryRepository = settlementSummaryRepository;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 진행 중인 DB 트랜잭션이 있으면 커밋 이후에, 없으면 바로 더합니다.
+     */
+    public void payAfterCommit(List<Transaction> payTransactions) {
+        afterCommit(() -> payTransactions.forEach(this::pay));
+    }
+
+    public void cancelAfterCommit(Transaction payTransaction, Transaction cancelTransaction) {
+        afterCommit(() -> cancel(payTransaction, cancelTransaction));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void pay(Transaction payTransaction) {
+        add(payTransaction.getCreatedAt().toLocalDate(), payTransaction.getInstallment(), bucket -> {
+            bucket.add(Settlement.PAY_COUNT, 1);
+            bucket.add(Settlement.PAY_AMOUNT, payTransaction.getAmount());
+            bucket.add(Settlement.PAY_VAT, payTransaction.getVat());
+            bucket.add(Settlement.REMAIN_AMOUNT, payTransaction.getAmount());
+            bucket.add(Settlement.REMAIN_VAT, payTransaction.getVat());
+        });
+    }
+
+    /**
+     * 취소는 원거래의 할부개월로 취소일자 버킷에 더하고, 잔액은 원거래 일자 버킷에서 뺍니다.
+     */
+    private void cancel(Transaction payTransaction, Transaction cancelTransaction) {
+        add(cancelTransaction.getCreatedAt().toLocalDate(), payTransaction.getInstallment(), bucket -> {
+            bucket.add(Settlement.CANCEL_COUNT, 1);
+            bucket.add(Settlement.CANCEL_AMOUNT, cancelTransaction.getAmount());
+            bucket.add(Settlement.CANCEL_VAT, cancelTransaction.getVat());
+        });
+
+        add(payTransaction.getCreatedAt().toLocalDate(), payTransaction.getInstallment(), bucket -> {
+            bucket.add(Settlement.REMAIN_AMOUNT, -cancelTransaction.getAmount());
+            bucket.add(Settlement.REMAIN_VAT, -cancelTransaction.getVat());
+        });
+    }
+
+    private void add(LocalDate date, int installment, Consumer<Bucket> action) {
+        final SettlementSummary.Key key = new SettlementSummary.Key(date, installment);
+        if (!date.isBefore(LocalDate.now().minusDays(OPEN_DAYS - 1))) {
+            action.accept(buckets.computeIfAbsent(key, Bucket::new));
+            return;
+        }
+
+        buckets.compute(key, (k, bucket) -> {
+            final Bucket current = bucket == null ? new Bucket(k) : bucket;
+            action.accept(current);
+            return current;
+        });
+    }
+
+    /**
+     * 버킷마다 지난 flush 이후의 증분을 더합니다. 실패한 버킷의 증분은 다음 flush 에 다시 반영합니다.
+     */
+    @Scheduled(fixedDelayString = "${pay.settlement.flush-interval-millis:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            for (Bucket bucket : buckets.values()) {
+                final long[] pending = bucket.pending();
+                if (isZero(pending)) {
+                    continue;
+                }
+
+                try {
+                    write(bucket.key, pending);
+                    bucket.flushed(pending);
+                } catch (RuntimeException e) {
+                    log.warn("Error during flushing settlement. date : {}, installment : {}", bucket.key.getSettlementDate(), bucket.key.getInstallment(), e);
+                }
+            }
+            prune();
+        }
+    }
+
+    /**
+     * lock 없이 더하는 날짜보다 하루 더 지난 버킷 중 모두 반영된 버킷을 지웁니다. 이후에 들어온 취소는 새 버킷에 더합니다.
+     */
+    private void prune() {
+        final LocalDate closedBefore = LocalDate.now().minusDays(OPEN_DAYS);
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.key.getSettlementDate().isBefore(closedBefore)) {
+                buckets.computeIfPresent(bucket.key, (key, current) -> isZero(current.pending()) ? null : current);
+            }
+        }
+    }
+
+    private void write(SettlementSummary.Key key, long[] delta) {
+        if (add(key, delta) > 0) {
+            return;
+        }
+
+        try {
+            transactionTemplate.execute(status -> settlementSummaryRepository.saveAndFlush(new SettlementSummary(key.getSettlementDate(), key.getInstallment(), delta)));
+        } catch (DataIntegrityViolationException e) {
+            //다른 노드가 먼저 insert 한 경우
+            add(key, delta);
+        }
+    }
+
+    private int add(SettlementSummary.Key key, long[] delta) {
+        final Integer updated = transactionTemplate.execute(status -> settlementSummaryRepository.add(key.getSettlementDate(), key.getInstallment(),
+                delta[Settlement.PAY_COUNT], delta[Settlement.PAY_AMOUNT], delta[Settlement.PAY_VAT],
+                delta[Settlement.CANCEL_COUNT], delta[Settlement.CANCEL_AMOUNT], delta[Settlement.CANCEL_VAT],
+                delta[Settlement.REMAIN_AMOUNT], delta[Settlement.REMAIN_VAT], LocalDateTime.now()));
+        return updated == null ? 0 : updated;
+    }
+
+    /**
+     * date 의 할부개월별 합계 : 반영된 summary row 와 아직 반영하지 않은 증분을 더합니다.
+     */
+    public List<Settlement> find(LocalDate date) {
+        synchronized (flushLock) {
+            final Map<Integer, long[]> totals = new TreeMap<>();
+            final List<SettlementSummary> summaries = readOnlyTransactionTemplate.execute(status -> settlementSummaryRepository.findBySettlementDateOrderByInstallmentAsc(date));
+            if (summaries != null) {
+                summaries.forEach(summary -> totals.put(summary.getInstallment(), summary.values()));
+            }
+
+            for (Bucket bucket : buckets.values()) {
+                if (!bucket.key.getSettlementDate().equals(date)) {
+                    continue;
+                }
+                final long[] pending = bucket.pending();
+                final long[] total = totals.computeIfAbsent(bucket.key.getInstallment(), installment -> new long[Settlement.SIZE]);
+                for (int i = 0; i < Settlement.SIZE; i++) {
+                    total[i] += pending[i];
+                }
+            }
+
+            return totals.entrySet().stream()
+                    .map(entry -> new Settlement(date, entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        flush();
+    }
+
+    private static boolean isZero(long[] values) {
+        for (long value : values) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Bucket {
+        private final SettlementSummary.Key key;
+        private final LongAdder[] values = new LongAdder[Settlement.SIZE];
+
+        /**
+         * 지금까지 summary 에 반영한 값 (flushLock 안에서만 사용)
+         * LongAdder.sumThenReset 은 동시에 더한 값을 잃을 수 있으므로 값은 초기화하지 않고 반영한 값과의 차이를 증분으로 씁니다.
+         */
+        private final long[] flushed = new long[Settlement.SIZE];
+
+        private Bucket(SettlementSummary.Key key) {
+            this.key = key;
+            for (int i = 0; i < Settlement.SIZE; i++) {
+                values[i] = new LongAdder();
+            }
+        }
+
+        private void add(int index, long value) {
+            values[index].add(value);
+        }
+
+        private long[] pending() {
+            final long[] pending = new long[Settlement.SIZE];
+            for (int i = 0; i < Settlement.SIZE; i++) {
+                pending[i] = values[i].sum() - flushed[i];
+            }
+            return pending;
+        }
+
+        private void flushed(long[] delta) {
+            for (int i = 0; i < Settlement.SIZE; i++) {
+                flushed[i] += delta[i];
+            }
+        }
+    }
+}
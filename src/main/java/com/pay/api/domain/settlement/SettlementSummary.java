@@ -0,0 +1,122 @@
+package com.pay.api.domain.settlement;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 일자/할부개월별 정산 합계. SettlementAggregator 가 주기적으로 증분을 더합니다.
+ * - 결제 건수/금액/부가세, 취소 건수/금액/부가세 : 그 날짜에 생성된 결제/취소 거래의 합계 (취소는 원거래의 할부개월로 집계)
+ * - 잔액/잔여 부가세 : 그 날짜에 생성된 결제 거래의 현재 REMAIN_AMOUNT/REMAIN_VAT 합계
+ */
+@Getter
+@Entity
+@IdClass(SettlementSummary.Key.class)
+public class SettlementSummary implements Persistable<SettlementSummary.Key> {
+
+    @Id
+    @Column(name = "SETTLEMENT_DATE", nullable = false)
+    private LocalDate settlementDate;
+
+    @Id
+    @Column(name = "INSTALLMENT", nullable = false)
+    private Integer installment;
+
+    @Column(name = "PAY_COUNT", nullable = false)
+    private long payCount;
+
+    @Column(name = "PAY_AMOUNT", nullable = false)
+    private long payAmount;
+
+    @Column(name = "PAY_VAT", nullable = false)
+    private long payVat;
+
+    @Column(name = "CANCEL_COUNT", nullable = false)
+    private long cancelCount;
+
+    @Column(name = "CANCEL_AMOUNT", nullable = false)
+    private long cancelAmount;
+
+    @Column(name = "CANCEL_VAT", nullable = false)
+    private long cancelVat;
+
+    @Column(name = "REMAIN_AMOUNT", nullable = false)
+    private long remainAmount;
+
+    @Column(name = "REMAIN_VAT", nullable = false)
+    private long remainVat;
+
+    @Column(name = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+
+    /**
+     * 새로 만든 row 는 merge(select 후 update) 하지 않고 insert 하도록 합니다. 다른 노드가 먼저 insert 했다면 덮어쓰지 않고 키 중복으로 실패합니다.
+     */
+    @Transient
+    private boolean created;
+
+    public SettlementSummary() {
+    }
+
+    SettlementSummary(LocalDate settlementDate, int installment, long[] values) {
+        this.settlementDate = settlementDate;
+        this.installment = installment;
+        this.payCount = values[Settlement.PAY_COUNT];
+        this.payAmount = values[Settlement.PAY_AMOUNT];
+        this.payVat = values[Settlement.PAY_VAT];
+        this.cancelCount = values[Settlement.CANCEL_COUNT];
+        this.cancelAmount = values[Settlement.CANCEL_AMOUNT];
+        this.cancelVat = values[Settlement.CANCEL_VAT];
+        this.remainAmount = values[Settlement.REMAIN_AMOUNT];
+        this.remainVat = values[Settlement.REMAIN_VAT];
+        this.created = true;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(settlementDate, installment);
+    }
+
+    @Override
+    public boolean isNew() {
+        return created;
+    }
+
+    @PostPersist
+    @PostLoad
+    protected void loaded() {
+        this.created = false;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    long[] values() {
+        return new long[]{payCount, payAmount, payVat, cancelCount, cancelAmount, cancelVat, remainAmount, remainVat};
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private LocalDate settlementDate;
+        private Integer installment;
+
+        public Key() {
+        }
+
+        Key(LocalDate settlementDate, Integer installment) {
+            this.settlementDate = settlementDate;
+            this.installment = installment;
+        }
+    }
+}
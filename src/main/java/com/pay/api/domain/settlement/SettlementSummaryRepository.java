@@ -0,0 +1,32 @@
+package com.pay.api.domain.settlement;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SettlementSummaryRepository extends JpaRepository<SettlementSummary, SettlementSummary.Key> {
+
+    List<SettlementSummary> findBySettlementDateOrderByInstallmentAsc(LocalDate settlementDate);
+
+    /**
+     * 증분을 더합니다. 여러 노드가 같은 row 에 더해도 덮어쓰지 않도록 읽지 않고 update 한 번으로 처리합니다.
+     */
+    @Modifying
+    @Query("update SettlementSummary s " +
+            "set s.payCount = s.payCount + :payCount, s.payAmount = s.payAmount + :payAmount, s.payVat = s.payVat + :payVat, " +
+            "s.cancelCount = s.cancelCount + :cancelCount, s.cancelAmount = s.cancelAmount + :cancelAmount, s.cancelVat = s.cancelVat + :cancelVat, " +
+            "s.remainAmount = s.remainAmount + :remainAmount, s.remainVat = s.remainVat + :remainVat, s.updatedAt = :updatedAt " +
+            "where s.settlementDate = :settlementDate and s.installment = :installment")
+    int add(@Param("settlementDate") LocalDate settlementDate, @Param("installment") Integer installment,
+            @Param("payCount") long payCount, @Param("payAmount") long payAmount, @Param("payVat") long payVat,
+            @Param("cancelCount") long cancelCount, @Param("cancelAmount") long cancelAmount, @Param("cancelVat") long cancelVat,
+            @Param("remainAmount") long remainAmount, @Param("remainVat") long remainVat,
+            @Param("updatedAt") LocalDateTime updatedAt);
+}
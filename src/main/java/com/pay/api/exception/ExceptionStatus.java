@@ -0,0 +1,38 @@
+package com.pay.api.exception;
+
+import org.hibernate.StaleObjectStateException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+
+import javax.validation.ConstraintViolationException;
+
+/**
+ * 예외별 응답 상태. EndpointAdvice 와 일괄 결제의 건별 실패(BatchPayResponse)가 같은 기준을 사용합니다.
+ */
+public final class ExceptionStatus {
+
+    private ExceptionStatus() {
+    }
+
+    public static HttpStatus of(Throwable e) {
+        if (e instanceof ConstraintViolationException || e instanceof IllegalArgumentException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (e instanceof BadRequestException || e instanceof IllegalStatusException) {
+            return HttpStatus.NOT_ACCEPTABLE;
+        }
+        if (e instanceof TransactionNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (e instanceof ConflictException || e instanceof StaleObjectStateException || e instanceof OptimisticLockingFailureException) {
+            return HttpStatus.CONFLICT;
+        }
+        if (e instanceof IdempotencyKeyReusedException) {
+            return HttpStatus.UNPROCESSABLE_ENTITY;
+        }
+        if (e instanceof OverloadedException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
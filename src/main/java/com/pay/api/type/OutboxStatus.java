@@ -0,0 +1,6 @@
+package com.pay.api.type;
+
+public enum OutboxStatus {
+    READY,
+    DEAD
+}
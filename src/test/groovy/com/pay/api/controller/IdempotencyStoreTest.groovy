@@ -0,0 +1,114 @@
+package com.pay.api.controller
+
+import com.pay.api.exception.ConflictException
+import com.pay.api.exception.IdempotencyKeyReusedException
+import org.springframework.http.ResponseEntity
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+class IdempotencyStoreTest extends Specification {
+
+    static final Object[] REQUEST = ["1234567890123456", "1212", "123", 0, 11_000L, 1_000L] as Object[]
+
+    IdempotencyStore store = new IdempotencyStore(100, 60, 1_000)
+
+    def "처리 중인 요청과 같은 key 로 들어온 재시도는 기다렸다가 같은 응답을 받는다."() {
+        given:
+        def started = new CountDownLatch(1)
+        def finish = new CountDownLatch(1)
+        def calls = new AtomicInteger()
+        def pool = Executors.newFixedThreadPool(2)
+
+        when:
+        def first = pool.submit({
+            store.execute("POST /pay/transactions", "key-1", REQUEST, {
+                calls.incrementAndGet()
+                started.countDown()
+                finish.await()
+                ResponseEntity.status(201).body("first")
+            } as Supplier)
+        } as Callable)
+        started.await()
+        def retry = pool.submit({
+            store.execute("POST /pay/transactions", "key-1", REQUEST, { calls.incrementAndGet(); ResponseEntity.ok("retry") } as Supplier)
+        } as Callable)
+        finish.countDown()
+
+        then:
+        first.get().is(retry.get())
+        retry.get().statusCodeValue == 201
+        calls.get() == 1
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def "첫 요청이 실패하면 저장하지 않고 재시도를 다시 처리한다."() {
+        when:
+        store.execute("POST /pay/transactions", "key-1", REQUEST, { throw new ConflictException("locked") } as Supplier)
+
+        then:
+        thrown(ConflictException)
+        store.size() == 0
+
+        expect:
+        store.execute("POST /pay/transactions", "key-1", REQUEST, { ResponseEntity.status(201).body("ok") } as Supplier).body == "ok"
+    }
+
+    def "key 가 없으면 저장하지 않고 매번 처리한다."() {
+        given:
+        def calls = new AtomicInteger()
+
+        when:
+        2.times { store.execute("POST /pay/transactions", null, REQUEST, { ResponseEntity.ok(calls.incrementAndGet()) } as Supplier) }
+
+        then:
+        calls.get() == 2
+        store.size() == 0
+    }
+
+    def "같은 key 로 다른 내용을 요청하면 첫 응답을 반환하지 않고 거절한다."() {
+        given:
+        def calls = new AtomicInteger()
+        store.execute("POST /pay/transactions", "key-1", REQUEST, { ResponseEntity.status(201).body(calls.incrementAndGet()) } as Supplier)
+
+        when:
+        store.execute("POST /pay/transactions", "key-1", ["1234567890123456", "1212", "123", 0, 12_000L, 1_000L] as Object[],
+                { ResponseEntity.status(201).body(calls.incrementAndGet()) } as Supplier)
+
+        then:
+        thrown(IdempotencyKeyReusedException)
+        calls.get() == 1
+
+        expect:
+        store.execute("POST /pay/transactions", "key-1", ["1234567890123456", "1212", "123", 0, 11_000L, 1_000L] as Object[],
+                { ResponseEntity.status(201).body(calls.incrementAndGet()) } as Supplier).body == 1
+    }
+
+    def "값의 경계가 다르면 다른 hash 가 된다."() {
+        expect:
+        store.hash("12", "3") != store.hash("1", "23")
+        store.hash("12", "3") == store.hash("12", "3")
+    }
+
+    def "hash 는 저장소마다 다른 키로 만들어서 요청 값만으로는 같은 hash 를 만들 수 없다."() {
+        expect:
+        store.hash(REQUEST) != new IdempotencyStore(100, 60, 1_000).hash(REQUEST)
+    }
+
+    def "key 가 없으면 요청 값을 hash 하지 않는다."() {
+        given:
+        def spied = Spy(IdempotencyStore, constructorArgs: [100L, 60L, 1_000L])
+
+        when:
+        spied.execute("POST /pay/transactions", null, REQUEST, { ResponseEntity.ok("ok") } as Supplier)
+
+        then:
+        0 * spied.hash(*_)
+    }
+}
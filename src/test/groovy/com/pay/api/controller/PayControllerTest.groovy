@@ -4,18 +4,25 @@ import com.pay.api.controller.cancel.CancelResponse
 import com.pay.api.controller.find.FindResponse
 import com.pay.api.controller.pay.PayResponse
 import com.pay.api.domain.PayService
+import com.pay.api.domain.TransactionExporter
 import org.spockframework.spring.SpringBean
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
+import org.springframework.context.annotation.Import
 import org.springframework.http.MediaType
 import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.RequestBuilder
+import org.springframework.test.web.servlet.ResultActions
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
 
 @WebMvcTest(controllers = [PayController])
+@Import([IdempotencyStore, RequestExecutors])
 class PayControllerTest extends Specification {
 
     private static final String URI = "/pay/transactions"
@@ -26,6 +33,9 @@ class PayControllerTest extends Specification {
     @SpringBean
     PayService payService = Mock()
 
+    @SpringBean
+    TransactionExporter transactionExporter = Mock()
+
     @Unroll
     def "결제 API : #description 400 error"() {
         given:
@@ -80,6 +90,26 @@ class PayControllerTest extends Specification {
         "0123456789"        | "1212"              | "123"  | 12          | 1_000_000_001 | 1_000_000_000 || "amount over 1_000_000_000 100"
     }
 
+    @Unroll
+    def "일괄 결제 API : #description 400 error"() {
+        when:
+        def response = mvc.perform(
+                post(URI + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody)
+        )
+
+        then:
+        0 * payService.payAll(_)
+
+        response.andExpect(status().isBadRequest())
+
+        where:
+        requestBody                                                                                                                 || description
+        "[]"                                                                                                                        || "request list is empty"
+        """[{"cardNumber":"123456789","expirationMonthYear":"1212","cvc":"123","installment":0,"amount":1000,"vat":100}]"""         || "card number size under 10"
+    }
+
     @Unroll
     def "결제 취소 API : #description 400 error"() {
         given:
@@ -114,6 +144,54 @@ class PayControllerTest extends Specification {
         "0123456789"        | 1000          | 2000          || "vat is greater than amount"
     }
 
+    def "결제 API : 같은 Idempotency-Key 로 재시도하면 결제하지 않고 첫 응답을 반환한다."() {
+        given:
+        def requestBody = """{"cardNumber":"1234567890123456","expirationMonthYear":"1212","cvc":"123","installment":0,"amount":11000,"vat":1000}"""
+        def payResponse = new PayResponse()
+        payResponse.transactionId = "20050418045376626998"
+
+        when:
+        def first = performAsync(post(URI).header(IdempotencyStore.HEADER, "pay-retry-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+        def retry = performAsync(post(URI).header(IdempotencyStore.HEADER, "pay-retry-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+
+        then:
+        1 * payService.pay(_) >> payResponse
+        first.andExpect(status().isCreated()).andExpect(jsonPath('$.transactionId').value("20050418045376626998"))
+        retry.andExpect(status().isCreated()).andExpect(jsonPath('$.transactionId').value("20050418045376626998"))
+    }
+
+    def "결제 API : 같은 Idempotency-Key 로 다른 내용을 요청하면 결제하지 않고 422 로 거절한다."() {
+        given:
+        def requestBody = """{"cardNumber":"1234567890123456","expirationMonthYear":"1212","cvc":"123","installment":0,"amount":11000,"vat":1000}"""
+        def otherBody = """{"cardNumber":"1234567890123456","expirationMonthYear":"1212","cvc":"123","installment":0,"amount":12000,"vat":1000}"""
+        def payResponse = new PayResponse()
+        payResponse.transactionId = "20050418045376626998"
+
+        when:
+        def first = performAsync(post(URI).header(IdempotencyStore.HEADER, "pay-reused-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+        def reused = performAsync(post(URI).header(IdempotencyStore.HEADER, "pay-reused-1").contentType(MediaType.APPLICATION_JSON).content(otherBody))
+
+        then:
+        1 * payService.pay(_) >> payResponse
+        first.andExpect(status().isCreated())
+        reused.andExpect(status().isUnprocessableEntity())
+    }
+
+    def "결제 취소 API : Idempotency-Key 는 취소 대상 거래별로 구분한다."() {
+        given:
+        def requestBody = """{"amount":1000,"vat":100}"""
+
+        when:
+        performAsync(delete(URI + "/20050418045376626998").header(IdempotencyStore.HEADER, "cancel-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+        performAsync(delete(URI + "/20050418045376626998").header(IdempotencyStore.HEADER, "cancel-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+        performAsync(delete(URI + "/20050418045376626999").header(IdempotencyStore.HEADER, "cancel-1").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+            .andExpect(status().isOk())
+
+        then:
+        1 * payService.cancel("20050418045376626998", _) >> new CancelResponse()
+        1 * payService.cancel("20050418045376626999", _) >> new CancelResponse()
+    }
+
     @Unroll
     def "조회 API : #description 400 error"() {
         when:
@@ -134,5 +212,10 @@ class PayControllerTest extends Specification {
         "1234567890123456789"   || "transactionId size under 20"
     }
 
-
+    /**
+     * 검증을 통과한 요청은 executor 에서 처리되므로 결과가 나올 때까지 기다렸다가 응답을 확인합니다.
+     */
+    private ResultActions performAsync(RequestBuilder requestBuilder) {
+        return mvc.perform(asyncDispatch(mvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn()))
+    }
 }
@@ -0,0 +1,57 @@
+package com.pay.api.controller
+
+import com.pay.api.exception.ConflictException
+import com.pay.api.exception.OverloadedException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.function.Supplier
+
+class RequestExecutorsTest extends Specification {
+
+    RequestExecutors executors = new RequestExecutors(1, 1, 1, 1, 1, 1)
+
+    def cleanup() {
+        executors.shutdown()
+    }
+
+    def "요청은 종류별 executor 스레드에서 처리된다."() {
+        when:
+        def pay = executors.submit(RequestExecutors.Lane.PAY, { Thread.currentThread().name } as Supplier).get()
+        def find = executors.submit(RequestExecutors.Lane.FIND, { Thread.currentThread().name } as Supplier).get()
+
+        then:
+        pay.startsWith("pay-pay-")
+        find.startsWith("pay-find-")
+    }
+
+    def "대기열이 가득 차면 기다리지 않고 OverloadedException 을 던지고, 다른 종류의 요청은 계속 처리된다."() {
+        given:
+        def release = new CountDownLatch(1)
+        def running = executors.submit(RequestExecutors.Lane.PAY, { release.await(); "running" } as Supplier)
+        def queued = executors.submit(RequestExecutors.Lane.PAY, { "queued" } as Supplier)
+
+        when:
+        executors.submit(RequestExecutors.Lane.PAY, { "rejected" } as Supplier)
+
+        then:
+        thrown(OverloadedException)
+        executors.rejected(RequestExecutors.Lane.PAY) == 1
+        executors.submit(RequestExecutors.Lane.FIND, { "find" } as Supplier).get() == "find"
+
+        cleanup:
+        release.countDown()
+        running.get() == "running"
+        queued.get() == "queued"
+    }
+
+    def "처리 중에 발생한 예외는 future 로 전달된다."() {
+        when:
+        executors.submit(RequestExecutors.Lane.CANCEL, { throw new ConflictException("conflict") } as Supplier).get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof ConflictException
+    }
+}
@@ -0,0 +1,100 @@
+package com.pay.api.domain
+
+import com.pay.api.exception.ConflictException
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+class CancelSequencerTest extends Specification {
+
+    def "같은 결제 건의 요청은 한 번에 하나씩 실행되고, 끝나면 lane 을 정리한다."() {
+        given:
+        def sequencer = new CancelSequencer(true, 32, 3_000)
+        def running = new AtomicInteger()
+        def maxRunning = new AtomicInteger()
+        def pool = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (1..16).collect {
+            pool.submit({
+                sequencer.execute("20050418045376626998", {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math.&max)
+                    sleep(5)
+                    running.decrementAndGet()
+                } as Supplier)
+            } as Callable)
+        }
+        futures*.get()
+
+        then:
+        maxRunning.get() == 1
+        sequencer.size() == 0
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def "대기 중인 요청이 maxQueueDepth 를 넘으면 ConflictException 이 발생한다."() {
+        given:
+        def sequencer = new CancelSequencer(true, 1, 3_000)
+        def started = new CountDownLatch(1)
+        def finish = new CountDownLatch(1)
+        def pool = Executors.newSingleThreadExecutor()
+        def first = pool.submit({
+            sequencer.execute("20050418045376626998", { started.countDown(); finish.await(); "first" } as Supplier)
+        } as Callable)
+        started.await()
+
+        when:
+        sequencer.execute("20050418045376626998", { "second" } as Supplier)
+
+        then:
+        thrown(ConflictException)
+
+        and: "다른 결제 건은 영향을 받지 않는다"
+        sequencer.execute("20050418045376626999", { "other" } as Supplier) == "other"
+
+        cleanup:
+        finish.countDown()
+        first.get()
+        pool.shutdownNow()
+    }
+
+    def "maxWaitMillis 안에 차례가 오지 않으면 ConflictException 이 발생한다."() {
+        given:
+        def sequencer = new CancelSequencer(true, 32, 50)
+        def started = new CountDownLatch(1)
+        def finish = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(2)
+        def first = pool.submit({
+            sequencer.execute("20050418045376626998", { started.countDown(); finish.await(); "first" } as Supplier)
+        } as Callable)
+        started.await()
+
+        when:
+        pool.submit({ sequencer.execute("20050418045376626998", { "second" } as Supplier) } as Callable).get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof ConflictException
+
+        cleanup:
+        finish.countDown()
+        first.get()
+        pool.shutdownNow()
+    }
+
+    def "비활성화 상태에서는 바로 실행한다."() {
+        given:
+        def sequencer = new CancelSequencer(false, 0, 0)
+
+        expect:
+        sequencer.execute("20050418045376626998", { "done" } as Supplier) == "done"
+        sequencer.size() == 0
+    }
+}
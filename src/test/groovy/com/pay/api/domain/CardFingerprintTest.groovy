@@ -0,0 +1,57 @@
+package com.pay.api.domain
+
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+
+class CardFingerprintTest extends Specification {
+
+    def "같은 secret 과 카드번호는 같은 fingerprint 를, 다른 카드번호나 secret 은 다른 fingerprint 를 만든다."() {
+        given:
+        def fingerprint = new CardFingerprint("secret-1")
+
+        expect:
+        fingerprint.of("1234567890123456") == new CardFingerprint("secret-1").of("1234567890123456")
+        fingerprint.of("1234567890123456").length() == CardFingerprint.LENGTH
+        fingerprint.of("1234567890123456") != fingerprint.of("1234567890123457")
+        fingerprint.of("1234567890123456") != new CardFingerprint("secret-2").of("1234567890123456")
+        !fingerprint.of("1234567890123456").contains("1234567890")
+    }
+
+    def "취소 거래는 원거래의 fingerprint 를 사용한다."() {
+        given:
+        def idGenerator = new SequenceTransactionIdGenerator(0)
+        def fingerprint = new CardFingerprint("secret-1").of("1234567890123456")
+        def transaction = Transaction.newInstance(new StageTimings(), idGenerator.generate(), fingerprint, "1234567890123456", "1212", "123", 0, 11_000, 1_000)
+
+        when:
+        def cancel = transaction.cancel(idGenerator.generate(), 1_100, 100)
+
+        then:
+        transaction.cardFingerprint == fingerprint
+        cancel.cardFingerprint == fingerprint
+    }
+
+    def "목록 cursor 는 (CREATED_AT, ID) 로 되돌릴 수 있다."() {
+        given:
+        def createdAt = LocalDateTime.of(2020, 5, 4, 18, 4, 53, 766_000_000)
+
+        when:
+        def decoded = HistoryCursor.decode(new HistoryCursor(createdAt, 42).encode())
+
+        then:
+        decoded.createdAt == createdAt
+        decoded.id == 42
+    }
+
+    def "목록 cursor 형식이 다르면 IllegalArgumentException 이 발생한다."() {
+        when:
+        HistoryCursor.decode(cursor)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        cursor << ["invalid", "", "!!!"]
+    }
+}
@@ -1,6 +1,7 @@
 package com.pay.api.domain
 
 
+import com.pay.api.exception.CryptoFailException
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -56,4 +57,31 @@ class CardInfoCryptoTest extends Specification {
         transactionId          | cardNumber         | expirationMonthYear | cvc   || description
         "20050418045376626998" | "1234567890123456" | "1125"              | "777" || "encrypt data and restore from encrypted data"
     }
+
+    def "CardInfoCrypto byte 배열로 암호화한 데이터는 Base64 문자열과 byte 배열 어느 쪽으로도 복호화 된다."() {
+        given:
+        def transactionId = "20050418045376626998"
+
+        when:
+        def cardInfoCrypto = CardInfoCrypto.encrypt(transactionId, "1234567890123456", "1125", "777")
+        def fromBytes = CardInfoCrypto.decrypt(transactionId, cardInfoCrypto.getEncryptedCardInfoBytes())
+        def fromBase64 = CardInfoCrypto.decrypt(transactionId, cardInfoCrypto.getEncryptedCardInfo())
+
+        then:
+        cardInfoCrypto.getEncryptedCardInfo() == Base64.getEncoder().encodeToString(cardInfoCrypto.getEncryptedCardInfoBytes())
+        [fromBytes, fromBase64].every {
+            it.getCardNumber() == "1234567890123456" && it.getExpirationMonthYear() == "1125" && it.getCvc() == "777"
+        }
+    }
+
+    def "다른 트랜잭션 아이디로 복호화하면 CryptoFailException 이 발생한다."() {
+        given:
+        def encrypted = CardInfoCrypto.encrypt("20050418045376626998", "1234567890123456", "1125", "777").getEncryptedCardInfo()
+
+        when:
+        CardInfoCrypto.decrypt("20050418045376626999", encrypted)
+
+        then:
+        thrown(CryptoFailException)
+    }
 }
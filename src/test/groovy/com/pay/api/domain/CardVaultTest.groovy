@@ -0,0 +1,159 @@
+package com.pay.api.domain
+
+import spock.lang.Specification
+
+class CardVaultTest extends Specification {
+
+    CardTokenRepository repository = Mock()
+
+    def "같은 카드정보는 같은 20자리 토큰이 되고, 카드정보가 하나라도 다르면 다른 토큰이 된다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+
+        when:
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+
+        then:
+        token.length() == CardVault.TOKEN_LENGTH
+        token == cardVault.tokenOf("1234567890123456", "1125", "777")
+        token != cardVault.tokenOf("1234567890123456", "1125", "778")
+        token != cardVault.tokenOf("1234567890123456", "1126", "777")
+        token != new CardVault(repository, "other-secret", 100, 60).tokenOf("1234567890123456", "1125", "777")
+    }
+
+    def "처음 저장하는 카드정보만 암호화해서 저장하고, 이후 저장/조회는 캐시를 사용한다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+        CardToken saved = null
+
+        when:
+        def stored = cardVault.store(token, "1234567890123456", "1125", "777")
+
+        then:
+        1 * repository.findById(token) >> Optional.empty()
+        1 * repository.save(_) >> { args -> saved = args[0] }
+        saved.token == token
+        saved.keyVersion == CardToken.SECRET_KEY
+        new CardVault(repository, "test-secret", 100, 60).load(token, saved.encryptedCardInfo, saved.keyVersion).cardNumber == "1234567890123456"
+
+        when:
+        def again = cardVault.store(token, "1234567890123456", "1125", "777")
+        def loaded = cardVault.load(token)
+
+        then:
+        0 * repository._
+        [again, loaded].every {
+            it.cardNumber == "1234567890123456" && it.expirationMonthYear == "1125" && it.cvc == "777" &&
+                    it.encryptedCardInfoBytes == stored.encryptedCardInfoBytes
+        }
+    }
+
+    def "이미 저장된 토큰은 다시 저장하지 않는다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+        def encrypted = CardInfoCrypto.encrypt(token, "1234567890123456", "1125", "777").encryptedCardInfoBytes
+
+        when:
+        def stored = cardVault.store(token, "1234567890123456", "1125", "777")
+
+        then:
+        1 * repository.findById(token) >> Optional.of(new CardToken(token, encrypted, CardToken.TOKEN_KEY))
+        0 * repository.save(_)
+        stored.encryptedCardInfoBytes == encrypted
+    }
+
+    def "캐시에서 제거된 카드정보는 0 으로 덮어쓰고, 다시 조회하면 저장된 카드정보를 복호화한다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 1, 60)
+        def first = cardVault.tokenOf("1234567890123456", "1125", "777")
+        def second = cardVault.tokenOf("6543210987654321", "1230", "123")
+        def encrypted = CardInfoCrypto.encrypt(first, "1234567890123456", "1125", "777").encryptedCardInfoBytes
+        repository.findById(first) >> Optional.of(new CardToken(first, encrypted, CardToken.TOKEN_KEY))
+        repository.findById(second) >> Optional.empty()
+
+        and:
+        cardVault.load(first)
+        def entry = cardVault.cache.getIfPresent(first)
+
+        when:
+        cardVault.store(second, "6543210987654321", "1230", "123")
+
+        then:
+        cardVault.cache.getIfPresent(first) == null
+        entry.destroyed
+        entry.cardNumber.every { it == '\0' as char }
+        entry.cvc.every { it == '\0' as char }
+        entry.open() == null
+
+        and:
+        cardVault.load(first).cardNumber == "1234567890123456"
+    }
+
+    def "이미 읽어 온 암호화된 카드정보로 만든 카드정보는 캐시에 넣지 않는다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+        def encrypted = CardInfoCrypto.encrypt(token, "1234567890123456", "1125", "777").encryptedCardInfoBytes
+
+        when:
+        def loaded = cardVault.load(token, encrypted, CardToken.TOKEN_KEY)
+
+        then:
+        0 * repository._
+        loaded.cardNumber == "1234567890123456"
+        cardVault.cache.size() == 0
+    }
+
+    def "DB 에 저장된 토큰만으로는 카드정보를 복호화할 수 없고, secret 이 다르면 복호화할 수 없다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+        CardToken saved = null
+        repository.findById(token) >> Optional.empty()
+        repository.save(_) >> { args -> saved = args[0] }
+
+        when:
+        cardVault.store(token, "1234567890123456", "1125", "777")
+
+        then:
+        !decrypts { CardInfoCrypto.decrypt(token, saved.encryptedCardInfo) }
+        !decrypts { new CardVault(repository, "other-secret", 100, 60).load(token, saved.encryptedCardInfo, saved.keyVersion) }
+    }
+
+    def "토큰으로 암호화된 카드정보를 secret 으로 만든 키로 다시 암호화한다."() {
+        given:
+        def cardVault = new CardVault(repository, "test-secret", 100, 60)
+        def token = cardVault.tokenOf("1234567890123456", "1125", "777")
+        def cardToken = new CardToken(token, CardInfoCrypto.encrypt(token, "1234567890123456", "1125", "777").encryptedCardInfoBytes, CardToken.TOKEN_KEY)
+        repository.findById(token) >> Optional.of(cardToken)
+        cardVault.load(token)
+
+        when:
+        cardVault.reencrypt(cardToken)
+
+        then:
+        cardToken.keyVersion == CardToken.SECRET_KEY
+        cardVault.cache.getIfPresent(token) == null
+        !decrypts { CardInfoCrypto.decrypt(token, cardToken.encryptedCardInfo) }
+        with(cardVault.load(token, cardToken.encryptedCardInfo, cardToken.keyVersion)) {
+            cardNumber == "1234567890123456" && expirationMonthYear == "1125" && cvc == "777"
+        }
+
+        when:
+        def reencrypted = cardToken.encryptedCardInfo
+        cardVault.reencrypt(cardToken)
+
+        then:
+        cardToken.encryptedCardInfo == reencrypted
+    }
+
+    private static boolean decrypts(Closure<CardInfoCrypto> decrypt) {
+        try {
+            return decrypt().cardNumber == "1234567890123456"
+        } catch (RuntimeException ignored) {
+            return false
+        }
+    }
+}
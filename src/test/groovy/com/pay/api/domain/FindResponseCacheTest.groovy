@@ -0,0 +1,115 @@
+package com.pay.api.domain
+
+import com.pay.api.controller.find.FindResponse
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class FindResponseCacheTest extends Specification {
+
+    FindResponseCache cache = new FindResponseCache(100, 60)
+
+    private static FindResponseCache.Entry entry() {
+        new FindResponseCache.Entry(new FindResponse(), null, null, null)
+    }
+
+    def "같은 transactionId 는 한 번만 조회하고 이후에는 캐시에서 반환한다."() {
+        given:
+        Function<String, FindResponseCache.Entry> loader = Mock()
+
+        when:
+        def first = cache.get("20050418045376626998", loader)
+        def second = cache.get("20050418045376626998", loader)
+
+        then:
+        1 * loader.apply("20050418045376626998") >> entry()
+        first.is(second)
+        cache.stats().hitCount() == 1
+        cache.stats().missCount() == 1
+    }
+
+    def "조회하는 도중에 무효화가 일어나면 읽어 온 값은 캐시에 남기지 않는다."() {
+        given:
+        Function<String, FindResponseCache.Entry> loader = Mock()
+
+        when:
+        cache.get("20050418045376626998", loader)
+        cache.get("20050418045376626998", loader)
+
+        then:
+        1 * loader.apply(_) >> { args ->
+            cache.invalidate(args[0])
+            entry()
+        }
+
+        then:
+        1 * loader.apply(_) >> entry()
+        cache.size() == 1
+    }
+
+    def "DB 트랜잭션 안에서는 커밋된 뒤에 무효화한다."() {
+        given:
+        cache.get("20050418045376626998", { entry() })
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        cache.invalidateAfterCommit("20050418045376626998")
+
+        then:
+        cache.size() == 1
+
+        when:
+        TransactionSynchronizationManager.getSynchronizations().each { it.afterCommit() }
+
+        then:
+        cache.size() == 0
+
+        cleanup:
+        TransactionSynchronizationManager.clearSynchronization()
+    }
+
+    def "DB 트랜잭션 밖에서는 바로 무효화한다."() {
+        given:
+        cache.get("20050418045376626998", { entry() })
+
+        when:
+        cache.invalidateAfterCommit("20050418045376626998")
+
+        then:
+        cache.size() == 0
+    }
+
+    def "카드정보는 캐시하지 않고 꺼낼 때 원거래의 카드정보로 채운다."() {
+        given:
+        def idGenerator = new SequenceTransactionIdGenerator(0)
+        def cardVault = new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60)
+        def legacy = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1125", "777", 0, 11000L, 1000L)
+        def tokenized = Transaction.newInstance(new StageTimings(), idGenerator.generate(), null, cardVault, "6543210987654321", "1230", "123", 0, 11000L, 1000L)
+        def cancel = tokenized.cancel(new StageTimings(), idGenerator.generate(), cardVault, 1000L, 90L)
+        [legacy, tokenized, cancel]*.prePersist()
+        tokenized.cancelTransactionList.add(cancel)
+
+        when:
+        def legacyEntry = cache.get(legacy.transactionId, { FindResponseCache.Entry.of(legacy) })
+        def tokenizedEntry = cache.get(tokenized.transactionId, { FindResponseCache.Entry.of(tokenized) })
+        def cancelEntry = cache.get(cancel.transactionId, { FindResponseCache.Entry.of(cancel) })
+
+        then:
+        [legacyEntry, tokenizedEntry, cancelEntry]*.findResponse.every { it.expirationMonthYear == null && it.cvc == null && it.cardNumber == "" }
+        tokenizedEntry.findResponse.cancelTransactionList.every { it.expirationMonthYear == null && it.cvc == null }
+
+        and:
+        with(legacyEntry.open(null)) {
+            cardNumber == "123456*******456" && expirationMonthYear == "1125" && cvc == "777"
+        }
+        with(tokenizedEntry.open(cardVault)) {
+            cardNumber == "654321*******321" && expirationMonthYear == "1230" && cvc == "123" &&
+                    cancelTransactionList*.cvc == ["123"]
+        }
+        with(cancelEntry.open(cardVault)) {
+            payTransactionId == tokenized.transactionId && cardNumber == "654321*******321" && cvc == "123"
+        }
+        tokenizedEntry.findResponse.cvc == null
+    }
+}
@@ -3,6 +3,8 @@ package com.pay.api.domain
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+
 class MessageBuilderTest extends Specification {
 
     def "PaymentMessageBuilder 정상 처리 테스"() {
@@ -52,6 +54,90 @@ class MessageBuilderTest extends Specification {
         "ZZZZZZZZZZZZZZZZZZZZ" | "1234567890123456" | 0           | "1125"              | "777" | 110000 | 10000 | "XXXXXXXXXXXXXXXXXXXX" | "YYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYY" | " 446CANCEL    ZZZZZZZZZZZZZZZZZZZZ1234567890123456    001125777    1100000000010000XXXXXXXXXXXXXXXXXXXXYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYYY                                                                                                                                                                                                                                                       " || "참고2. string 데이터 예제 전체취소 string 데이터"
     }
 
+    @Unroll
+    def "byte 배열/#description ByteBuffer 에 기록한 전문은 build() 문자열과 같고, 문자열 전문을 다시 기록해도 같다."() {
+        given:
+        def builder = MessageBuilder.newCancelMessageBuilder()
+                .id("ZZZZZZZZZZZZZZZZZZZZ")
+                .cardNumber("1234567890123456")
+                .expirationMonthYear("1125")
+                .cvc("777")
+                .installment(3)
+                .amount(110000)
+                .vat(0)
+                .payTransactionId("XXXXXXXXXXXXXXXXXXXX")
+                .encryptedCardInformation("YYYYYYYYYYYYYYYYYYYY")
+
+        when:
+        buffer.position(7)
+        builder.encodeTo(buffer)
+        def written = new byte[450]
+        buffer.position(7)
+        buffer.get(written)
+
+        and:
+        buffer.position(7)
+        MessageBuilder.encodeTo(builder.build(), buffer)
+        def rewritten = new byte[450]
+        buffer.position(7)
+        buffer.get(rewritten)
+
+        then:
+        new String(builder.encode(), "ISO-8859-1") == builder.build()
+        new String(written, "ISO-8859-1") == builder.build()
+        rewritten == written
+        buffer.position() == 457
+        builder.build().substring(MessageBuilder.DataField.INSTALLMENT.offset, MessageBuilder.DataField.EXPIRATION_MONTH_YEAR.offset) == "03"
+        builder.build().substring(MessageBuilder.DataField.VAT.offset, MessageBuilder.DataField.ORIGIN_TRANSACTION_ID.offset) == "0000000000"
+
+        where:
+        buffer                         || description
+        ByteBuffer.allocate(500)       || "heap"
+        ByteBuffer.allocateDirect(500) || "direct"
+    }
+
+    def "필드 길이를 넘는 값은 전문을 만들 때 IllegalArgumentException 이 발생한다."() {
+        when:
+        MessageBuilder.newPaymentMessageBuilder()
+                .id("XXXXXXXXXXXXXXXXXXXX")
+                .cardNumber("1234567890123456")
+                .expirationMonthYear("1125")
+                .cvc("777")
+                .installment(0)
+                .amount(110000)
+                .vat(10000)
+                .encryptedCardInformation("Y" * 301)
+                .build()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    @Unroll
+    def "#description 을 설정하지 않으면 전문을 만들 때 IllegalStateException 이 발생한다."() {
+        given:
+        def builder = MessageBuilder.newPaymentMessageBuilder()
+                .id("XXXXXXXXXXXXXXXXXXXX")
+                .cardNumber("1234567890123456")
+                .expirationMonthYear("1125")
+                .cvc("777")
+                .encryptedCardInformation("YYYYYYYYYYYYYYYYYYYYYY")
+        setters.each { builder."$it"(it == "installment" ? 0 : 1000) }
+
+        when:
+        builder.build()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == description + " is not set"
+
+        where:
+        setters                   || description
+        ["amount", "vat"]         || "INSTALLMENT"
+        ["installment", "vat"]    || "AMOUNT"
+        ["installment", "amount"] || "VAT"
+    }
+
     @Unroll
     def "CancelMessageBuilder : #description 이면 throw IllegalArgumentException"() {
         when:
@@ -0,0 +1,109 @@
+package com.pay.api.domain
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class MessageReaderTest extends Specification {
+
+    def payment = MessageBuilder.newPaymentMessageBuilder()
+            .id("XXXXXXXXXXXXXXXXXXXX")
+            .cardNumber("1234567890123456")
+            .expirationMonthYear("1125")
+            .cvc("777")
+            .installment(3)
+            .amount(110000)
+            .vat(10000)
+            .encryptedCardInformation("YYYYYYYYYY")
+
+    def cancel = MessageBuilder.newCancelMessageBuilder()
+            .id("ZZZZZZZZZZZZZZZZZZZZ")
+            .cardNumber("1234567890")
+            .expirationMonthYear("0125")
+            .cvc("012")
+            .installment(0)
+            .amount(1000)
+            .vat(0)
+            .payTransactionId("XXXXXXXXXXXXXXXXXXXX")
+            .encryptedCardInformation("YYYYYYYYYY")
+
+    @Unroll
+    def "#description 결제 전문을 필드별로 읽는다."() {
+        when:
+        def reader = new MessageReader().wrap(source(payment))
+
+        then:
+        reader.dataLength() == 446
+        reader.dataType() == "PAYMENT"
+        reader.isPayment()
+        !reader.isCancel()
+        reader.uid() == "XXXXXXXXXXXXXXXXXXXX"
+        reader.uidEquals("XXXXXXXXXXXXXXXXXXXX")
+        !reader.uidEquals("XXXXXXXXXXXXXXXXXXXY")
+        reader.cardNumber() == "1234567890123456"
+        reader.installment() == 3
+        reader.expirationMonthYear() == "1125"
+        reader.cvc() == "777"
+        reader.amount() == 110000L
+        reader.vat() == 10000L
+        reader.originTransactionId() == ""
+        reader.encryptedCardInfo() == "YYYYYYYYYY"
+
+        where:
+        source                                                                   || description
+        { MessageBuilder mb -> mb.build() }                                      || "String"
+        { MessageBuilder mb -> ByteBuffer.wrap(mb.encode()) }                    || "heap ByteBuffer"
+        { MessageBuilder mb -> ByteBuffer.allocateDirect(450).put(mb.encode()).flip() } || "direct ByteBuffer"
+    }
+
+    def "하나의 reader 를 여러 전문에 재사용한다."() {
+        given:
+        def buffer = ByteBuffer.allocate(900)
+        payment.encodeTo(buffer)
+        cancel.encodeTo(buffer)
+        def reader = new MessageReader()
+
+        when:
+        reader.wrap(buffer, 450)
+
+        then:
+        reader.isCancel()
+        reader.uid() == "ZZZZZZZZZZZZZZZZZZZZ"
+        reader.cardNumber() == "1234567890"
+        reader.installment() == 0
+        reader.expirationMonthYear() == "0125"
+        reader.cvc() == "012"
+        reader.amount() == 1000L
+        reader.vat() == 0L
+        reader.originTransactionId() == "XXXXXXXXXXXXXXXXXXXX"
+
+        when:
+        reader.wrap(buffer, 0)
+
+        then:
+        reader.isPayment()
+        reader.amount() == 110000L
+        buffer.position() == 900
+    }
+
+    def "숫자 필드에 숫자가 아닌 값이 있으면 IllegalArgumentException"() {
+        given:
+        def message = payment.build()
+        def broken = message.substring(0, 67) + "11O000" + message.substring(73)
+
+        when:
+        new MessageReader().wrap(broken).amount()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "450 보다 짧은 전문은 IllegalArgumentException"() {
+        when:
+        new MessageReader().wrap(" 446PAYMENT")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,120 @@
+package com.pay.api.domain
+
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.domain.card.CardCompanyOutboxRepository
+import com.pay.api.domain.settlement.SettlementAggregator
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.time.Duration
+
+class PayEventTest extends Specification {
+
+    TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0)
+
+    PayService payService
+    TransactionRepository transactionRepository
+    CardCompanyOutboxRepository outboxRepository
+
+    def setup() {
+        transactionRepository = Mock()
+        outboxRepository = Mock()
+        payService = new PayService(transactionRepository, Mock(TransactionArchiveRepository), outboxRepository, new FindResponseCache(100, 60), idGenerator, new CancelSequencer(false, 32, 3000), new PayMetrics(new SimpleMeterRegistry()), new CardFingerprint("test-secret"), new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60), Mock(SettlementAggregator), Mock(PlatformTransactionManager))
+    }
+
+    def "threshold 를 0 으로 설정하면 결제마다 PayEvent 와 CryptoEvent 가 단계별 처리 시간과 함께 기록된다."() {
+        given:
+        def request = new PayRequest()
+        request.cardNumber = "1234567890123456"
+        request.expirationMonthYear = "1125"
+        request.cvc = "777"
+        request.installment = 0
+        request.amount = 11000
+        request.vat = 1000
+
+        and:
+        def saved = []
+        transactionRepository.save(_) >> { args ->
+            args[0].prePersist()
+            saved << args[0]
+            args[0]
+        }
+
+        when:
+        def events = record {
+            payService.pay(request)
+        }
+
+        then:
+        def pay = events.find { it.eventType.name == "com.pay.Pay" }
+        pay.getString("transactionId").length() == TransactionIdGenerator.LENGTH
+        pay.getLong("amount") == 11000
+        pay.getString("outcome") == "success"
+        pay.getDuration("encrypt") > Duration.ZERO
+        pay.getDuration("message") > Duration.ZERO
+
+        and:
+        def crypto = events.find { it.eventType.name == "com.pay.Crypto" }
+        !crypto.hasField("keyId") && !crypto.hasField("transactionId")
+        crypto.getString("operation") == "encrypt"
+        crypto.getBoolean("success")
+
+        when: "같은 카드로 다시 결제하면 CardVault 캐시를 사용하고, 전문의 카드정보만 관리번호로 암호화한다"
+        def repeated = record {
+            payService.pay(request)
+        }
+
+        then:
+        repeated.find { it.eventType.name == "com.pay.Pay" }.getString("outcome") == "success"
+        def repeatedCrypto = repeated.findAll { it.eventType.name == "com.pay.Crypto" }
+        repeatedCrypto.size() == 1
+        repeatedCrypto[0].getString("operation") == "encrypt"
+        saved[1].cardToken == saved[0].cardToken
+    }
+
+    def "실패한 결제는 outcome 과 함께 기록되고 관리번호는 비어 있다."() {
+        given:
+        def request = new PayRequest()
+        request.cardNumber = "1234567890123456"
+        request.expirationMonthYear = "1125"
+        request.cvc = "777"
+        request.installment = 0
+        request.amount = 1000
+        request.vat = 2000
+
+        when:
+        def events = record {
+            try {
+                payService.pay(request)
+            } catch (RuntimeException ignored) {
+            }
+        }
+
+        then:
+        def pay = events.find { it.eventType.name == "com.pay.Pay" }
+        pay.getString("transactionId") == null
+        pay.getString("outcome") == "rejected"
+    }
+
+    private static List<RecordedEvent> record(Closure action) {
+        def file = Files.createTempFile("pay", ".jfr")
+        try {
+            def recording = new Recording()
+            recording.enable("com.pay.Pay").withThreshold(Duration.ZERO)
+            recording.enable("com.pay.Crypto").withThreshold(Duration.ZERO)
+            recording.start()
+            action.call()
+            recording.stop()
+            recording.dump(file)
+            recording.close()
+            return RecordingFile.readAllEvents(file)
+        } finally {
+            Files.deleteIfExists(file)
+        }
+    }
+}
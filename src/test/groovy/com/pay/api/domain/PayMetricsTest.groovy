@@ -0,0 +1,60 @@
+package com.pay.api.domain
+
+import com.pay.api.exception.ConflictException
+import com.pay.api.exception.IllegalStatusException
+import com.pay.api.exception.TransactionNotFoundException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.orm.ObjectOptimisticLockingFailureException
+import spock.lang.Specification
+
+class PayMetricsTest extends Specification {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry()
+    PayMetrics payMetrics = new PayMetrics(registry)
+
+    def "성공한 요청은 요청 시간과 기록된 단계의 시간만 남긴다."() {
+        given:
+        def timings = new StageTimings()
+        timings.lap(PayStage.LOCK)
+        timings.lap(PayStage.ENCRYPT)
+
+        when:
+        payMetrics.record(PayMetrics.Operation.PAY, timings, null)
+
+        then:
+        registry.get("pay.request").tags("operation", "pay", "outcome", "success").timer().count() == 1
+        registry.get("pay.stage").tags("operation", "pay", "stage", "lock").timer().count() == 1
+        registry.get("pay.stage").tags("operation", "pay", "stage", "encrypt").timer().count() == 1
+        registry.get("pay.stage").tags("operation", "pay", "stage", "save").timer().count() == 0
+    }
+
+    def "실패한 요청은 예외 종류별 outcome 으로 기록한다."() {
+        when:
+        payMetrics.record(PayMetrics.Operation.CANCEL, new StageTimings(), error)
+
+        then:
+        registry.get("pay.request").tags("operation", "cancel", "outcome", outcome).timer().count() == 1
+
+        where:
+        error                                                      || outcome
+        new ConflictException("conflict")                          || "conflict"
+        new ObjectOptimisticLockingFailureException("T", 1L)       || "conflict"
+        new TransactionNotFoundException("not found")              || "not-found"
+        new IllegalStatusException("illegal")                      || "rejected"
+        new IllegalArgumentException("illegal")                    || "rejected"
+        new IllegalStateException("unexpected")                    || "error"
+    }
+
+    def "카드번호 잠금 경합과 취소 충돌 횟수를 센다."() {
+        when:
+        payMetrics.cardLockContended()
+        payMetrics.cardLockContended()
+        payMetrics.versionConflicted()
+        payMetrics.optimisticLockConflicted()
+
+        then:
+        registry.get("pay.card.lock.contention").counter().count() == 2
+        registry.get("pay.cancel.conflict").tag("reason", "version").counter().count() == 1
+        registry.get("pay.cancel.conflict").tag("reason", "optimistic-lock").counter().count() == 1
+    }
+}
@@ -3,11 +3,14 @@ package com.pay.api.domain
 import com.pay.api.controller.cancel.CancelRequest
 import com.pay.api.controller.find.FindResponse
 import com.pay.api.controller.pay.PayRequest
-import com.pay.api.domain.card.CardCompanyApi
+import com.pay.api.domain.card.CardCompanyOutboxRepository
+import com.pay.api.domain.settlement.SettlementAggregator
 import com.pay.api.exception.ConflictException
 import com.pay.api.exception.IllegalStatusException
 import com.pay.api.exception.TransactionNotFoundException
 import com.pay.api.type.TransactionType
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.PlatformTransactionManager
 import spock.lang.Specification
 
 import java.time.LocalDateTime
@@ -18,14 +21,22 @@ import java.util.concurrent.Future
 
 class PayServiceTest extends Specification {
 
+    TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0)
+
     PayService payService
     TransactionRepository transactionRepository
-    CardCompanyApi cardApi
+    TransactionArchiveRepository archiveRepository
+    CardCompanyOutboxRepository outboxRepository
+    PlatformTransactionManager transactionManager
+    SimpleMeterRegistry registry
 
     def setup() {
         transactionRepository = Mock()
-        cardApi = Mock()
-        payService = new PayService(transactionRepository, cardApi)
+        archiveRepository = Mock()
+        outboxRepository = Mock()
+        transactionManager = Mock()
+        registry = new SimpleMeterRegistry()
+        payService = new PayService(transactionRepository, archiveRepository, outboxRepository, new FindResponseCache(100, 60), idGenerator, new CancelSequencer(false, 32, 3000), new PayMetrics(registry), new CardFingerprint("test-secret"), new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60), Mock(SettlementAggregator), transactionManager)
     }
 
     def "동일한 카드번호로 다른 요청이 처리되고 있으면 ConflictException 이 발생한다."() {
@@ -45,7 +56,7 @@ class PayServiceTest extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
         transaction.createdAt = LocalDateTime.now()
         transaction.remainAmount = 11000
         transaction.remainVat = 1000
@@ -78,9 +89,9 @@ class PayServiceTest extends Specification {
 
         then:
         1 * transactionRepository.save(_) >> transaction
-        1 * cardApi.send(_) >> {
+        1 * outboxRepository.save(_) >> { args ->
             sleep(3000)
-            return true
+            return args[0]
         }
         conflictCount == 1
     }
@@ -100,12 +111,53 @@ class PayServiceTest extends Specification {
 
         then:
         1 * transactionRepository.save(_) >> { throw new RuntimeException("FOR TEST") }
-        0 * cardApi.send(_) >> true
+        0 * outboxRepository.save(_)
         thrown(RuntimeException)
         !payService.map.containsKey(request.cardNumber)
     }
 
 
+    def "일괄 결제 시 실패한 건은 결과에만 기록하고 나머지 건은 한 번에 저장한다."() {
+        given:
+        def valid = new PayRequest()
+        valid.cardNumber = "1234567890123456"
+        valid.expirationMonthYear = "1125"
+        valid.cvc = "777"
+        valid.installment = 0
+        valid.amount = 11000
+        valid.vat = 1000
+
+        and:
+        def vatGreaterThanAmount = new PayRequest()
+        vatGreaterThanAmount.cardNumber = "1234567890123457"
+        vatGreaterThanAmount.expirationMonthYear = "1125"
+        vatGreaterThanAmount.cvc = "777"
+        vatGreaterThanAmount.installment = 0
+        vatGreaterThanAmount.amount = 1000
+        vatGreaterThanAmount.vat = 2000
+
+        when:
+        def result = payService.payAll([valid, vatGreaterThanAmount, valid])
+
+        then:
+        1 * transactionRepository.saveAll({ it.size() == 2 }) >> { args ->
+            args[0].each { it.createdAt = LocalDateTime.now() }
+            args[0]
+        }
+        1 * outboxRepository.saveAll({ it.size() == 2 })
+        1 * transactionRepository.flush()
+        1 * transactionManager.commit(_) >> {
+            assert payService.map.keySet() == ["1234567890123456", "1234567890123457"] as Set
+        }
+        result.successCount == 2
+        result.failureCount == 1
+        result.items*.index == [0, 1, 2]
+        result.items*.status == [201, 406, 201]
+        payService.map.isEmpty()
+        registry.get("pay.request").tags("operation", "pay_all", "outcome", "success").timer().count() == 1
+        registry.get("pay.stage").tags("operation", "pay_all", "stage", "commit").timer().count() == 1
+    }
+
     def "취소를 요청할 원본 트랜잭션을 찾지 못하면 TransactionNotFoundException 을 발생한다. "() {
         given:
         def transactionId = "20050418045376626998"
@@ -117,10 +169,27 @@ class PayServiceTest extends Specification {
         payService.cancel(transactionId, cancelRequest)
 
         then:
-        1 * transactionRepository.findByTransactionId(_) >> Optional.empty()
+        1 * transactionRepository.findForCancelByTransactionId(_) >> Optional.empty()
         thrown(TransactionNotFoundException)
     }
 
+    def "취소를 요청할 원본 트랜잭션이 보관되었으면 IllegalStatusException 을 발생한다."() {
+        given:
+        def transactionId = "20050418045376626998"
+        def cancelRequest = new CancelRequest()
+        cancelRequest.amount = 10000
+        cancelRequest.vat = 1000
+
+        when:
+        payService.cancel(transactionId, cancelRequest)
+
+        then:
+        1 * transactionRepository.findForCancelByTransactionId(transactionId) >> Optional.empty()
+        1 * archiveRepository.existsByTransactionId(transactionId) >> true
+        0 * transactionRepository.decreaseRemainAmountAndVat(*_)
+        thrown(IllegalStatusException)
+    }
+
     def "취소를 요청할 트랜잭션이 결제 트랜잭션이 아니면 IllegalStatusException 을 발생한다."() {
         given:
         def transactionId = "20050418045376626998"
@@ -135,17 +204,65 @@ class PayServiceTest extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
         transaction.transactionType = TransactionType.CANCEL
 
         when:
         payService.cancel(transactionId, cancelRequest)
 
         then:
-        1 * transactionRepository.findByTransactionId(_) >> Optional.of(transaction)
+        1 * transactionRepository.findForCancelByTransactionId(_) >> Optional.of(transaction)
         thrown(IllegalStatusException)
     }
 
+    def "조회 이후 다른 취소가 먼저 잔액을 차감했으면 ConflictException 을 발생하고 취소 거래를 저장하지 않는다."() {
+        given:
+        def transaction = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1212", "123", 0, 11000, 1000)
+        transaction.id = 1L
+        transaction.version = 3L
+
+        and:
+        def cancelRequest = new CancelRequest()
+        cancelRequest.amount = 3000
+        cancelRequest.vat = 300
+
+        when:
+        payService.cancel(transaction.transactionId, cancelRequest)
+
+        then:
+        1 * transactionRepository.findForCancelByTransactionId(transaction.transactionId) >> Optional.of(transaction)
+        1 * transactionRepository.decreaseRemainAmountAndVat(1L, 3L, 3000L, 300L, _) >> 0
+        0 * transactionRepository.save(_)
+        0 * outboxRepository.save(_)
+        thrown(ConflictException)
+    }
+
+    def "잔액 차감에 성공하면 취소 거래와 카드사 전문을 저장한다."() {
+        given:
+        def transaction = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1212", "123", 0, 11000, 1000)
+        transaction.id = 1L
+        transaction.version = 0L
+
+        and:
+        def cancelRequest = new CancelRequest()
+        cancelRequest.amount = 3000
+        cancelRequest.vat = 300
+
+        when:
+        def result = payService.cancel(transaction.transactionId, cancelRequest)
+
+        then:
+        1 * transactionRepository.findForCancelByTransactionId(transaction.transactionId) >> Optional.of(transaction)
+        1 * transactionRepository.decreaseRemainAmountAndVat(1L, 0L, 3000L, 300L, _) >> 1
+
+        then:
+        1 * transactionRepository.save(_) >> { args -> args[0].prePersist(); args[0] }
+        1 * outboxRepository.save({ it.payTransactionId == transaction.transactionId && it.sequence == 1L }) >> { args -> args[0] }
+        result.payTransactionId == transaction.transactionId
+        result.remainAmount == 8000
+        result.remainVat == 700
+    }
+
     def "요청한 트랜잭션 아이디로 트랜잭션을 찾지 못하면 TransactionNotFoundException 이 발생한다."() {
         given:
         def transactionId = "20050418045376626998"
@@ -154,10 +271,43 @@ class PayServiceTest extends Specification {
         payService.find(transactionId)
 
         then:
-        1 * transactionRepository.findByTransactionId(_) >> Optional.empty()
+        1 * transactionRepository.findWithCancelTransactionsByTransactionId(_) >> Optional.empty()
+        1 * archiveRepository.findWithCancelTransactionsByTransactionId(_) >> Optional.empty()
         thrown(TransactionNotFoundException)
     }
 
+    def "트랜잭션을 찾지 못하면 보관된 트랜잭션에서 찾는다."() {
+        given:
+        def transaction = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1212", "123", 3, 11000, 1000)
+        def archive = new TransactionArchive(id: 1L, transactionId: transaction.transactionId, transactionType: TransactionType.PAY,
+                encryptedCardInfo: transaction.encryptedCardInfo, installment: 3,
+                amount: 11000, vat: 1000, remainAmount: 0, remainVat: 0, version: 1L,
+                createdAt: LocalDateTime.now().minusYears(2), archivedAt: LocalDateTime.now())
+        def cancelArchive = new TransactionArchive(id: 2L, transactionId: idGenerator.generate(), transactionType: TransactionType.CANCEL,
+                encryptedCardInfo: transaction.encryptedCardInfo, installment: 0,
+                amount: 11000, vat: 1000, remainAmount: 0, remainVat: 0, version: 0L, payTransaction: archive,
+                createdAt: LocalDateTime.now().minusYears(2), archivedAt: LocalDateTime.now())
+        archive.cancelTransactionList.add(cancelArchive)
+
+        when:
+        def pay = payService.find(transaction.transactionId)
+        def cancel = payService.find(cancelArchive.transactionId)
+
+        then:
+        2 * transactionRepository.findWithCancelTransactionsByTransactionId(_) >> Optional.empty()
+        1 * archiveRepository.findWithCancelTransactionsByTransactionId(transaction.transactionId) >> Optional.of(archive)
+        1 * archiveRepository.findWithCancelTransactionsByTransactionId(cancelArchive.transactionId) >> Optional.of(cancelArchive)
+        pay.cardNumber == "123456*******456"
+        pay.cvc == "123"
+        pay.installment == 3
+        pay.remainAmount == 0
+        pay.cancelTransactionList*.transactionId == [cancelArchive.transactionId]
+        cancel.transactionType == TransactionType.CANCEL
+        cancel.payTransactionId == transaction.transactionId
+        cancel.cardNumber == "123456*******456"
+        cancel.amount == 11000
+    }
+
     def "요청한 트랜잭션 아이디로 트랜잭션을 찾아서 검증한다."() {
         given:
         def transactionId = "20050418045376626998"
@@ -169,7 +319,7 @@ class PayServiceTest extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
         transaction.createdAt = LocalDateTime.now()
         transaction.remainAmount = 11000
         transaction.remainVat = 1000
@@ -178,7 +328,7 @@ class PayServiceTest extends Specification {
         def result = payService.find(transactionId)
 
         then:
-        1 * transactionRepository.findByTransactionId(_) >> Optional.of(transaction)
+        1 * transactionRepository.findWithCancelTransactionsByTransactionId(_) >> Optional.of(transaction)
         result instanceof FindResponse
         result.expirationMonthYear == expirationMonthYear
         result.cvc == cvc
@@ -0,0 +1,92 @@
+package com.pay.api.domain
+
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.function.LongSupplier
+
+class SequenceTransactionIdGeneratorTest extends Specification {
+
+    static final ZoneId ZONE = ZoneId.of("Asia/Seoul")
+
+    def "yyMMddHHmmssSSS + node + 밀리초 내 순번 형식의 20자리 관리번호를 만든다."() {
+        given:
+        def epochMillis = LocalDateTime.of(2020, 5, 4, 18, 4, 53, 766_000_000).atZone(ZONE).toInstant().toEpochMilli()
+        def generator = new SequenceTransactionIdGenerator(7, ZONE, { epochMillis } as LongSupplier)
+
+        expect:
+        generator.generate() == "20050418045376607000"
+        generator.generate() == "20050418045376607001"
+    }
+
+    def "한 밀리초에 1,000건을 넘으면 다음 밀리초를 미리 사용하고 시계가 뒤로 가도 중복되지 않는다."() {
+        given:
+        def epochMillis = LocalDateTime.of(2020, 5, 4, 18, 4, 53, 999_000_000).atZone(ZONE).toInstant().toEpochMilli()
+        def now = epochMillis
+        def generator = new SequenceTransactionIdGenerator(1, ZONE, { now } as LongSupplier)
+
+        when:
+        def ids = (0..<1_500).collect { generator.generate() }
+        now = epochMillis - 10_000
+        ids << generator.generate()
+
+        then:
+        ids.toSet().size() == 1_501
+        ids == ids.toSorted()
+        ids[999] == "20050418045399901999"
+        ids[1_000] == "20050418045400001000"
+        ids[1_500] == "20050418045400001500"
+    }
+
+    def "여러 스레드에서 동시에 발급해도 중복되지 않는다."() {
+        given:
+        def threads = 8
+        def perThread = 50_000
+        def generator = new SequenceTransactionIdGenerator(3)
+        def ids = ConcurrentHashMap.newKeySet(threads * perThread)
+        def executor = Executors.newFixedThreadPool(threads)
+        def ready = new CountDownLatch(threads)
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (0..<threads).collect {
+            executor.submit({
+                ready.countDown()
+                start.await()
+                def previous = ""
+                for (int i = 0; i < perThread; i++) {
+                    def id = generator.generate()
+                    assert id.length() == TransactionIdGenerator.LENGTH
+                    assert id > previous
+                    ids.add(id)
+                    previous = id
+                }
+            } as Callable)
+        }
+        ready.await()
+        def startedAt = System.nanoTime()
+        start.countDown()
+        futures*.get()
+        def elapsedMillis = Math.max(1, (System.nanoTime() - startedAt).intdiv(1_000_000))
+        println "${threads * perThread} ids in ${elapsedMillis} ms (${(threads * perThread * 1000L).intdiv(elapsedMillis)} ids/s)"
+
+        then:
+        ids.size() == threads * perThread
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "node id 는 0 ~ 99 만 허용한다."() {
+        when:
+        new SequenceTransactionIdGenerator(100)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -8,10 +8,12 @@ import spock.lang.Unroll
 
 class TransactionTest extends Specification {
 
+    TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0)
+
     @Unroll
     def "결제 시 #description 이면 IllegalArgumentException 이 발생한다."() {
         when:
-        Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
 
         then:
         thrown(IllegalArgumentException)
@@ -50,10 +52,10 @@ class TransactionTest extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
 
         when:
-        transaction.cancel(requestedAmount, requestedVat)
+        transaction.cancel(idGenerator.generate(), requestedAmount, requestedVat)
 
         then:
         thrown(NullPointerException)
@@ -72,10 +74,10 @@ class TransactionTest extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
 
         when:
-        transaction.cancel(requestedAmount, requestedVat)
+        transaction.cancel(idGenerator.generate(), requestedAmount, requestedVat)
 
         then:
         thrown(IllegalStatusException)
@@ -92,7 +94,7 @@ class TransactionTest extends Specification {
     @Unroll
     def "#description : BadRequestException 이 발생한다."() {
         when:
-        Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
 
         then:
         thrown(BadRequestException)
@@ -107,7 +109,7 @@ class TransactionTest extends Specification {
         def amount = 20000
         def vat = null
         when:
-        def transaction = Transaction.newInstance("123456789012345", "1212", "123", 0, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), "123456789012345", "1212", "123", 0, amount, vat)
 
         then:
         transaction.amount == 20000
@@ -116,7 +118,7 @@ class TransactionTest extends Specification {
 
     def "transaction 생성 시 20자리 transactionId가 자동으로 생성된다."() {
         when:
-        def transaction = Transaction.newInstance("123456789012345", "1212", "123", 0, 10000, 909)
+        def transaction = Transaction.newInstance(idGenerator.generate(), "123456789012345", "1212", "123", 0, 10000, 909)
 
         then:
         transaction.transactionId != null
@@ -152,4 +154,72 @@ class TransactionTest extends Specification {
         then:
         !transaction.isCancellableTransaction()
     }
+
+    def "저장하지 않은 카드사 전문은 조회한 거래의 값으로 같게 다시 만든다."() {
+        given:
+        def pay = Transaction.newInstance(idGenerator.generate(), "123456789012345", "1212", "123", 3, 10000, 909)
+        def cancel = pay.cancel(idGenerator.generate(), 1000, 90)
+
+        when:
+        def payArchive = new TransactionArchive(id: 1L, transactionId: pay.transactionId, transactionType: TransactionType.PAY,
+                encryptedCardInfo: pay.encryptedCardInfo, installment: 3, amount: 10000L, vat: 909L, remainAmount: 9000L, remainVat: 819L)
+        def cancelArchive = new TransactionArchive(id: 2L, transactionId: cancel.transactionId, transactionType: TransactionType.CANCEL,
+                encryptedCardInfo: cancel.encryptedCardInfo, installment: 0, amount: 1000L, vat: 90L, remainAmount: 9000L, remainVat: 819L,
+                payTransaction: payArchive)
+        payArchive.cancelTransactionList.add(cancelArchive)
+        def loaded = Transaction.restore(payArchive)
+
+        then:
+        pay.encryptedCardInfo.length <= Transaction.ENCRYPTED_CARD_INFO_LENGTH
+        loaded.getMessage(null) == pay.getMessage(null)
+        loaded.cancelTransactionList[0].getMessage(null) == cancel.getMessage(null)
+        cancel.getMessage(null).length() == 450
+    }
+
+    def "토큰으로 저장한 카드정보는 넘겨받은 CardVault 에서 읽고, CardVault 가 없으면 읽지 않는다."() {
+        given:
+        def cardVault = new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60)
+        def pay = Transaction.newInstance(new StageTimings(), idGenerator.generate(), null, cardVault, "123456789012345", "1212", "123", 3, 10000L, 909L)
+        def payArchive = new TransactionArchive(id: 1L, transactionId: pay.transactionId, transactionType: TransactionType.PAY,
+                cardToken: pay.cardToken, installment: 3, amount: 10000L, vat: 909L, remainAmount: 10000L, remainVat: 909L)
+
+        when:
+        Transaction.restore(payArchive).getCardNumber(null)
+
+        then:
+        thrown(NullPointerException)
+
+        when:
+        def loaded = Transaction.restore(payArchive)
+        def cancel = loaded.cancel(new StageTimings(), idGenerator.generate(), cardVault, 1000L, 90L)
+
+        then:
+        loaded.getCardNumber(cardVault) == "123456789012345"
+        loaded.getCvc(cardVault) == "123"
+        loaded.getMessage(cardVault) == pay.getMessage(cardVault)
+        cancel.cardToken == pay.cardToken
+        cancel.getMessage(cardVault).length() == 450
+    }
+
+    def "CardVault 를 사용해도 카드사 전문의 카드정보는 결제 관리번호로 암호화하므로 결제마다 다르고, 취소 전문은 원거래의 관리번호로 암호화한다."() {
+        given:
+        def cardVault = new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60)
+        def first = Transaction.newInstance(new StageTimings(), idGenerator.generate(), null, cardVault, "123456789012345", "1212", "123", 3, 10000L, 909L)
+        def second = Transaction.newInstance(new StageTimings(), idGenerator.generate(), null, cardVault, "123456789012345", "1212", "123", 3, 10000L, 909L)
+        def cancel = first.cancel(new StageTimings(), idGenerator.generate(), cardVault, 1000L, 90L)
+
+        when:
+        def firstEncrypted = new MessageReader().wrap(first.getMessage(cardVault)).encryptedCardInfo()
+        def secondEncrypted = new MessageReader().wrap(second.getMessage(cardVault)).encryptedCardInfo()
+        def cancelEncrypted = new MessageReader().wrap(cancel.getMessage(cardVault)).encryptedCardInfo()
+
+        then:
+        first.cardToken == second.cardToken
+        firstEncrypted != secondEncrypted
+        cancelEncrypted == firstEncrypted
+        with(CardInfoCrypto.decrypt(first.transactionId, firstEncrypted)) {
+            cardNumber == "123456789012345" && expirationMonthYear == "1212" && cvc == "123"
+        }
+        CardInfoCrypto.decrypt(second.transactionId, secondEncrypted).cardNumber == "123456789012345"
+    }
 }
@@ -0,0 +1,249 @@
+package com.pay.api.domain.card
+
+import com.pay.api.type.OutboxStatus
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.util.concurrent.CompletableFuture
+
+import static java.util.concurrent.CompletableFuture.completedFuture
+
+class CardCompanyOutboxDispatcherTest extends Specification {
+
+    CardCompanyOutboxRepository repository
+    CardCompanyApi cardCompanyApi
+    CardCompanyOutboxDispatcher dispatcher
+
+    def setup() {
+        repository = Mock()
+        cardCompanyApi = Mock()
+        dispatcher = new CardCompanyOutboxDispatcher(repository, cardCompanyApi, new SimpleMeterRegistry(), 100, 3, 500, 60_000)
+        repository.findPayTransactionIds(OutboxStatus.DEAD, _) >> []
+    }
+
+    private static CardCompanyOutbox outbox(long id, String payTransactionId, String message, long sequence = 0) {
+        def outbox = new CardCompanyOutbox(payTransactionId, "T" + id, sequence, message)
+        outbox.id = id
+        outbox.nextAttemptAt = LocalDateTime.now().minusSeconds(1)
+        outbox
+    }
+
+    private static CardCompanyOutbox claimed(CardCompanyOutbox outbox, String owner) {
+        outbox.claimedBy = owner
+        outbox.claimedUntil = LocalDateTime.now().plusMinutes(1)
+        outbox
+    }
+
+    def "전송에 성공한 전문은 outbox 에서 삭제한다."() {
+        given:
+        def outboxes = [outbox(1, "A", "A-PAY"), outbox(2, "B", "B-PAY")]
+
+        when:
+        def sentCount = dispatcher.dispatch(outboxes)
+
+        then:
+        2 * cardCompanyApi.sendAsync(_) >> completedFuture(true)
+        1 * repository.deleteByIdIn([1L, 2L])
+        sentCount == 2
+    }
+
+    def "같은 결제 건의 앞선 전문이 실패하면 뒤의 전문은 전송하지 않고 다른 결제 건은 계속 전송한다."() {
+        given:
+        def outboxes = [outbox(1, "A", "A-PAY"), outbox(2, "B", "B-PAY"), outbox(3, "A", "A-CANCEL")]
+
+        when:
+        def sentCount = dispatcher.dispatch(outboxes)
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-PAY") >> { throw new RuntimeException("FOR TEST") }
+        1 * cardCompanyApi.sendAsync("B-PAY") >> completedFuture(true)
+        0 * cardCompanyApi.sendAsync("A-CANCEL")
+        1 * repository.save({ it.id == 1L && it.attempts == 1 && it.nextAttemptAt.isAfter(LocalDateTime.now()) })
+        1 * repository.deleteByIdIn([2L])
+        sentCount == 1
+    }
+
+    def "같은 결제 건의 전문은 앞선 전문이 끝난 뒤에 전송하고 다른 결제 건의 전문은 한꺼번에 전송한다."() {
+        given:
+        def outboxes = [outbox(1, "A", "A-PAY"), outbox(2, "A", "A-CANCEL"), outbox(3, "B", "B-PAY")]
+        def aPay = new CompletableFuture<Boolean>()
+        def bPay = new CompletableFuture<Boolean>()
+
+        when:
+        def sentCount = dispatcher.dispatch(outboxes)
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-PAY") >> aPay
+        1 * cardCompanyApi.sendAsync("B-PAY") >> { bPay.complete(true); aPay.complete(true); bPay }
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-CANCEL") >> completedFuture(true)
+
+        then:
+        1 * repository.deleteByIdIn([1L, 3L, 2L])
+        sentCount == 3
+    }
+
+    def "전송 실패로 완료된 전문은 재시도하고 같은 결제 건의 뒤 전문은 전송하지 않는다."() {
+        given:
+        def failed = new CompletableFuture<Boolean>()
+        failed.completeExceptionally(new IllegalStateException("FOR TEST"))
+
+        when:
+        def sentCount = dispatcher.dispatch([outbox(1, "A", "A-PAY"), outbox(2, "A", "A-CANCEL")])
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-PAY") >> failed
+        0 * cardCompanyApi.sendAsync("A-CANCEL")
+        1 * repository.save({ it.id == 1L && it.attempts == 1 })
+        0 * repository.deleteByIdIn(_)
+        sentCount == 0
+    }
+
+    def "재시도 시각이 되지 않은 전문이 있으면 같은 결제 건의 뒤 전문도 대기한다."() {
+        given:
+        def waiting = outbox(1, "A", "A-PAY")
+        waiting.nextAttemptAt = LocalDateTime.now().plusMinutes(1)
+        def outboxes = [waiting, outbox(2, "A", "A-CANCEL")]
+
+        when:
+        def sentCount = dispatcher.dispatch(outboxes)
+
+        then:
+        0 * cardCompanyApi.sendAsync(_)
+        0 * repository.deleteByIdIn(_)
+        sentCount == 0
+    }
+
+    def "maxAttempts 만큼 실패하면 DEAD 로 남긴다."() {
+        given:
+        def failing = outbox(1, "A", "A-PAY")
+        failing.attempts = 2
+
+        when:
+        dispatcher.dispatch([failing])
+
+        then:
+        1 * cardCompanyApi.sendAsync(_) >> completedFuture(false)
+        1 * repository.save({ it.status == OutboxStatus.DEAD && it.attempts == 3 })
+    }
+
+    def "결제 전문이 DEAD 가 되면 같은 결제 건의 취소 전문은 전송하지 않고 DEAD 로 남긴다."() {
+        given:
+        def pay = outbox(1, "A", "A-PAY")
+        pay.attempts = 2
+
+        when:
+        def sentCount = dispatcher.dispatch([pay, outbox(2, "A", "A-CANCEL"), outbox(3, "B", "B-PAY")])
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-PAY") >> completedFuture(false)
+        1 * cardCompanyApi.sendAsync("B-PAY") >> completedFuture(true)
+        0 * cardCompanyApi.sendAsync("A-CANCEL")
+        1 * repository.save({ it.id == 1L && it.status == OutboxStatus.DEAD && it.attempts == 3 })
+        1 * repository.save({ it.id == 2L && it.status == OutboxStatus.DEAD && it.attempts == 0 })
+        1 * repository.deleteByIdIn([3L])
+        sentCount == 1
+    }
+
+    def "이전 주기에 결제 전문이 DEAD 가 된 결제 건의 취소 전문은 전송하지 않는다."() {
+        when:
+        def sentCount = dispatcher.dispatch([outbox(2, "A", "A-CANCEL")])
+
+        then:
+        1 * repository.findPayTransactionIds(OutboxStatus.DEAD, { it as Set == ["A"] as Set }) >> ["A"]
+        0 * cardCompanyApi.sendAsync(_)
+        1 * repository.save({ it.id == 2L && it.status == OutboxStatus.DEAD })
+        0 * repository.deleteByIdIn(_)
+        sentCount == 0
+    }
+
+    def "재시도를 기다리는 전문으로 첫 page 가 가득 차도 뒤 page 의 전문을 전송한다."() {
+        given:
+        dispatcher = new CardCompanyOutboxDispatcher(repository, cardCompanyApi, new SimpleMeterRegistry(), 2, 3, 500, 60_000)
+        def waitingA = claimed(outbox(1, "A", "A-PAY"), dispatcher.owner)
+        waitingA.nextAttemptAt = LocalDateTime.now().plusMinutes(1)
+        def waitingB = claimed(outbox(2, "B", "B-PAY"), dispatcher.owner)
+        waitingB.nextAttemptAt = LocalDateTime.now().plusMinutes(1)
+        def cancelA = claimed(outbox(3, "A", "A-CANCEL", 1), dispatcher.owner)
+        def payC = claimed(outbox(4, "C", "C-PAY"), dispatcher.owner)
+
+        when:
+        dispatcher.dispatch()
+
+        then:
+        1 * repository.findClaimable(OutboxStatus.READY, 0L, _, _) >> [waitingA, waitingB]
+        1 * repository.claim(OutboxStatus.READY, [1L, 2L], dispatcher.owner, _, _) >> 2
+        1 * repository.findByPayTransactionIds(OutboxStatus.READY, { it as Set == ["A", "B"] as Set }) >> [waitingA, waitingB]
+        1 * repository.findClaimable(OutboxStatus.READY, 2L, _, _) >> [cancelA, payC]
+        1 * repository.claim(OutboxStatus.READY, [3L, 4L], dispatcher.owner, _, _) >> 2
+        1 * repository.findByPayTransactionIds(OutboxStatus.READY, { it as Set == ["A", "C"] as Set }) >> [waitingA, cancelA, payC]
+        0 * cardCompanyApi.sendAsync("A-PAY")
+        0 * cardCompanyApi.sendAsync("B-PAY")
+        0 * cardCompanyApi.sendAsync("A-CANCEL")
+        1 * cardCompanyApi.sendAsync("C-PAY") >> completedFuture(true)
+        1 * repository.deleteByIdIn([4L])
+        1 * repository.findClaimable(OutboxStatus.READY, 4L, _, _) >> []
+        1 * repository.release(dispatcher.owner)
+    }
+
+    def "다른 dispatcher 가 먼저 가져간 전문은 전송하지 않는다."() {
+        given:
+        def pay = outbox(1, "A", "A-PAY")
+
+        when:
+        dispatcher.dispatch()
+
+        then:
+        1 * repository.findClaimable(OutboxStatus.READY, 0L, _, _) >> [pay]
+        1 * repository.claim(OutboxStatus.READY, [1L], dispatcher.owner, _, _) >> 0
+        0 * repository.findByPayTransactionIds(_, _)
+        0 * cardCompanyApi.sendAsync(_)
+        0 * repository.release(_)
+    }
+
+    def "앞선 순번을 다른 dispatcher 가 가져간 결제 건은 뒤 순번을 전송하지 않고 놓아준다."() {
+        given:
+        def payA = claimed(outbox(60, "A", "A-PAY"), "other")
+        def cancelA = claimed(outbox(1, "A", "A-CANCEL", 1), dispatcher.owner)
+        def payB = claimed(outbox(2, "B", "B-PAY"), dispatcher.owner)
+
+        when:
+        dispatcher.dispatch()
+
+        then:
+        1 * repository.findClaimable(OutboxStatus.READY, 0L, _, _) >> [cancelA, payB]
+        1 * repository.claim(OutboxStatus.READY, [1L, 2L], dispatcher.owner, _, _) >> 2
+        1 * repository.findByPayTransactionIds(OutboxStatus.READY, { it as Set == ["A", "B"] as Set }) >> [payA, cancelA, payB]
+        0 * cardCompanyApi.sendAsync("A-PAY")
+        0 * cardCompanyApi.sendAsync("A-CANCEL")
+        1 * cardCompanyApi.sendAsync("B-PAY") >> completedFuture(true)
+        1 * repository.deleteByIdIn([2L])
+
+        then:
+        1 * repository.release(dispatcher.owner)
+    }
+
+    def "ID 순서와 달라도 같은 결제 건의 전문은 순번 순서대로 전송한다."() {
+        given: "다른 노드에서 미리 할당받은 ID 라 취소 전문의 ID 가 결제 전문보다 작다"
+        def cancelA = claimed(outbox(1, "A", "A-CANCEL", 1), dispatcher.owner)
+        def payA = claimed(outbox(60, "A", "A-PAY"), dispatcher.owner)
+
+        when:
+        dispatcher.dispatch()
+
+        then:
+        1 * repository.findClaimable(OutboxStatus.READY, 0L, _, _) >> [cancelA, payA]
+        1 * repository.claim(OutboxStatus.READY, [1L, 60L], dispatcher.owner, _, _) >> 2
+        1 * repository.findByPayTransactionIds(OutboxStatus.READY, { it as Set == ["A"] as Set }) >> [payA, cancelA]
+        1 * cardCompanyApi.sendAsync("A-PAY") >> completedFuture(true)
+
+        then:
+        1 * cardCompanyApi.sendAsync("A-CANCEL") >> completedFuture(true)
+
+        then:
+        1 * repository.deleteByIdIn([60L, 1L])
+        1 * repository.release(dispatcher.owner)
+    }
+}
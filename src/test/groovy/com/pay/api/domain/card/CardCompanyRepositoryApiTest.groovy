@@ -1,15 +1,25 @@
 package com.pay.api.domain.card
 
 
+import org.springframework.jdbc.core.JdbcTemplate
 import spock.lang.Specification
 
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
 class CardCompanyRepositoryApiTest extends Specification {
     CardCompanyApi cardCompanyApi
     CardCompanyRepository repository
+    JdbcTemplate jdbcTemplate
 
     def setup() {
         repository = Mock()
-        cardCompanyApi = new CardCompanyRepositoryApi(repository)
+        jdbcTemplate = Mock()
+        cardCompanyApi = new CardCompanyRepositoryApi(repository, jdbcTemplate, false, 256, 200, 4096)
+    }
+
+    def cleanup() {
+        ((CardCompanyRepositoryApi) cardCompanyApi).shutdown()
     }
 
     def "CardCompanyRepositoryApi 에서 save 중 exception 이 발생해도 결과는 true 이다."() {
@@ -34,4 +44,45 @@ class CardCompanyRepositoryApiTest extends Specification {
         then:
         result
     }
-}
\ No newline at end of file
+
+    def "group commit : 대기 시간 안에 들어온 전문은 multi-row insert 한 번으로 저장한다."() {
+        given:
+        cardCompanyApi = new CardCompanyRepositoryApi(repository, jdbcTemplate, true, 256, TimeUnit.SECONDS.toMicros(1), 16)
+
+        when:
+        def results = ["A", "B", "C"].collect { cardCompanyApi.sendAsync(it) }*.get(5, TimeUnit.SECONDS)
+
+        then:
+        1 * jdbcTemplate.update("INSERT INTO CardCompany (MESSAGE) VALUES (?),(?),(?)", ["A", "B", "C"] as Object[]) >> 3
+        0 * repository.save(_)
+        results == [true, true, true]
+    }
+
+    def "group commit : maxBatchSize 만큼 모이면 대기 시간을 기다리지 않고 저장한다."() {
+        given:
+        cardCompanyApi = new CardCompanyRepositoryApi(repository, jdbcTemplate, true, 2, TimeUnit.MINUTES.toMicros(1), 16)
+
+        when:
+        def results = ["A", "B"].collect { cardCompanyApi.sendAsync(it) }*.get(5, TimeUnit.SECONDS)
+
+        then:
+        1 * jdbcTemplate.update(_, ["A", "B"] as Object[]) >> 2
+        results == [true, true]
+    }
+
+    def "group commit : insert 가 실패하면 같은 batch 의 전문은 모두 실패로 완료되고 send 는 true 를 반환한다."() {
+        given:
+        jdbcTemplate.update(*_) >> { throw new IllegalStateException("FOR TEST") }
+        cardCompanyApi = new CardCompanyRepositoryApi(repository, jdbcTemplate, true, 1, 0, 16)
+
+        when:
+        cardCompanyApi.sendAsync("A").get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+
+        expect:
+        cardCompanyApi.send("B")
+    }
+}
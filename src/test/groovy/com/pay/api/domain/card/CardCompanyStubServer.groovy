@@ -0,0 +1,123 @@
+package com.pay.api.domain.card
+
+import com.pay.api.domain.MessageReader
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Predicate
+
+/**
+ * TcpCardCompanyApi 를 외부 카드사 없이 테스트하기 위한 loopback 카드사 서버입니다.
+ * 전문(450 byte)을 받아서 minLatencyMillis ~ maxLatencyMillis 뒤에 UID(20) + 응답코드(2)로 응답하므로 응답 순서는 요청 순서와 다를 수 있습니다.
+ * - rejects : 거절("99")로 응답할 UID
+ * - drops : 응답하지 않을 UID (timeout)
+ * - failureRate : 임의로 거절할 비율
+ * 부하 테스트 : ./gradlew test 의 classpath 로 main 을 실행한 뒤 pay.card-company.transport=tcp, pay.card-company.tcp.port 로 연결합니다.
+ */
+class CardCompanyStubServer implements Closeable {
+
+    long minLatencyMillis = 0
+    long maxLatencyMillis = 0
+    double failureRate = 0
+    Predicate<String> rejects = { false }
+    Predicate<String> drops = { false }
+
+    final AtomicInteger received = new AtomicInteger()
+    final ConcurrentLinkedQueue<String> receivedUids = new ConcurrentLinkedQueue<>()
+
+    private final ServerSocket serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress())
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(2)
+    private final Set<Socket> sockets = Collections.synchronizedSet(new HashSet<Socket>())
+    private volatile boolean running = true
+
+    CardCompanyStubServer start() {
+        Thread.startDaemon("card-company-stub-accept") {
+            while (running) {
+                try {
+                    def socket = serverSocket.accept()
+                    sockets.add(socket)
+                    Thread.startDaemon("card-company-stub-${socket.port}") { serve(socket) }
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        this
+    }
+
+    int getPort() {
+        serverSocket.localPort
+    }
+
+    int getConnections() {
+        sockets.size()
+    }
+
+    /**
+     * 연결된 소켓을 모두 끊습니다. (카드사 장애)
+     */
+    void disconnectAll() {
+        synchronized (sockets) {
+            sockets.each { it.close() }
+            sockets.clear()
+        }
+    }
+
+    private void serve(Socket socket) {
+        def input = new DataInputStream(new BufferedInputStream(socket.inputStream))
+        def output = socket.outputStream
+        def message = new byte[MessageReader.MESSAGE_LENGTH]
+        def reader = new MessageReader()
+        try {
+            while (running) {
+                input.readFully(message)
+                def uid = reader.wrap(ByteBuffer.wrap(message)).uid()
+                received.incrementAndGet()
+                receivedUids.add(uid)
+                if (drops.test(uid)) {
+                    continue
+                }
+
+                def approved = !rejects.test(uid) && (failureRate <= 0 || ThreadLocalRandom.current().nextDouble() >= failureRate)
+                def response = (uid.padRight(TcpCardCompanyApi.UID_LENGTH) + (approved ? TcpCardCompanyApi.APPROVED : "99")).getBytes(StandardCharsets.ISO_8859_1)
+                def latency = maxLatencyMillis <= minLatencyMillis ? minLatencyMillis : ThreadLocalRandom.current().nextLong(minLatencyMillis, maxLatencyMillis + 1)
+                responder.schedule({
+                    synchronized (output) {
+                        try {
+                            output.write(response)
+                            output.flush()
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }, latency, TimeUnit.MILLISECONDS)
+            }
+        } catch (IOException ignored) {
+        } finally {
+            sockets.remove(socket)
+            socket.close()
+        }
+    }
+
+    @Override
+    void close() {
+        running = false
+        serverSocket.close()
+        disconnectAll()
+        responder.shutdownNow()
+    }
+
+    static void main(String[] args) {
+        def server = new CardCompanyStubServer()
+        server.minLatencyMillis = args.length > 0 ? args[0] as long : 1
+        server.maxLatencyMillis = args.length > 1 ? args[1] as long : 10
+        server.failureRate = args.length > 2 ? args[2] as double : 0
+        server.start()
+        println "card company stub server : port=${server.port}, latency=${server.minLatencyMillis}~${server.maxLatencyMillis}ms, failureRate=${server.failureRate}"
+        Thread.currentThread().join()
+    }
+}
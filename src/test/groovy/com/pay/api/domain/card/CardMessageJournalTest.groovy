@@ -0,0 +1,145 @@
+package com.pay.api.domain.card
+
+import com.pay.api.domain.MessageReader
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class CardMessageJournalTest extends Specification {
+
+    Path directory
+
+    def setup() {
+        directory = Files.createTempDirectory("card-message-journal")
+    }
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    private static String message(int i) {
+        (" 446" + "PAYMENT".padRight(10) + String.format("%020d", i)).padRight(450)
+    }
+
+    def "덧붙인 전문을 sequence 로 읽고, segment 가 가득 차면 다음 segment 에 이어서 쓴다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 4)
+
+        when:
+        def sequences = (0..<10).collect { journal.append(message(it)) }
+
+        then:
+        sequences == (0L..<10L).toList()
+        journal.nextSequence() == 10
+        (0..<10).every { journal.read(it) == message(it) }
+        Files.list(directory).count() == 3
+
+        cleanup:
+        journal.close()
+    }
+
+    def "force 는 덧붙인 record 를 한 번에 내리고 다음 sequence 를 반환한다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 4)
+
+        when:
+        6.times { journal.append(message(it)) }
+
+        then:
+        journal.forcedSequence() == 0
+        journal.force() == 6
+        journal.forcedSequence() == 6
+        journal.force() == 6
+
+        cleanup:
+        journal.close()
+    }
+
+    def "replay 는 지정한 sequence 부터 순서대로 전문을 넘긴다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 4)
+        10.times { journal.append(message(it)) }
+        def replayed = []
+        def reader = new MessageReader()
+
+        when:
+        journal.replay(3, { long sequence, ByteBuffer buffer -> replayed << [sequence, reader.wrap(buffer).uid()] } as CardMessageJournal.RecordHandler)
+
+        then:
+        replayed == (3..<10).collect { [it as long, String.format("%020d", it)] }
+
+        cleanup:
+        journal.close()
+    }
+
+    def "다시 열면 마지막으로 온전히 기록된 record 뒤에 이어서 쓴다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 4)
+        6.times { journal.append(message(it)) }
+        journal.close()
+
+        and: "마지막 record 의 본문이 깨진 상태"
+        def lastSegment = directory.resolve(String.format("card-messages-%020d.journal", 4))
+        FileChannel.open(lastSegment, StandardOpenOption.WRITE).withCloseable {
+            it.write(ByteBuffer.wrap("X".bytes), CardMessageJournal.RECORD_LENGTH + CardMessageJournal.HEADER_LENGTH + 100)
+        }
+
+        when:
+        def reopened = new CardMessageJournal(directory, 4)
+
+        then:
+        reopened.nextSequence() == 5
+        reopened.read(4) == message(4)
+        reopened.append(message(99)) == 5
+        reopened.read(5) == message(99)
+
+        cleanup:
+        reopened.close()
+    }
+
+    def "다시 열면 끝으로 본 record 뒤에 남아 있던 record 를 지워서, 이어서 쓴 뒤 다시 열어도 이전 record 를 이어 붙이지 않는다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 8)
+        4.times { journal.append(message(it)) }
+        journal.close()
+
+        and: "두 번째 record 의 본문이 깨지고, 그 뒤의 record 는 온전한 상태"
+        def segment = directory.resolve(String.format("card-messages-%020d.journal", 0))
+        FileChannel.open(segment, StandardOpenOption.WRITE).withCloseable {
+            it.write(ByteBuffer.wrap("X".bytes), CardMessageJournal.RECORD_LENGTH + CardMessageJournal.HEADER_LENGTH + 100)
+        }
+
+        when:
+        def reopened = new CardMessageJournal(directory, 8)
+        reopened.append(message(99))
+        reopened.close()
+        def again = new CardMessageJournal(directory, 8)
+
+        then:
+        again.nextSequence() == 2
+        again.read(0) == message(0)
+        again.read(1) == message(99)
+
+        cleanup:
+        again.close()
+    }
+
+    def "450 byte 가 아닌 전문은 덧붙이지 않는다."() {
+        given:
+        def journal = new CardMessageJournal(directory, 4)
+
+        when:
+        journal.append("ABC")
+
+        then:
+        thrown(IllegalArgumentException)
+        journal.nextSequence() == 0
+
+        cleanup:
+        journal.close()
+    }
+}
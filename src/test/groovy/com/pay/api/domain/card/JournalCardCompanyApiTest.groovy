@@ -0,0 +1,77 @@
+package com.pay.api.domain.card
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class JournalCardCompanyApiTest extends Specification {
+
+    Path directory
+    JournalCardCompanyApi cardCompanyApi
+
+    def setup() {
+        directory = Files.createTempDirectory("card-company-journal")
+        cardCompanyApi = new JournalCardCompanyApi(directory.toString(), 64)
+    }
+
+    def cleanup() {
+        cardCompanyApi.shutdown()
+        directory.toFile().deleteDir()
+    }
+
+    private static String message(int i) {
+        (" 446" + "PAYMENT".padRight(10) + String.format("%020d", i)).padRight(450)
+    }
+
+    def "여러 스레드가 보낸 전문은 force 된 뒤에 성공으로 완료되고, force 하는 동안 쌓인 전문은 한 번의 force 로 내린다."() {
+        given:
+        def executor = Executors.newFixedThreadPool(4)
+        def forceLock = cardCompanyApi.journal.forceLock
+        def futures
+
+        when: "force 를 막아 둔 동안 1000 건을 보낸다."
+        synchronized (forceLock) {
+            futures = (0..<1000).collect { i -> CompletableFuture.supplyAsync({ cardCompanyApi.sendAsync(message(i)) }, executor).thenCompose { it } }
+            while (cardCompanyApi.journal.nextSequence() < 1000) {
+                Thread.sleep(1)
+            }
+            assert futures.every { !it.done }
+        }
+        def results = futures*.get(10, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        results.every()
+        cardCompanyApi.journal.forcedSequence() == 1000
+        (0..<1000).collect { cardCompanyApi.journal.read(it).substring(14, 34) } as Set == (0..<1000).collect { String.format("%020d", it) } as Set
+        cardCompanyApi.forces.sum() == 1
+        cardCompanyApi.forcedMessages.sum() == 1000
+    }
+
+    def "journal 에 기록하지 못한 전문은 실패로 완료되고 send 는 false 를 반환한다."() {
+        expect:
+        cardCompanyApi.sendAsync("ABC").isCompletedExceptionally()
+        !cardCompanyApi.send("ABC")
+        cardCompanyApi.send(message(1))
+    }
+
+    def "다시 시작하면 이전 journal 뒤에 이어서 기록한다."() {
+        given:
+        cardCompanyApi.send(message(1))
+        cardCompanyApi.send(message(2))
+        cardCompanyApi.shutdown()
+
+        when:
+        cardCompanyApi = new JournalCardCompanyApi(directory.toString(), 64)
+        cardCompanyApi.send(message(3))
+
+        then:
+        cardCompanyApi.journal.nextSequence() == 3
+        cardCompanyApi.journal.read(0) == message(1)
+        cardCompanyApi.journal.read(2) == message(3)
+    }
+}
@@ -0,0 +1,96 @@
+package com.pay.api.domain.card
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class RingBufferTest extends Specification {
+
+    def "넣은 순서대로 꺼내고 비어 있으면 null 을 반환한다."() {
+        given:
+        def buffer = new RingBuffer<String>(4)
+
+        when:
+        buffer.offer("A")
+        buffer.offer("B")
+
+        then:
+        !buffer.isEmpty()
+        buffer.poll() == "A"
+        buffer.poll() == "B"
+        buffer.poll() == null
+        buffer.isEmpty()
+    }
+
+    def "가득 차면 offer 는 false 를 반환하고 꺼낸 만큼 다시 넣을 수 있다."() {
+        given:
+        def buffer = new RingBuffer<Integer>(2)
+
+        expect:
+        buffer.offer(1)
+        buffer.offer(2)
+        !buffer.offer(3)
+        buffer.poll() == 1
+        buffer.offer(3)
+        buffer.poll() == 2
+        buffer.poll() == 3
+    }
+
+    def "capacity 는 2의 거듭제곱이어야 한다."() {
+        when:
+        new RingBuffer<String>(3)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "여러 스레드가 동시에 넣어도 빠지거나 중복되는 값이 없다."() {
+        given:
+        def producers = 4
+        def perProducer = 10_000
+        def buffer = new RingBuffer<Integer>(64)
+        def executor = Executors.newFixedThreadPool(producers)
+        def start = new CountDownLatch(1)
+
+        when:
+        producers.times { p ->
+            executor.execute {
+                start.await()
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(p * perProducer + i)) {
+                        Thread.yield()
+                    }
+                }
+            }
+        }
+        start.countDown()
+
+        def received = new BitSet(producers * perProducer)
+        def lastByProducer = new int[producers]
+        Arrays.fill(lastByProducer, -1)
+        def count = 0
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30)
+        def ordered = true
+        while (count < producers * perProducer && System.nanoTime() < deadline) {
+            Integer value = buffer.poll()
+            if (value == null) {
+                Thread.yield()
+                continue
+            }
+            received.set(value)
+            int producer = value.intdiv(perProducer)
+            ordered &= value > lastByProducer[producer]
+            lastByProducer[producer] = value
+            count++
+        }
+        executor.shutdown()
+
+        then:
+        count == producers * perProducer
+        received.cardinality() == producers * perProducer
+        ordered
+        buffer.poll() == null
+    }
+}
@@ -0,0 +1,133 @@
+package com.pay.api.domain.card
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+class TcpCardCompanyApiTest extends Specification {
+
+    CardCompanyStubServer server
+    TcpCardCompanyApi cardCompanyApi
+
+    def setup() {
+        server = new CardCompanyStubServer().start()
+    }
+
+    def cleanup() {
+        cardCompanyApi?.shutdown()
+        server.close()
+    }
+
+    private TcpCardCompanyApi connect(int connections, int maxInFlight, long timeoutMillis) {
+        def api = new TcpCardCompanyApi("localhost", server.port, connections, maxInFlight, timeoutMillis, 50)
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (server.connections < connections && System.nanoTime() < deadline) {
+            Thread.sleep(10)
+        }
+        // 연결 직후 connected 로 바뀌기 전에 보내지 않도록 잠깐 기다립니다.
+        Thread.sleep(50)
+        api
+    }
+
+    private static String message(String uid) {
+        (" 446" + "PAYMENT".padRight(10) + uid.padRight(20)).padRight(450)
+    }
+
+    private static String uid(int i) {
+        String.format("%020d", i)
+    }
+
+    def "여러 연결로 이어서 보낸 전문의 응답을 도착 순서와 상관없이 UID 로 찾아서 완료한다."() {
+        given:
+        server.minLatencyMillis = 0
+        server.maxLatencyMillis = 20
+        server.rejects = { it.endsWith("7") }
+        cardCompanyApi = connect(2, 1000, 5000)
+
+        when:
+        def results = (0..<500).collectEntries { [(uid(it)): cardCompanyApi.sendAsync(message(uid(it)))] }
+        CompletableFuture.allOf(results.values() as CompletableFuture[]).get(10, TimeUnit.SECONDS)
+
+        then:
+        server.received.get() == 500
+        results.every { uid, future -> future.get() == !uid.endsWith("7") }
+    }
+
+    def "응답이 없으면 timeout 으로 실패하고 send 는 false 를 반환한다."() {
+        given:
+        server.drops = { it == uid(1) }
+        cardCompanyApi = connect(1, 10, 100)
+
+        when:
+        cardCompanyApi.sendAsync(message(uid(1))).get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof TimeoutException
+
+        expect:
+        !cardCompanyApi.send(message(uid(1)))
+        cardCompanyApi.send(message(uid(2)))
+    }
+
+    def "연결이 끊기면 응답을 기다리던 전문은 실패하고, 다시 연결한 뒤에는 전송에 성공한다."() {
+        given:
+        server.drops = { it == uid(1) }
+        cardCompanyApi = connect(1, 10, 5000)
+        def waiting = cardCompanyApi.sendAsync(message(uid(1)))
+        while (server.received.get() == 0) {
+            Thread.sleep(10)
+        }
+
+        when:
+        server.disconnectAll()
+        waiting.get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IOException
+
+        when:
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        def sent = false
+        while (!sent && System.nanoTime() < deadline) {
+            sent = cardCompanyApi.send(message(uid(2)))
+            Thread.sleep(20)
+        }
+
+        then:
+        sent
+    }
+
+    def "모든 연결의 in-flight 가 가득 차면 기다리지 않고 실패한다."() {
+        given:
+        server.drops = { true }
+        cardCompanyApi = connect(1, 2, 5000)
+
+        when:
+        cardCompanyApi.sendAsync(message(uid(1)))
+        cardCompanyApi.sendAsync(message(uid(2)))
+        cardCompanyApi.sendAsync(message(uid(3))).getNow(null)
+
+        then:
+        def e = thrown(Exception)
+        e.cause instanceof RejectedExecutionException
+    }
+
+    def "450 byte 가 아닌 전문은 보내지 않는다."() {
+        given:
+        cardCompanyApi = connect(1, 10, 5000)
+
+        when:
+        cardCompanyApi.sendAsync("ABC").getNow(null)
+
+        then:
+        def e = thrown(Exception)
+        e.cause instanceof IllegalArgumentException
+        server.received.get() == 0
+    }
+}
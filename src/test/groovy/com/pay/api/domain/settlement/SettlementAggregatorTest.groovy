@@ -0,0 +1,191 @@
+package com.pay.api.domain.settlement
+
+import com.pay.api.domain.SequenceTransactionIdGenerator
+import com.pay.api.domain.Transaction
+import com.pay.api.domain.TransactionIdGenerator
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLongArray
+
+class SettlementAggregatorTest extends Specification {
+
+    static final LocalDate DAY = LocalDate.of(2020, 5, 1)
+
+    TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0)
+
+    SettlementSummaryRepository repository
+    SettlementAggregator aggregator
+
+    def setup() {
+        repository = Mock()
+        aggregator = new SettlementAggregator(repository, Mock(PlatformTransactionManager))
+    }
+
+    private Transaction pay(LocalDate date, int installment, long amount, long vat) {
+        def transaction = Transaction.newInstance(idGenerator.generate(), "1234567890123456", "1125", "777", installment, amount, vat)
+        transaction.createdAt = date.atStartOfDay()
+        aggregator.payAfterCommit([transaction])
+        transaction
+    }
+
+    private Transaction cancel(Transaction payTransaction, LocalDateTime createdAt, long amount, long vat) {
+        def transaction = payTransaction.cancel(idGenerator.generate(), amount, vat)
+        transaction.createdAt = createdAt
+        aggregator.cancelAfterCommit(payTransaction, transaction)
+        transaction
+    }
+
+    def "결제/취소를 일자, 할부개월별로 더하고 취소는 원거래 일자의 잔액에서 뺀다."() {
+        given:
+        def first = pay(DAY, 0, 11_000, 1_000)
+        pay(DAY, 0, 5_500, 500)
+        pay(DAY, 3, 22_000, 2_000)
+        cancel(first, DAY.plusDays(1).atTime(10, 0), 1_100, 100)
+
+        when:
+        def settlements = aggregator.find(DAY)
+        def nextDay = aggregator.find(DAY.plusDays(1))
+
+        then:
+        _ * repository.findBySettlementDateOrderByInstallmentAsc(_) >> []
+        settlements*.installment == [0, 3]
+        with(settlements[0]) {
+            payCount == 2
+            payAmount == 16_500
+            payVat == 1_500
+            cancelCount == 0
+            remainAmount == 15_400
+            remainVat == 1_400
+        }
+        with(settlements[1]) {
+            payCount == 1
+            payAmount == 22_000
+            remainAmount == 22_000
+        }
+        nextDay.size() == 1
+        with(nextDay[0]) {
+            installment == 0
+            payCount == 0
+            cancelCount == 1
+            cancelAmount == 1_100
+            cancelVat == 100
+            remainAmount == 0
+        }
+    }
+
+    def "flush 는 지난 flush 이후의 증분만 반영하고, 처음 반영하는 버킷은 insert 한다."() {
+        given:
+        def transaction = pay(DAY, 0, 11_000, 1_000)
+
+        when:
+        aggregator.flush()
+
+        then:
+        1 * repository.add(DAY, 0, 1, 11_000, 1_000, 0, 0, 0, 11_000, 1_000, _) >> 0
+        1 * repository.saveAndFlush({ it.settlementDate == DAY && it.installment == 0 && it.payCount == 1 && it.remainAmount == 11_000 && it.isNew() })
+
+        when:
+        aggregator.flush()
+
+        then:
+        0 * repository._
+
+        when:
+        cancel(transaction, DAY.atTime(12, 0), 1_100, 100)
+        aggregator.flush()
+
+        then:
+        1 * repository.add(DAY, 0, 0, 0, 0, 1, 1_100, 100, -1_100, -100, _) >> 1
+        0 * repository.saveAndFlush(_)
+    }
+
+    def "반영하지 못한 증분은 다음 flush 에 다시 반영하고, 조회에는 반영된 값과 증분을 더한다."() {
+        given:
+        pay(DAY, 0, 11_000, 1_000)
+
+        when:
+        aggregator.flush()
+
+        then:
+        1 * repository.add(*_) >> { throw new IllegalStateException("FOR TEST") }
+
+        when:
+        pay(DAY, 0, 5_500, 500)
+        aggregator.flush()
+
+        then:
+        1 * repository.add(DAY, 0, 2, 16_500, 1_500, 0, 0, 0, 16_500, 1_500, _) >> 1
+
+        when:
+        pay(DAY, 0, 1_100, 100)
+        def settlements = aggregator.find(DAY)
+
+        then:
+        1 * repository.findBySettlementDateOrderByInstallmentAsc(DAY) >> [new SettlementSummary(DAY, 0, [2, 16_500, 1_500, 0, 0, 0, 16_500, 1_500] as long[])]
+        settlements.size() == 1
+        settlements[0].payCount == 3
+        settlements[0].payAmount == 17_600
+        settlements[0].remainVat == 1_600
+    }
+
+    def "여러 스레드가 flush 중에 더해도 증분을 잃지 않는다."() {
+        given:
+        def flushed = new AtomicLongArray(Settlement.SIZE)
+        repository.add(*_) >> { args ->
+            (0..<Settlement.SIZE).each { flushed.addAndGet(it, args[it + 2] as long) }
+            1
+        }
+        def pool = Executors.newFixedThreadPool(4)
+
+        when:
+        def futures = (1..4).collect {
+            pool.submit({ (1..1_000).each { pay(DAY, 0, 1_100, 100) } } as Callable)
+        }
+        while (!futures.every { it.isDone() }) {
+            aggregator.flush()
+        }
+        futures*.get()
+        aggregator.flush()
+        pool.shutdown()
+
+        then:
+        flushed.get(Settlement.PAY_COUNT) == 4_000
+        flushed.get(Settlement.PAY_AMOUNT) == 4_400_000
+        flushed.get(Settlement.REMAIN_VAT) == 400_000
+    }
+
+    def "지난 날짜의 버킷은 모두 반영하면 지우고, 이후의 취소는 새 버킷에 더한다."() {
+        given:
+        def transaction = pay(DAY, 0, 11_000, 1_000)
+        pay(LocalDate.now(), 0, 5_500, 500)
+        pay(LocalDate.now().minusDays(1), 0, 5_500, 500)
+
+        when:
+        aggregator.flush()
+
+        then:
+        3 * repository.add(*_) >> 1
+        aggregator.bucketCount() == 2
+
+        when: "반영하지 못한 지난 날짜의 버킷은 남긴다"
+        cancel(transaction, LocalDateTime.now(), 1_100, 100)
+        aggregator.flush()
+
+        then:
+        1 * repository.add(LocalDate.now(), 0, 0, 0, 0, 1, 1_100, 100, 0, 0, _) >> 1
+        1 * repository.add(DAY, 0, 0, 0, 0, 0, 0, 0, -1_100, -100, _) >> { throw new IllegalStateException("FOR TEST") }
+        aggregator.bucketCount() == 3
+
+        when:
+        aggregator.flush()
+
+        then:
+        1 * repository.add(DAY, 0, 0, 0, 0, 0, 0, 0, -1_100, -100, _) >> 1
+        aggregator.bucketCount() == 2
+    }
+}
@@ -0,0 +1,34 @@
+package com.pay.api.exception
+
+import com.pay.api.controller.pay.BatchPayResponse
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.validation.ConstraintViolationException
+
+class ExceptionStatusTest extends Specification {
+
+    @Unroll
+    def "#description 은 #status 로 응답하고, 일괄 결제의 건별 실패도 같은 상태이다."() {
+        when:
+        def response = new BatchPayResponse(1)
+        response.failure(0, exception)
+
+        then:
+        ExceptionStatus.of(exception) == status
+        response.items[0].status == status.value()
+
+        where:
+        exception                                              | status                            || description
+        new ConstraintViolationException("invalid", [] as Set) | HttpStatus.BAD_REQUEST            || "ConstraintViolationException"
+        new IllegalArgumentException("illegal")                | HttpStatus.BAD_REQUEST            || "IllegalArgumentException"
+        new BadRequestException("bad")                         | HttpStatus.NOT_ACCEPTABLE         || "BadRequestException"
+        new IllegalStatusException("status")                   | HttpStatus.NOT_ACCEPTABLE         || "IllegalStatusException"
+        new TransactionNotFoundException("not found")          | HttpStatus.NOT_FOUND              || "TransactionNotFoundException"
+        new ConflictException("conflict")                      | HttpStatus.CONFLICT               || "ConflictException"
+        new IdempotencyKeyReusedException("reused")            | HttpStatus.UNPROCESSABLE_ENTITY   || "IdempotencyKeyReusedException"
+        new OverloadedException("overloaded")                  | HttpStatus.SERVICE_UNAVAILABLE    || "OverloadedException"
+        new CryptoFailException("crypto")                      | HttpStatus.INTERNAL_SERVER_ERROR  || "CryptoFailException"
+    }
+}
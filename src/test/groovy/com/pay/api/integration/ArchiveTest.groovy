@@ -0,0 +1,165 @@
+package com.pay.api.integration
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.find.FindResponse
+import com.pay.api.controller.history.CardHistoryResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import com.pay.api.domain.TransactionArchiver
+import com.pay.api.type.TransactionType
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ArchiveTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    @Autowired
+    private TransactionArchiver transactionArchiver
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    @Autowired
+    private PlatformTransactionManager transactionManager
+
+    private String pay() {
+        pay("9523456789012345")
+    }
+
+    private String pay(String cardNumber) {
+        def request = new PayRequest()
+        request.setCardNumber(cardNumber)
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+    }
+
+    private def cancel(String transactionId, long amount, long vat) {
+        def request = new CancelRequest()
+        request.setAmount(amount)
+        request.setVat(vat)
+        restTemplate.exchange(URI + "/${transactionId}", HttpMethod.DELETE, new HttpEntity<>(request), CancelResponse.class)
+    }
+
+    private int count(String table, String transactionId) {
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ${table} WHERE TRANSACTION_ID = ?".toString(), Integer.class, transactionId)
+    }
+
+    def "전액 취소된 결제 건은 취소 거래와 함께 보관하고, 보관된 거래도 조회할 수 있다."() {
+        given:
+        def cancelledId = pay()
+        def firstCancelId = cancel(cancelledId, 5_500, 500).body.transactionId
+        def secondCancelId = cancel(cancelledId, 5_500, 500).body.transactionId
+        def partialId = pay()
+        cancel(partialId, 1_100, 100)
+
+        when:
+        def moved = transactionArchiver.archive(LocalDateTime.now().plusSeconds(1), LocalDateTime.now().minusYears(10))
+
+        then:
+        moved >= 1
+        [cancelledId, firstCancelId, secondCancelId].every { count("Transaction", it) == 0 && count("TransactionArchive", it) == 1 }
+        count("Transaction", partialId) == 1
+        count("TransactionArchive", partialId) == 0
+
+        when:
+        def found = restTemplate.getForEntity(URI + "/${cancelledId}", FindResponse.class)
+        def foundCancel = restTemplate.getForEntity(URI + "/${secondCancelId}", FindResponse.class)
+
+        then:
+        found.statusCode == HttpStatus.OK
+        found.body.transactionType == TransactionType.PAY
+        found.body.cardNumber == "952345*******345"
+        found.body.remainAmount == 0
+        found.body.cancelTransactionList*.transactionId as Set == [firstCancelId, secondCancelId] as Set
+        foundCancel.statusCode == HttpStatus.OK
+        foundCancel.body.payTransactionId == cancelledId
+        foundCancel.body.cardNumber == "952345*******345"
+    }
+
+    def "오래된 결제 건은 잔액이 남아 있어도 보관하고, 보관된 결제는 취소할 수 없다."() {
+        given:
+        def transactionId = pay()
+        jdbcTemplate.update("UPDATE Transaction SET CREATED_AT = ? WHERE TRANSACTION_ID = ?", LocalDateTime.now().minusYears(2), transactionId)
+
+        when:
+        transactionArchiver.archive(LocalDateTime.now().minusYears(10), LocalDateTime.now().minusYears(1))
+        def response = restTemplate.exchange(URI + "/${transactionId}", HttpMethod.DELETE, new HttpEntity<>(new CancelRequest(amount: 1_100, vat: 100)), String.class)
+
+        then:
+        count("Transaction", transactionId) == 0
+        count("TransactionArchive", transactionId) == 1
+        response.statusCode == HttpStatus.NOT_ACCEPTABLE
+        restTemplate.getForEntity(URI + "/${transactionId}", FindResponse.class).body.remainAmount == 11_000
+    }
+
+    def "한 번 실행할 때 max-chunks-per-run 개의 chunk 까지만 옮기고, 나머지는 다음 실행에서 옮긴다."() {
+        given:
+        def archiver = new TransactionArchiver(jdbcTemplate, transactionManager, 1, 1, 7, 365)
+        def transactionIds = [pay(), pay()]
+        transactionIds.each {
+            jdbcTemplate.update("UPDATE Transaction SET CREATED_AT = ? WHERE TRANSACTION_ID = ?", LocalDateTime.now().minusYears(2), it)
+        }
+
+        when:
+        def first = archiver.archive(LocalDateTime.now().minusYears(10), LocalDateTime.now().minusYears(1))
+
+        then:
+        first == 1
+
+        when:
+        while (archiver.archive(LocalDateTime.now().minusYears(10), LocalDateTime.now().minusYears(1)) > 0) {
+        }
+
+        then:
+        transactionIds.every { count("Transaction", it) == 0 && count("TransactionArchive", it) == 1 }
+    }
+
+    def "카드별 거래 목록과 거래 추출은 보관된 거래도 함께 읽는다."() {
+        given:
+        def from = LocalDateTime.now().minusMinutes(1)
+        def archivedId = pay("9723456789012345")
+        def archivedCancelId = cancel(archivedId, 11_000, 1_000).body.transactionId
+        transactionArchiver.archive(LocalDateTime.now().plusSeconds(1), LocalDateTime.now().minusYears(10))
+        def hotId = pay("9723456789012345")
+        def to = LocalDateTime.now().plusMinutes(1)
+
+        when:
+        def firstPage = restTemplate.getForEntity("${URI}?card=9723456789012345&from=${from}&to=${to}&size=2", CardHistoryResponse.class).body
+        def secondPage = restTemplate.getForEntity("${URI}?card=9723456789012345&from=${from}&to=${to}&size=2&cursor=${firstPage.nextCursor}", CardHistoryResponse.class).body
+        def exported = restTemplate.getForEntity("${URI}/export?from=${from}&to=${to}&format=ndjson", String.class).body.readLines()
+                .collect { new ObjectMapper().readValue(it, Map) }
+                .findAll { it.transactionId in [archivedId, archivedCancelId, hotId] }
+
+        then:
+        count("TransactionArchive", archivedId) == 1
+        firstPage.transactions*.transactionId == [hotId, archivedCancelId]
+        secondPage.transactions*.transactionId == [archivedId]
+        secondPage.nextCursor == null
+        secondPage.transactions[0].cardNumber == "972345*******345"
+
+        and:
+        exported*.transactionId == [archivedId, archivedCancelId, hotId]
+        exported.every { it.cardNumber == "972345*******345" }
+        exported[1].payTransactionId == archivedId
+    }
+}
@@ -0,0 +1,64 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.find.FindResponse
+import com.pay.api.controller.pay.BatchPayResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.domain.card.CardCompanyOutboxRepository
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BatchPayTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    @Autowired
+    private CardCompanyOutboxRepository outboxRepository
+
+    def "100건 일괄 결제 성공, 부가가치세가 결제금액보다 큰 건만 실패"() {
+        given:
+        def requests = (0..<100).collect { num ->
+            def request = new PayRequest()
+            request.setCardNumber(String.valueOf(5_000_000_000L + num))
+            request.setCvc("123")
+            request.setExpirationMonthYear("1212")
+            request.setInstallment(0)
+            request.setAmount(11_000)
+            request.setVat(num == 50 ? 20_000 : 1_000)
+            request
+        }
+
+        when:
+        ResponseEntity<BatchPayResponse> response = restTemplate.postForEntity(URI + "/batch", requests, BatchPayResponse.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.successCount == 99
+        response.body.failureCount == 1
+        response.body.items.size() == 100
+        response.body.items.get(50).status == HttpStatus.NOT_ACCEPTABLE.value()
+        response.body.items.findAll { it.status == HttpStatus.CREATED.value() }*.result*.transactionId.unique().size() == 99
+
+        when:
+        def transactionId = response.body.items.get(0).result.transactionId
+        ResponseEntity<FindResponse> found = restTemplate.getForEntity(URI + "/${transactionId}", FindResponse.class)
+
+        then:
+        found.statusCode == HttpStatus.OK
+        found.body.amount == 11_000
+        found.body.cardNumber == "500000*000"
+
+        and: "커밋된 카드사 전문은 dispatcher 가 전송하고 outbox 에서 삭제한다"
+        new PollingConditions(timeout: 5).eventually {
+            assert outboxRepository.count() == 0
+        }
+    }
+}
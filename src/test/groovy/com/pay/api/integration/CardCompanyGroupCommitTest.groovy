@@ -0,0 +1,31 @@
+package com.pay.api.integration
+
+import com.pay.api.domain.card.CardCompanyApi
+import com.pay.api.domain.card.CardCompanyRepository
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CardCompanyGroupCommitTest extends Specification {
+
+    @Autowired
+    private CardCompanyApi cardCompanyApi
+
+    @Autowired
+    private CardCompanyRepository cardCompanyRepository
+
+    def "동시에 보낸 전문은 group commit 으로 모두 저장된 뒤에 성공으로 완료된다."() {
+        given:
+        def messages = (1..50).collect { "GROUP-COMMIT-TEST-" + it }
+
+        when:
+        def results = messages.collect { cardCompanyApi.sendAsync(it) }*.get(5, TimeUnit.SECONDS)
+
+        then:
+        results.every()
+        cardCompanyRepository.findAll()*.message.findAll { it.startsWith("GROUP-COMMIT-TEST-") } as Set == messages as Set
+    }
+}
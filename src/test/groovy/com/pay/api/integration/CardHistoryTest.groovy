@@ -0,0 +1,106 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.history.CardHistoryResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import com.pay.api.type.TransactionType
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CardHistoryTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    private String pay(String cardNumber) {
+        def request = new PayRequest()
+        request.setCardNumber(cardNumber)
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+    }
+
+    private CardHistoryResponse history(String cardNumber, LocalDateTime from, LocalDateTime to, String cursor, int size) {
+        def uri = "${URI}?card=${cardNumber}&from=${from}&to=${to}&size=${size}" + (cursor == null ? "" : "&cursor=${cursor}")
+        def response = restTemplate.getForEntity(uri, CardHistoryResponse.class)
+        assert response.statusCode == HttpStatus.OK
+        response.body
+    }
+
+    def "카드별 거래 목록을 최근 거래부터 keyset 페이지로 나눠서 조회한다."() {
+        given:
+        def from = LocalDateTime.now().minusMinutes(1)
+        def payIds = (1..4).collect { pay("9123456789012345") }
+        pay("9123456789012346")
+
+        def cancelRequest = new CancelRequest()
+        cancelRequest.setAmount(1_100)
+        cancelRequest.setVat(100)
+        def cancelId = restTemplate.exchange(URI + "/${payIds[0]}", HttpMethod.DELETE, new HttpEntity<>(cancelRequest), CancelResponse.class).body.transactionId
+        def to = LocalDateTime.now().plusMinutes(1)
+
+        when:
+        def pages = []
+        String cursor = null
+        while (true) {
+            def page = history("9123456789012345", from, to, cursor, 2)
+            pages << page
+            cursor = page.nextCursor
+            if (cursor == null) {
+                break
+            }
+        }
+        def transactions = pages*.transactions.flatten()
+
+        then:
+        pages*.transactions*.size() == [2, 2, 1]
+        transactions*.transactionId as Set == (payIds + cancelId) as Set
+        transactions*.transactionId == transactions.sort(false) { a, b -> b.createdAt <=> a.createdAt ?: 0 }*.transactionId
+        transactions.every { it.cardNumber == "912345*******345" }
+        transactions.find { it.transactionId == cancelId }.transactionType == TransactionType.CANCEL
+        transactions.find { it.transactionId == cancelId }.payTransactionId == payIds[0]
+    }
+
+    def "기간 밖의 거래는 조회하지 않는다."() {
+        given:
+        pay("9223456789012345")
+
+        expect:
+        history("9223456789012345", LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1), null, 20).transactions.isEmpty()
+        history("9223456789012345", LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1), null, 20).transactions.size() == 1
+    }
+
+    @Unroll
+    def "#description 이면 400 error"() {
+        when:
+        def response = restTemplate.getForEntity(URI + query, String.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+
+        where:
+        query                                                                                           || description
+        "?from=2020-01-01T00:00:00&to=2020-01-02T00:00:00"                                              || "card 없음"
+        "?card=123456789&from=2020-01-01T00:00:00&to=2020-01-02T00:00:00"                               || "card 10자리 미만"
+        "?card=1234567890&from=2020-01-02T00:00:00&to=2020-01-01T00:00:00"                              || "from 이 to 보다 늦음"
+        "?card=1234567890&from=2020-01-01&to=2020-01-02T00:00:00"                                       || "from 형식 오류"
+        "?card=1234567890&from=2020-01-01T00:00:00&to=2020-01-02T00:00:00&size=101"                     || "size 100 초과"
+        "?card=1234567890&from=2020-01-01T00:00:00&to=2020-01-02T00:00:00&cursor=invalid"               || "cursor 형식 오류"
+    }
+}
@@ -0,0 +1,73 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.find.FindResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CardVaultPayTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    private String pay(String cvc) {
+        def request = new PayRequest()
+        request.setCardNumber("9623456789012345")
+        request.setCvc(cvc)
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(2)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+    }
+
+    private Map<String, Object> row(String transactionId) {
+        jdbcTemplate.queryForMap("SELECT CARD_TOKEN, ENCRYPTED_CARD_INFO FROM Transaction WHERE TRANSACTION_ID = ?", transactionId)
+    }
+
+    def "같은 카드의 결제는 카드정보를 하나의 토큰으로 한 번만 저장하고, 취소와 조회는 토큰의 카드정보를 사용한다."() {
+        given:
+        def firstId = pay("123")
+        def secondId = pay("123")
+        def otherId = pay("456")
+
+        when:
+        def request = new CancelRequest()
+        request.setAmount(1_100)
+        request.setVat(100)
+        def cancelled = restTemplate.exchange(URI + "/${secondId}", HttpMethod.DELETE, new HttpEntity<>(request), CancelResponse.class)
+        def found = restTemplate.getForEntity(URI + "/${secondId}", FindResponse.class)
+
+        then:
+        def token = row(firstId).CARD_TOKEN
+        token != null
+        row(firstId).ENCRYPTED_CARD_INFO == null
+        row(secondId).CARD_TOKEN == token
+        row(otherId).CARD_TOKEN != token
+        row(cancelled.body.transactionId).CARD_TOKEN == token
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CardToken WHERE TOKEN = ?", Integer.class, token) == 1
+
+        and:
+        cancelled.statusCode == HttpStatus.OK
+        found.statusCode == HttpStatus.OK
+        found.body.cardNumber == "962345*******345"
+        found.body.cvc == "123"
+        found.body.expirationMonthYear == "1212"
+        found.body.cancelTransactionList[0].cvc == "123"
+    }
+}
@@ -0,0 +1,118 @@
+package com.pay.api.integration
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ExportTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+    private static final String CARD_NUMBER = "9323456789012345"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    private String payId
+    private String cancelId
+    private LocalDateTime from
+    private LocalDateTime to
+
+    def setup() {
+        from = LocalDateTime.now().minusMinutes(1)
+
+        def request = new PayRequest()
+        request.setCardNumber(CARD_NUMBER)
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(3)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        payId = restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+
+        def cancelRequest = new CancelRequest()
+        cancelRequest.setAmount(1_100)
+        cancelRequest.setVat(100)
+        cancelId = restTemplate.exchange(URI + "/${payId}", HttpMethod.DELETE, new HttpEntity<>(cancelRequest), CancelResponse.class).body.transactionId
+
+        to = LocalDateTime.now().plusMinutes(1)
+    }
+
+    def "기간 내 거래를 ndjson 으로 한 줄에 한 건씩 추출한다."() {
+        when:
+        def response = restTemplate.getForEntity("${URI}/export?from=${from}&to=${to}&format=ndjson", String.class)
+        def lines = response.body.readLines()
+        def rows = lines.collect { new ObjectMapper().readValue(it, Map) }
+                .findAll { it.transactionId in [payId, cancelId] }
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.headers.getContentType().toString() == "application/x-ndjson"
+        response.headers.getFirst(HttpHeaders.CONTENT_DISPOSITION) == 'attachment; filename="transactions.ndjson"'
+        !response.body.contains(CARD_NUMBER)
+        rows*.transactionId == [payId, cancelId]
+        rows*.transactionType == ["PAY", "CANCEL"]
+        rows.every { it.cardNumber == "932345*******345" }
+        rows*.installment == [3, 0]
+        rows[0].amount == 11_000
+        rows[0].remainAmount == 9_900
+        rows[0].payTransactionId == null
+        rows[1].amount == 1_100
+        rows[1].vat == 100
+        rows[1].payTransactionId == payId
+        rows.every { !it.containsKey("cvc") && !it.containsKey("expirationMonthYear") }
+    }
+
+    def "기간 내 거래를 csv 로 추출한다."() {
+        when:
+        def response = restTemplate.getForEntity("${URI}/export?from=${from}&to=${to}&format=csv", String.class)
+        def lines = response.body.readLines()
+        def rows = lines.tail().collect { it.split(",", -1) }.findAll { it[0] in [payId, cancelId] }
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.headers.getContentType().toString().startsWith("text/csv")
+        lines[0] == "transactionId,transactionType,createdAt,cardNumber,installment,amount,vat,remainAmount,remainVat,payTransactionId"
+        !response.body.contains(CARD_NUMBER)
+        rows.collect { it[0] } == [payId, cancelId]
+        rows[0][1, 3, 4, 5, 6, 9] == ["PAY", "932345*******345", "3", "11000", "1000", ""]
+        rows[1][1, 3, 4, 5, 6, 9] == ["CANCEL", "932345*******345", "0", "1100", "100", payId]
+    }
+
+    def "기간 밖의 거래는 추출하지 않는다."() {
+        when:
+        def response = restTemplate.getForEntity("${URI}/export?from=${from.minusDays(2)}&to=${from.minusDays(1)}", String.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        !(response.body ?: "").contains(payId)
+    }
+
+    @Unroll
+    def "#description 이면 400 error"() {
+        when:
+        def response = restTemplate.getForEntity(URI + "/export" + query, String.class)
+
+        then:
+        response.statusCode == HttpStatus.BAD_REQUEST
+
+        where:
+        query                                                                  || description
+        "?to=2020-01-02T00:00:00"                                              || "from 없음"
+        "?from=2020-01-02T00:00:00&to=2020-01-01T00:00:00"                     || "from 이 to 보다 늦음"
+        "?from=2020-01-01T00:00:00&to=2020-01-02T00:00:00&format=xml"          || "지원하지 않는 format"
+    }
+}
@@ -0,0 +1,55 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.find.FindResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FindCacheTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    def "조회 결과가 캐시된 뒤에 부분취소를 하면 다음 조회에 취소 내역이 반영된다."() {
+        given:
+        def request = new PayRequest()
+        request.setCardNumber("7234567890123456")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        def transactionId = restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+
+        and:
+        def before = restTemplate.getForEntity(URI + "/${transactionId}", FindResponse.class)
+
+        and:
+        def cancelRequest = new CancelRequest()
+        cancelRequest.setAmount(1_100)
+        cancelRequest.setVat(100)
+
+        when:
+        def cancel = restTemplate.exchange(URI + "/${transactionId}", HttpMethod.DELETE, new HttpEntity<>(cancelRequest), CancelResponse.class)
+        def after = restTemplate.getForEntity(URI + "/${transactionId}", FindResponse.class)
+
+        then:
+        before.body.remainAmount == 11_000
+        before.body.cancelTransactionList.isEmpty()
+        cancel.statusCode == HttpStatus.OK
+        after.body.remainAmount == 9_900
+        after.body.remainVat == 900
+        after.body.cancelTransactionList.size() == 1
+    }
+}
@@ -0,0 +1,102 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.domain.FindResponseCache
+import com.pay.api.domain.PayService
+import org.hibernate.SessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import spock.lang.Specification
+
+import javax.persistence.EntityManagerFactory
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FindFetchTest extends Specification {
+
+    private static final String FIND_QUERY = "select distinct t from Transaction t left join fetch t.payTransaction left join fetch t.cancelTransactionList where t.transactionId = :transactionId"
+
+    @Autowired
+    private PayService payService
+
+    @Autowired
+    private FindResponseCache findResponseCache
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory
+
+    def "부분취소가 30건인 결제도 한 번의 select 로 조회한다."() {
+        given:
+        def request = new PayRequest()
+        request.setCardNumber("6234567890123456")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(30_000)
+        request.setVat(3_000)
+        def transactionId = payService.pay(request).transactionId
+
+        and:
+        def cancelRequest = new CancelRequest()
+        cancelRequest.setAmount(1_000)
+        cancelRequest.setVat(100)
+        30.times { payService.cancel(transactionId, cancelRequest) }
+
+        and:
+        findResponseCache.invalidate(transactionId)
+        def statistics = entityManagerFactory.unwrap(SessionFactory).statistics
+        statistics.statisticsEnabled = true
+        statistics.clear()
+
+        when:
+        def result = payService.find(transactionId)
+
+        then:
+        statistics.entityFetchCount == 0
+        statistics.collectionFetchCount == 0
+        statistics.getQueryStatistics(FIND_QUERY).executionCount == 1
+        result.remainAmount == 0
+        result.remainVat == 0
+        result.cancelTransactionList.size() == 30
+        result.cancelTransactionList.every { it.payTransactionId == transactionId && it.cardNumber == "623456*******456" }
+
+        cleanup:
+        statistics.statisticsEnabled = false
+    }
+
+    def "취소 거래를 조회하면 원거래와 함께 한 번의 select 로 조회한다."() {
+        given:
+        def request = new PayRequest()
+        request.setCardNumber("6234567890123457")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(10_000)
+        request.setVat(1_000)
+        def transactionId = payService.pay(request).transactionId
+
+        and:
+        def cancelRequest = new CancelRequest()
+        cancelRequest.setAmount(1_000)
+        cancelRequest.setVat(100)
+        def cancelTransactionId = payService.cancel(transactionId, cancelRequest).transactionId
+
+        and:
+        def statistics = entityManagerFactory.unwrap(SessionFactory).statistics
+        statistics.statisticsEnabled = true
+        statistics.clear()
+
+        when:
+        def result = payService.find(cancelTransactionId)
+
+        then:
+        statistics.entityFetchCount == 0
+        statistics.collectionFetchCount == 0
+        statistics.getQueryStatistics(FIND_QUERY).executionCount == 1
+        result.payTransactionId == transactionId
+        result.cvc == "123"
+
+        cleanup:
+        statistics.statisticsEnabled = false
+    }
+}
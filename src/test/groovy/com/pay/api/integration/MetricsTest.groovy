@@ -0,0 +1,42 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    def "결제/조회 후 prometheus endpoint 에 요청 시간, 단계별 시간, 조회 캐시 메트릭이 노출된다."() {
+        given:
+        def request = new PayRequest()
+        request.setCardNumber("8234567890123456")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+        def transactionId = restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+        restTemplate.getForEntity(URI + "/${transactionId}", String.class)
+
+        when:
+        def response = restTemplate.getForEntity("/actuator/prometheus", String.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.contains('pay_request_seconds_count{operation="pay",outcome="success",}')
+        response.body.contains('pay_stage_seconds_count{operation="pay",stage="encrypt",}')
+        response.body.contains('pay_stage_seconds_count{operation="find",stage="load",}')
+        response.body.contains('cache_gets_total{cache="pay.find-response"')
+        response.body.contains('pay_card_lock_contention_total')
+    }
+}
@@ -0,0 +1,107 @@
+package com.pay.api.integration
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import com.pay.api.controller.settlement.SettlementItem
+import com.pay.api.controller.settlement.SettlementResponse
+import com.pay.api.domain.settlement.SettlementAggregator
+import com.pay.api.domain.settlement.SettlementSummaryRepository
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SettlementTest extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    //다른 테스트와 겹치지 않는 할부개월
+    private static final int INSTALLMENT = 11
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    @Autowired
+    private SettlementAggregator settlementAggregator
+
+    @Autowired
+    private SettlementSummaryRepository settlementSummaryRepository
+
+    private String pay(long amount, long vat) {
+        def request = new PayRequest()
+        request.setCardNumber("9423456789012345")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(INSTALLMENT)
+        request.setAmount(amount)
+        request.setVat(vat)
+        restTemplate.postForEntity(URI, request, PayResponse.class).body.transactionId
+    }
+
+    private void cancel(String transactionId, long amount, long vat) {
+        def request = new CancelRequest()
+        request.setAmount(amount)
+        request.setVat(vat)
+        restTemplate.exchange(URI + "/${transactionId}", HttpMethod.DELETE, new HttpEntity<>(request), CancelResponse.class)
+    }
+
+    private SettlementItem settlement(LocalDate date) {
+        def response = restTemplate.getForEntity("/pay/settlements?date=${date}", SettlementResponse.class)
+        assert response.statusCode == HttpStatus.OK
+        assert response.body.date == date
+        response.body.settlements.find { it.installment == INSTALLMENT }
+    }
+
+    def "결제/취소가 커밋되면 정산 합계에 더하고, flush 이후에는 summary table 에서 같은 합계를 읽는다."() {
+        given:
+        def today = LocalDate.now()
+        def before = settlement(today)
+
+        when:
+        def transactionId = pay(11_000, 1_000)
+        pay(22_000, 2_000)
+        cancel(transactionId, 1_100, 100)
+        def pending = settlement(today)
+
+        settlementAggregator.flush()
+        def flushed = settlement(today)
+        def summary = settlementSummaryRepository.findBySettlementDateOrderByInstallmentAsc(today).find { it.installment == INSTALLMENT }
+
+        then:
+        pending.payCount - (before?.payCount ?: 0) == 2
+        pending.payAmount - (before?.payAmount ?: 0) == 33_000
+        pending.payVat - (before?.payVat ?: 0) == 3_000
+        pending.cancelCount - (before?.cancelCount ?: 0) == 1
+        pending.cancelAmount - (before?.cancelAmount ?: 0) == 1_100
+        pending.cancelVat - (before?.cancelVat ?: 0) == 100
+        pending.remainAmount - (before?.remainAmount ?: 0) == 31_900
+        pending.remainVat - (before?.remainVat ?: 0) == 2_900
+
+        flushed.properties == pending.properties
+        summary.payCount == pending.payCount
+        summary.remainAmount == pending.remainAmount
+    }
+
+    def "거래가 없는 날짜는 빈 목록을 반환한다."() {
+        when:
+        def response = restTemplate.getForEntity("/pay/settlements?date=2000-01-01", SettlementResponse.class)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.settlements.isEmpty()
+    }
+
+    def "date 형식이 잘못되면 400 error"() {
+        expect:
+        restTemplate.getForEntity("/pay/settlements?date=2020-01-01T00:00:00", String.class).statusCode == HttpStatus.BAD_REQUEST
+        restTemplate.getForEntity("/pay/settlements", String.class).statusCode == HttpStatus.BAD_REQUEST
+    }
+}
@@ -1,11 +1,23 @@
 package com.pay.api.multithread
 
 import com.pay.api.controller.pay.PayRequest
+import com.pay.api.domain.CancelSequencer
+import com.pay.api.domain.CardFingerprint
+import com.pay.api.domain.CardTokenRepository
+import com.pay.api.domain.CardVault
+import com.pay.api.domain.FindResponseCache
+import com.pay.api.domain.PayMetrics
 import com.pay.api.domain.PayService
+import com.pay.api.domain.SequenceTransactionIdGenerator
 import com.pay.api.domain.Transaction
+import com.pay.api.domain.TransactionArchiveRepository
+import com.pay.api.domain.TransactionIdGenerator
 import com.pay.api.domain.TransactionRepository
-import com.pay.api.domain.card.CardCompanyApi
+import com.pay.api.domain.card.CardCompanyOutboxRepository
+import com.pay.api.domain.settlement.SettlementAggregator
 import com.pay.api.exception.ConflictException
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.PlatformTransactionManager
 import spock.lang.Specification
 
 import java.time.LocalDateTime
@@ -19,14 +31,16 @@ import java.util.concurrent.Future
  */
 class MultiThreadTest1 extends Specification {
 
+    TransactionIdGenerator idGenerator = new SequenceTransactionIdGenerator(0)
+
     PayService payService
     TransactionRepository transactionRepository
-    CardCompanyApi cardApi
+    CardCompanyOutboxRepository outboxRepository
 
     def setup() {
         transactionRepository = Mock()
-        cardApi = Mock()
-        payService = new PayService(transactionRepository, cardApi)
+        outboxRepository = Mock()
+        payService = new PayService(transactionRepository, Mock(TransactionArchiveRepository), outboxRepository, new FindResponseCache(100, 60), idGenerator, new CancelSequencer(false, 32, 3000), new PayMetrics(new SimpleMeterRegistry()), new CardFingerprint("test-secret"), new CardVault(Stub(CardTokenRepository) { findById(_) >> Optional.empty() }, "test-secret", 100, 60), Mock(SettlementAggregator), Mock(PlatformTransactionManager))
     }
 
     def "결제 : 하나의 카드번호로 동시에 결제를 할 수 없습니다."() {
@@ -46,7 +60,7 @@ class MultiThreadTest1 extends Specification {
         def installment = 0
         def amount = 11000
         def vat = 1000
-        def transaction = Transaction.newInstance(cardNumber, expirationMonthYear, cvc, installment, amount, vat)
+        def transaction = Transaction.newInstance(idGenerator.generate(), cardNumber, expirationMonthYear, cvc, installment, amount, vat)
         transaction.createdAt = LocalDateTime.now()
         transaction.remainAmount = 11000
         transaction.remainVat = 1000
@@ -79,9 +93,9 @@ class MultiThreadTest1 extends Specification {
         then:
         conflictCount == 9
         1 * transactionRepository.save(_) >> transaction
-        1 * cardApi.send(_) >> {
+        1 * outboxRepository.save(_) >> { args ->
             sleep(1000)
-            return true
+            return args[0]
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.pay.api.multithread
+
+import com.pay.api.controller.cancel.CancelRequest
+import com.pay.api.controller.cancel.CancelResponse
+import com.pay.api.controller.find.FindResponse
+import com.pay.api.controller.pay.PayRequest
+import com.pay.api.controller.pay.PayResponse
+import com.pay.api.type.TransactionType
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * 부분취소 (pay.cancel.sequencer.enabled=true) : 결제 한 건에 대한 부분취소가 동시에 들어오면 순서대로 모두 처리합니다.
+ */
+@Stepwise
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = [
+        "pay.cancel.sequencer.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:pay-sequencer;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+])
+class MultiThreadTest4 extends Specification {
+
+    private static final String URI = "/pay/transactions"
+
+    @Autowired
+    private TestRestTemplate restTemplate
+
+    @Shared
+    private static String transactionId = ""
+
+    def "11,000(1,000)원 결제 성공"() {
+        given:
+        def request = new PayRequest()
+        request.setCardNumber("123456789012345")
+        request.setCvc("123")
+        request.setExpirationMonthYear("1212")
+        request.setInstallment(0)
+        request.setAmount(11_000)
+        request.setVat(1_000)
+
+        when:
+        ResponseEntity<PayResponse> response = restTemplate.postForEntity(URI, request, PayResponse.class)
+        transactionId = response.body.transactionId
+
+        then:
+        response.statusCode == HttpStatus.CREATED
+    }
+
+    def "3,000(300)원 부분취소 4건을 동시에 요청하면 3건은 성공하고 잔액이 부족한 1건만 실패한다."() {
+        given:
+        CancelRequest request = new CancelRequest()
+        request.setAmount(3_000)
+        request.setVat(300)
+
+        HttpEntity<CancelRequest> httpEntity = new HttpEntity<>(request)
+
+        when:
+        def pool = Executors.newFixedThreadPool(4)
+        List<ResponseEntity<CancelResponse>> responses = []
+        try {
+            List<Future<ResponseEntity<CancelResponse>>> futures = (1..4).collect { num ->
+                pool.submit({ ->
+                    restTemplate.exchange(MultiThreadTest4.URI + "/${transactionId}", HttpMethod.DELETE, httpEntity, CancelResponse.class)
+                } as Callable)
+            }
+            responses = futures*.get()
+        } finally {
+            pool.shutdown()
+        }
+
+        then:
+        responses.count { it.statusCode == HttpStatus.OK } == 3
+        responses.count { it.statusCode == HttpStatus.NOT_ACCEPTABLE } == 1
+        responses.count { it.statusCode == HttpStatus.CONFLICT } == 0
+        responses.findAll { it.statusCode == HttpStatus.OK }*.body*.remainAmount.toSorted() == [2_000L, 5_000L, 8_000L]
+    }
+
+    def "11,000(1,000)원 중 9,000(900)원 취소 확인"() {
+        when:
+        ResponseEntity<FindResponse> response = restTemplate.getForEntity(URI + "/${transactionId}", FindResponse.class)
+
+        then:
+        response.body.transactionType == TransactionType.PAY
+        response.body.remainAmount == 2_000
+        response.body.remainVat == 100
+        response.body.cancelTransactionList.size() == 3
+    }
+}